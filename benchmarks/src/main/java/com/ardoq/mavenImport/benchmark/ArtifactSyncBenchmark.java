@@ -0,0 +1,84 @@
+package com.ardoq.mavenImport.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.graph.DependencyNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ardoq.mavenImport.ArtifactSync;
+import com.ardoq.mavenImport.MavenUtil;
+import com.ardoq.mavenImport.WritePipeline;
+import com.ardoq.mavenImport.sink.GraphSink;
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Walks a synthetic dependency graph with a fresh ArtifactSync, as an import does for each project: the components
+ * of every group, artifact and version, and the dependency references, are queued in the pipeline. The pipeline
+ * isn't flushed, since writing looks up licenses in the repositories; its sink is a stub.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactSyncBenchmark {
+
+    /** nodes per distinct artifact version, how often an artifact is reached by another path */
+    static final int NODES_PER_ARTIFACT = 10;
+
+    @Param({ "1000", "10000", "100000" })
+    int nodes;
+
+    MavenUtil mavenUtil;
+    StubSink sink;
+    DependencyNode root;
+
+    @Setup
+    public void setUp() {
+        mavenUtil = new MavenUtil(System.out, "test", "provided");
+        mavenUtil.setQuiet(true);
+        sink = new StubSink();
+        root = SyntheticGraphs.newGraph(new Random(nodes), nodes, Math.max(2, nodes / NODES_PER_ARTIFACT));
+    }
+
+    @Benchmark
+    public WritePipeline traverse() {
+        WritePipeline pipeline = new WritePipeline(sink, mavenUtil);
+        ArtifactSync artifactSync = new ArtifactSync(mavenUtil, pipeline);
+        root.accept(artifactSync);
+        artifactSync.syncReferences();
+        return pipeline;
+    }
+
+    /**
+     * Takes the types of the template model by name, and writes nothing.
+     */
+    static class StubSink extends GraphSink {
+
+        StubSink() {
+            super("benchmark");
+        }
+
+        @Override
+        protected void writeComponent(Component component) {
+        }
+
+        @Override
+        protected void writeReference(Reference reference, String type) {
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.ardoq.mavenImport.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.Exclusion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ardoq.mavenImport.util.ExclusionMatcher;
+
+/**
+ * Compares the indexed ExclusionMatcher with a scan of all exclusions, for growing numbers of inherited exclusions.
+ * The setup checks that both find the same exclusion for every artifact.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExclusionMatcherBenchmark {
+
+    @Param({ "4", "16", "64", "256", "1024" })
+    int size;
+
+    Exclusion[] exclusions;
+    Artifact[] artifacts;
+    ExclusionMatcher matcher;
+    int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        exclusions = SyntheticGraphs.newExclusions(random, size);
+        artifacts = SyntheticGraphs.newArtifacts(random, 1000, size);
+        matcher = new ExclusionMatcher(exclusions);
+        for (Artifact artifact : artifacts) {
+            if (matcher.indexOf(artifact) != scan(exclusions, artifact)) {
+                throw new IllegalStateException("Matcher and scan disagree on " + artifact);
+            }
+        }
+    }
+
+    @Benchmark
+    public int indexed() {
+        return matcher.indexOf(nextArtifact());
+    }
+
+    @Benchmark
+    public int scan() {
+        return scan(exclusions, nextArtifact());
+    }
+
+    private Artifact nextArtifact() {
+        next = (next + 1 == artifacts.length) ? 0 : next + 1;
+        return artifacts[next];
+    }
+
+    /**
+     * The matching done by the exclusion selector before the matcher, the reference result.
+     */
+    static int scan(Exclusion[] exclusions, Artifact artifact) {
+        for (int i = 0; i < exclusions.length; i++) {
+            if (ExclusionMatcher.matches(exclusions[i], artifact)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
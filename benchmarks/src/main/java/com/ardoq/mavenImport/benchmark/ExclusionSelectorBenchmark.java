@@ -0,0 +1,114 @@
+package com.ardoq.mavenImport.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ardoq.mavenImport.util.ArdoqExclusionDependencySelector;
+
+/**
+ * The two calls the collector makes on the exclusion selector: selectDependency for every dependency of a node, and
+ * deriveChildSelector for every dependency that declares exclusions, which merges them with the inherited ones. The
+ * inherited exclusions grow with the depth of the graph, the declared ones are a few per dependency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExclusionSelectorBenchmark {
+
+    static final int DECLARING_DEPENDENCIES = 64;
+    static final int MAX_DECLARED = 4;
+
+    @Param({ "0", "4", "16", "64", "256" })
+    int inherited;
+
+    ArdoqExclusionDependencySelector selector;
+    Dependency[] dependencies;
+    Context[] contexts;
+    int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(inherited);
+        int space = Math.max(inherited, 4);
+        Artifact owner = new DefaultArtifact("org.owner:owner:1.0");
+        selector = new ArdoqExclusionDependencySelector(owner, Arrays.asList(SyntheticGraphs.newExclusions(random, inherited)));
+
+        Artifact[] artifacts = SyntheticGraphs.newArtifacts(random, 1000, space);
+        dependencies = new Dependency[artifacts.length];
+        for (int i = 0; i < artifacts.length; i++) {
+            dependencies[i] = new Dependency(artifacts[i], "compile");
+        }
+
+        // declared exclusions come from the same groups and artifacts, so some are inherited already
+        contexts = new Context[DECLARING_DEPENDENCIES];
+        for (int i = 0; i < contexts.length; i++) {
+            Dependency declaring = dependencies[random.nextInt(dependencies.length)]
+                    .setExclusions(Arrays.asList(SyntheticGraphs.newExclusions(random, 1 + random.nextInt(MAX_DECLARED))));
+            contexts[i] = new Context(declaring);
+        }
+    }
+
+    @Benchmark
+    public boolean selectDependency() {
+        next = (next + 1 == dependencies.length) ? 0 : next + 1;
+        return selector.selectDependency(dependencies[next]);
+    }
+
+    @Benchmark
+    public DependencySelector deriveChildSelector() {
+        next = (next + 1 == contexts.length) ? 0 : next + 1;
+        return selector.deriveChildSelector(contexts[next]);
+    }
+
+    /**
+     * The context of a dependency whose children are collected, only the dependency is used by the selector.
+     */
+    static class Context implements DependencyCollectionContext {
+
+        final Dependency dependency;
+
+        Context(Dependency dependency) {
+            this.dependency = dependency;
+        }
+
+        public RepositorySystemSession getSession() {
+            return null;
+        }
+
+        public Artifact getArtifact() {
+            return dependency.getArtifact();
+        }
+
+        public Dependency getDependency() {
+            return dependency;
+        }
+
+        public List<Dependency> getManagedDependencies() {
+            return null;
+        }
+    }
+
+}
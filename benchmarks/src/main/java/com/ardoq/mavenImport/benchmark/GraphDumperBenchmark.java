@@ -0,0 +1,62 @@
+package com.ardoq.mavenImport.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.graph.DependencyNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ardoq.mavenImport.util.ConsoleDependencyGraphDumper;
+
+/**
+ * Formats a synthetic dependency graph with the ConsoleDependencyGraphDumper, as a verbose import prints every
+ * graph it resolves. The lines are encoded and then dropped, so only the formatting is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphDumperBenchmark {
+
+    @Param({ "1000", "10000" })
+    int nodes;
+
+    DependencyNode root;
+    PrintStream out;
+
+    @Setup
+    public void setUp() throws Exception {
+        root = SyntheticGraphs.newGraph(new Random(nodes), nodes, Math.max(2, nodes / ArtifactSyncBenchmark.NODES_PER_ARTIFACT));
+        out = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, false, "UTF-8");
+    }
+
+    @Benchmark
+    public ConsoleDependencyGraphDumper dump() {
+        ConsoleDependencyGraphDumper dumper = new ConsoleDependencyGraphDumper(out);
+        root.accept(dumper);
+        return dumper;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.ardoq.mavenImport.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ardoq.mavenImport.MavenUtil;
+import com.ardoq.mavenImport.PomMetadata;
+import com.ardoq.mavenImport.PomMetadataReader;
+
+/**
+ * Compares MavenUtil.loadProject, the full MavenXpp3Reader model, with the streaming PomMetadataReader, on the POMs
+ * found in a local repository. Each operation reads the next POM. The setup counts POMs where the two disagree.
+ *
+ * The repository is ~/.m2/repository unless given, e.g. -p repository=/path/to/repository.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PomReaderBenchmark {
+
+    @Param("")
+    String repository;
+
+    @Param("2000")
+    int maxPoms;
+
+    File[] poms;
+    int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        File directory = new File(repository.isEmpty() ? System.getProperty("user.home") + "/.m2/repository" : repository);
+        List<File> found = new ArrayList<File>();
+        findPoms(directory, found, maxPoms);
+        if (found.isEmpty()) {
+            throw new IllegalStateException("No POMs in " + directory);
+        }
+        poms = found.toArray(new File[found.size()]);
+
+        int mismatches = 0;
+        for (File pom : poms) {
+            if (!same(PomMetadataReader.read(pom), PomMetadata.fromProject(MavenUtil.loadProject(pom)))) {
+                System.out.println("Mismatch: " + pom);
+                mismatches++;
+            }
+        }
+        System.out.println(poms.length + " POMs in " + directory + ", " + mismatches + " mismatches");
+    }
+
+    @Benchmark
+    public MavenProject loadProject() {
+        return MavenUtil.loadProject(nextPom());
+    }
+
+    @Benchmark
+    public PomMetadata streaming() throws IOException {
+        return PomMetadataReader.read(nextPom());
+    }
+
+    private File nextPom() {
+        next = (next + 1 == poms.length) ? 0 : next + 1;
+        return poms[next];
+    }
+
+    private static void findPoms(File dir, List<File> poms, int max) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (poms.size() >= max) {
+                return;
+            }
+            if (file.isDirectory()) {
+                findPoms(file, poms, max);
+            } else if (file.getName().endsWith(".pom")) {
+                poms.add(file);
+            }
+        }
+    }
+
+    private static boolean same(PomMetadata a, PomMetadata b) {
+        if (!String.valueOf(a).equals(String.valueOf(b)) || !equal(a.getDeclaredName(), b.getDeclaredName())
+                || !equal(a.getDescription(), b.getDescription()) || !equal(a.getParentId(), b.getParentId())
+                || !a.getLicenses().equals(b.getLicenses()) || !a.getModules().equals(b.getModules())
+                || a.getDevelopers().size() != b.getDevelopers().size()) {
+            return false;
+        }
+        for (int i = 0; i < a.getDevelopers().size(); i++) {
+            if (!equal(a.getDevelopers().get(i).getName(), b.getDevelopers().get(i).getName())
+                    || !equal(a.getDevelopers().get(i).getEmail(), b.getDevelopers().get(i).getEmail())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+}
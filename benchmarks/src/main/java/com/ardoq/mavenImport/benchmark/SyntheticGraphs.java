@@ -0,0 +1,124 @@
+package com.ardoq.mavenImport.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+
+/**
+ * Seeded inputs shared by the benchmarks: exclusion sets, artifacts to match against them, and dependency graphs
+ * shaped like collected ones.
+ */
+public class SyntheticGraphs {
+
+    static final String[] EXTENSIONS = { "jar", "pom", "*" };
+    static final String[] CLASSIFIERS = { "", "tests", "*" };
+    static final String[] SCOPES = { "compile", "compile", "compile", "compile", "runtime", "test", "provided" };
+
+    static final int MAX_CHILDREN = 8;
+    static final int MAX_DEPTH = 8;
+
+    /**
+     * @param random
+     * @param size
+     * @return exclusions sorted and dupe-free like the selector's merged exclusions, mostly groupId:artifactId with
+     * some wildcards
+     */
+    static Exclusion[] newExclusions(Random random, int size) {
+        TreeSet<String> keys = new TreeSet<String>();
+        List<Exclusion> exclusions = new ArrayList<Exclusion>();
+        while (exclusions.size() < size) {
+            int kind = random.nextInt(20);
+            String groupId = kind == 0 ? "*" : "org.group" + random.nextInt(size);
+            String artifactId = kind == 1 ? "*" : "artifact" + random.nextInt(size * 2);
+            String classifier = kind == 2 ? CLASSIFIERS[random.nextInt(CLASSIFIERS.length)] : "*";
+            String extension = kind == 3 ? EXTENSIONS[random.nextInt(EXTENSIONS.length)] : "*";
+            if (keys.add(artifactId + ":" + groupId + ":" + extension + ":" + classifier)) {
+                exclusions.add(new Exclusion(groupId, artifactId, classifier, extension));
+            }
+        }
+        Collections.sort(exclusions, new Comparator<Exclusion>() {
+            public int compare(Exclusion e1, Exclusion e2) {
+                String k1 = e1.getArtifactId() + ":" + e1.getGroupId() + ":" + e1.getExtension() + ":" + e1.getClassifier();
+                String k2 = e2.getArtifactId() + ":" + e2.getGroupId() + ":" + e2.getExtension() + ":" + e2.getClassifier();
+                return k1.compareTo(k2);
+            }
+        });
+        return exclusions.toArray(new Exclusion[exclusions.size()]);
+    }
+
+    /**
+     * @param random
+     * @param count
+     * @param size the size of the exclusion sets, so about half the artifacts share a groupId with an exclusion
+     * @return artifacts drawn from the same groupIds and artifactIds as newExclusions
+     */
+    static Artifact[] newArtifacts(Random random, int count, int size) {
+        Artifact[] artifacts = new Artifact[count];
+        for (int i = 0; i < count; i++) {
+            artifacts[i] = new DefaultArtifact("org.group" + random.nextInt(size), "artifact" + random.nextInt(size * 2),
+                    CLASSIFIERS[random.nextInt(2)], EXTENSIONS[random.nextInt(2)], "1.0");
+        }
+        return artifacts;
+    }
+
+    /**
+     * Builds a dependency tree of the given number of nodes over a smaller pool of artifacts, so most artifacts are
+     * reached by several paths, as in a collected graph. Some nodes carry the data of a managed version and of a
+     * lost conflict, which the dumper prints.
+     * @param random
+     * @param nodes
+     * @param artifacts number of distinct artifact versions
+     * @return the root node
+     */
+    static DependencyNode newGraph(Random random, int nodes, int artifacts) {
+        Artifact[] pool = new Artifact[artifacts];
+        for (int i = 0; i < artifacts; i++) {
+            pool[i] = new DefaultArtifact("org.group" + (i / 8), "artifact" + i, "jar", "1." + (i % 5));
+        }
+        DefaultDependencyNode root = new DefaultDependencyNode(new Dependency(pool[0], "compile"));
+        root.setChildren(new ArrayList<DependencyNode>());
+
+        Deque<DefaultDependencyNode> queue = new ArrayDeque<DefaultDependencyNode>();
+        Deque<Integer> depths = new ArrayDeque<Integer>();
+        queue.add(root);
+        depths.add(0);
+        int count = 1;
+        while (count < nodes && !queue.isEmpty()) {
+            DefaultDependencyNode parent = queue.poll();
+            int depth = depths.poll();
+            int children = (depth < MAX_DEPTH) ? 1 + random.nextInt(MAX_CHILDREN) : 0;
+            for (int i = 0; i < children && count < nodes; i++, count++) {
+                Artifact artifact = pool[1 + random.nextInt(artifacts - 1)];
+                DefaultDependencyNode child = new DefaultDependencyNode(new Dependency(artifact, SCOPES[random.nextInt(SCOPES.length)], random.nextInt(20) == 0));
+                child.setChildren(new ArrayList<DependencyNode>());
+                if (random.nextInt(10) == 0) {
+                    child.setManagedBits(DependencyNode.MANAGED_VERSION);
+                    child.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_VERSION, "0.9");
+                }
+                if (random.nextInt(10) == 0) {
+                    DefaultDependencyNode winner = new DefaultDependencyNode(new Dependency(artifact.setVersion("2.0"), "compile"));
+                    child.setData(ConflictResolver.NODE_DATA_WINNER, winner);
+                }
+                parent.getChildren().add(child);
+                queue.add(child);
+                depths.add(depth + 1);
+            }
+        }
+        return root;
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.ardoq.mavenImport;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -8,6 +9,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
@@ -16,9 +18,22 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.MissingOptionException;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
-import org.apache.maven.project.MavenProject;
 
 import com.ardoq.ArdoqClient;
+import com.ardoq.mavenImport.jfr.EventSpan;
+import com.ardoq.mavenImport.jfr.ImportEventType;
+import com.ardoq.mavenImport.jfr.ImportEvents;
+import com.ardoq.mavenImport.sink.ArdoqServiceSink;
+import com.ardoq.mavenImport.sink.DotSink;
+import com.ardoq.mavenImport.sink.DryRunSink;
+import com.ardoq.mavenImport.sink.GraphFileReader;
+import com.ardoq.mavenImport.sink.GraphFileSink;
+import com.ardoq.mavenImport.sink.GraphMLSink;
+import com.ardoq.mavenImport.sink.JsonLinesSink;
+import com.ardoq.mavenImport.sink.OutputSink;
+import com.ardoq.mavenImport.util.Booter;
+import com.ardoq.mavenImport.util.ConsoleReporter;
+import com.ardoq.model.AggregatedWorkspace;
 import com.ardoq.model.Field;
 import com.ardoq.model.FieldType;
 import com.ardoq.model.Model;
@@ -37,6 +52,10 @@ public class ArdoqMavenImport {
 
     public enum ReferenceTypes {DEPENDENCY, TEST, PARENT, MODULE};
 
+    static final String OUTPUT_ARDOQ = "ardoq";
+    static final String OUTPUT_NONE = "none";
+    static final String OUTPUT_GRAPH = "graph:";
+
     String host;
     String workspaceName;
     String org;
@@ -44,8 +63,62 @@ public class ArdoqMavenImport {
 
     String workspaceID;
 
-    @SuppressWarnings("unchecked")
+    int threads = 1;
+    int writeThreads = 4;
+    File snapshotDirectory = WorkspaceSnapshot.getDefaultDirectory();
+    File metricsJson;
+    File metricsPrometheus;
+    String output = OUTPUT_ARDOQ;
+    File input;
+    File scanDirectory;
+    File scanJournal;
+    File workingDirectory;
+
+    ArdoqClient ardoqClient;
+
     public static void main(String[] args) throws Exception {
+        if(args.length>0 && "daemon".equals(args[0])){
+            ImportDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if(args.length>0 && "submit".equals(args[0])){
+            System.exit(ImportClient.submit(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if(args.length>0 && "bulk".equals(args[0])){
+            System.exit(BulkImport.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if(args.length>1 && "resolve".equals(args[0])){
+            // resolve <file> [options] artifactId ...
+            args = toOption(args, "-out", OUTPUT_GRAPH+args[1]);
+        }
+        else if(args.length>1 && "sync".equals(args[0])){
+            // sync <file> [options]
+            args = toOption(args, "-in", args[1]);
+        }
+        else if(args.length>1 && "scan".equals(args[0])){
+            // scan <directory> [options]
+            args = toOption(args, "-scan", args[1]);
+        }
+        run(args, null, null);
+    }
+
+    private static String[] toOption(String[] args, String option, String value) {
+        String[] converted = args.clone();
+        converted[0] = option;
+        converted[1] = value;
+        return converted;
+    }
+
+    /**
+     * Runs one import.
+     * @param args command line arguments
+     * @param daemon provides the warm repository system and caches, null for a one-off import
+     * @param workingDirectory directory relative file arguments are resolved against, null for the current one
+     * @return the metrics of the import, null if only help was printed
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    static ImportMetrics run(String[] args, ImportDaemon daemon, File workingDirectory) throws Exception {
 
         Options options = initOptions();
 
@@ -56,22 +129,79 @@ public class ArdoqMavenImport {
 
             if(cmd.hasOption("help")){
                 printHelp(options);
-                return;
+                return null;
             }
 
-            if(cmd.getArgList().isEmpty()){
+            if(cmd.getArgList().isEmpty() && !cmd.hasOption("in") && !cmd.hasOption("scan")){
                 System.out.println("One or more Maven artifact IDs required. For instance: 'io.dropwizard:dropwizard-core:0.8.1'");
-                return;
+                return null;
             }
 
             String host = cmd.getOptionValue("h","https://app.ardoq.com");
             String token = cmd.getOptionValue("t");
             String org = cmd.getOptionValue("o","ardoq");
             String workspace = cmd.getOptionValue("w");
+            String output = cmd.getOptionValue("out", OUTPUT_ARDOQ);
+            int colon = output.indexOf(':');
+            if(colon > 0 && colon < output.length()-1){
+                output = output.substring(0, colon+1)+resolve(workingDirectory, output.substring(colon+1)).getPath();
+            }
+            if(OUTPUT_ARDOQ.equals(output) && (token == null || workspace == null)){
+                throw new MissingOptionException("Missing required options: t, w");
+            }
             List<String> importList = cmd.getArgList();
 
             ArdoqMavenImport ardoqMavenImport = new ArdoqMavenImport(host, workspace, org, token);
-            MavenUtil mavenUtil = new MavenUtil(System.out, "test", "provided");
+            ardoqMavenImport.setWorkingDirectory(workingDirectory);
+            ardoqMavenImport.setOutput(output);
+            if(cmd.hasOption("in")){
+                ardoqMavenImport.setInput(resolve(workingDirectory, cmd.getOptionValue("in")));
+            }
+            if(cmd.hasOption("scan")){
+                ardoqMavenImport.setScanDirectory(resolve(workingDirectory, cmd.getOptionValue("scan")));
+            }
+            if(cmd.hasOption("journal")){
+                ardoqMavenImport.setScanJournal(resolve(workingDirectory, cmd.getOptionValue("journal")));
+            }
+            ardoqMavenImport.setThreads(Integer.parseInt(cmd.getOptionValue("j","1")));
+            if(cmd.hasOption("wt")){
+                ardoqMavenImport.setWriteThreads(Integer.parseInt(cmd.getOptionValue("wt")));
+            }
+            if(cmd.hasOption("sd")){
+                String snapshotDir = cmd.getOptionValue("sd");
+                ardoqMavenImport.setSnapshotDirectory("none".equals(snapshotDir) ? null : resolve(workingDirectory, snapshotDir));
+            }
+            if(cmd.hasOption("mj")){
+                ardoqMavenImport.setMetricsJson(resolve(workingDirectory, cmd.getOptionValue("mj")));
+            }
+            if(cmd.hasOption("mp")){
+                ardoqMavenImport.setMetricsPrometheus(resolve(workingDirectory, cmd.getOptionValue("mp")));
+            }
+            File localRepository = cmd.hasOption("l") ? resolve(workingDirectory, cmd.getOptionValue("l")) : Booter.getDefaultLocalRepository();
+            MavenUtil mavenUtil = (daemon != null)
+                    ? daemon.newMavenUtil(System.out, localRepository, "test", "provided")
+                    : new MavenUtil(System.out, localRepository, "test", "provided");
+            mavenUtil.setQuiet(cmd.hasOption("q"));
+            mavenUtil.setEffectiveModel(cmd.hasOption("em"));
+            if(cmd.hasOption("c")){
+                String cacheDir = cmd.getOptionValue("c");
+                File directory = "none".equals(cacheDir) ? null : resolve(workingDirectory, cacheDir);
+                mavenUtil.setMetadataCache(new PomMetadataCache(directory, PomMetadataCache.DEFAULT_MEMORY_SIZE));
+            }
+            else if(daemon != null){
+                mavenUtil.setMetadataCache(daemon.getMetadataCache(mavenUtil.isEffectiveModel()));
+            }
+            mavenUtil.setOffline(cmd.hasOption("offline"));
+            if(cmd.hasOption("gc")){
+                String graphCacheDir = cmd.getOptionValue("gc");
+                mavenUtil.setGraphCache(new DependencyGraphCache("none".equals(graphCacheDir) ? null : resolve(workingDirectory, graphCacheDir)));
+            }
+            if(cmd.hasOption("dt")){
+                mavenUtil.setDownloadThreads(Integer.parseInt(cmd.getOptionValue("dt")));
+            }
+            if(cmd.hasOption("ct")){
+                mavenUtil.setCollectorThreads(Integer.parseInt(cmd.getOptionValue("ct")));
+            }
 
             if(cmd.hasOption("r")){
                 String extrarepo = cmd.getOptionValue("r");
@@ -85,11 +215,21 @@ public class ArdoqMavenImport {
                 }
             }
 
-            ardoqMavenImport.startImport(importList,mavenUtil);
-
+            if(daemon != null){
+                ardoqMavenImport.setArdoqClient(daemon.getArdoqClient(host, org, token));
+            }
+            try{
+                ardoqMavenImport.startImport(importList,mavenUtil);
+            }
+            finally{
+                ardoqMavenImport.writeMetrics(mavenUtil);
+                mavenUtil.getReporter().close();
+            }
+            return mavenUtil.getMetrics();
         }
         catch (MissingOptionException moe) {
             printHelp(options);
+            return null;
         }
     }
 
@@ -102,24 +242,57 @@ public class ArdoqMavenImport {
 
 
     public List<String> startImport(List<String> importList, MavenUtil mavenUtil) throws IOException, Exception {
-        if(importList.isEmpty()) {
+        if(input != null && importList.isEmpty()){
+            importList = GraphFileReader.readRoots(input);
+        }
+        if(importList.isEmpty() && scanDirectory == null) {
             throw new Exception("At least one artifact must be specified!");
         }
+        if(input == null && scanDirectory == null){
+            importList = addLocalProjects(importList, mavenUtil);
+        }
 
-        ArdoqClient ardoqClient = new ArdoqClient(host,token);
-        ardoqClient.setOrganization(org);
-        ardoqClient.setLogLevel(RestAdapter.LogLevel.FULL);
+        ImportMetrics metrics = mavenUtil.getMetrics();
+        if(mavenUtil.isOffline() && input == null && scanDirectory == null){
+            metrics.startPhase("offline_check");
+            Set<String> missing = new OfflineCheck(mavenUtil).findMissingArtifacts(importList);
+            if(!missing.isEmpty()){
+                String message = "Offline import, "+missing.size()+" artifacts missing from the local repository:";
+                for(String gav:missing){
+                    message += "\n  "+gav;
+                }
+                throw new Exception(message);
+            }
+        }
+
+        if(!OUTPUT_ARDOQ.equals(output)){
+            return export(importList, mavenUtil);
+        }
+
+        metrics.startPhase("prepare");
+        ConsoleReporter reporter = mavenUtil.getReporter();
+        ArdoqClient ardoqClient = this.ardoqClient;
+        if(ardoqClient == null){
+            ardoqClient = newArdoqClient(host, org, token);
+        }
+        // the client logs every request and response synchronously, a daemon may reuse it for a job that isn't quiet
+        ardoqClient.setLogLevel(mavenUtil.isQuiet() ? RestAdapter.LogLevel.NONE : RestAdapter.LogLevel.FULL);
 
-        if(workspaceName==null || workspaceName.trim().length()==0){
+        if((workspaceName==null || workspaceName.trim().length()==0) && scanDirectory != null){
+            workspaceName = "Maven repository "+scanDirectory.getName();
+        }
+        else if(workspaceName==null || workspaceName.trim().length()==0){
             String artifactStr = importList.get(0);
-            MavenProject mavenProject = mavenUtil.loadProject(artifactStr);
+            PomMetadata mavenProject = mavenUtil.loadMetadata(artifactStr);
             workspaceName = "Maven project "+mavenProject.getName();
         }
 
         Workspace workspace = findOrCreateWorkspace(importList, ardoqClient);
 
         Model model = ardoqClient.model().getModelById(workspace.getComponentModel());
-        System.out.println(model);
+        if(reporter.isVerbose()){
+            reporter.println(model);
+        }
 
         String COMPONENT_TYPE_PROJECT = model.getComponentTypeByName("Project");
         String COMPONENT_TYPE_GROUP = model.getComponentTypeByName("Group");
@@ -135,18 +308,252 @@ public class ArdoqMavenImport {
         SyncUtil ardoqSync = new SyncUtil(ardoqClient, workspace);
 
         workspace.setViews(Arrays.asList("processflow","componenttree","tableview","reader","integrations"));
-        ProjectSync projectSync = new ProjectSync(ardoqSync,mavenUtil);
         workspaceID = workspace.getId();
+        AggregatedWorkspace existing = ardoqClient.workspace().getAggregatedWorkspace(workspaceID);
+        ArdoqServiceSink sink = new ArdoqServiceSink(ardoqSync, ardoqClient, existing);
+        ProjectSync projectSync = new ProjectSync(sink,mavenUtil,threads,writeThreads);
+        WorkspaceSnapshot previous = loadSnapshot(existing, workspaceID, reporter);
+        projectSync.getPipeline().setPreviousSnapshot(previous);
+        List<String> projectIDs = syncProjects(projectSync, importList, mavenUtil);
+
+        metrics.startPhase("cleanup");
+        reporter.println("updating workspace");
+        long start = System.nanoTime();
+        EventSpan event = ImportEvents.begin(ImportEventType.ARDOQ_REQUEST).operation("updateWorkspaceIfDifferent").item(workspaceID);
+        ardoqSync.updateWorkspaceIfDifferent(workspace);
+        event.end("written");
+        metrics.record("ardoq_update_workspace", start);
+
+        WorkspaceSnapshot snapshot = projectSync.getPipeline().getSnapshot();
+        if(previous == null){
+            // the sink created most items past the SyncUtil, which would delete them as not synced
+            List<String> references = sink.getNotSyncedReferenceIds();
+            List<String> components = sink.getNotSyncedComponentIds();
+            reporter.println("Deleting "+references.size()+" references and "+components.size()+" components not synced");
+            delete(ardoqClient, mavenUtil, references, components);
+        }
+        else{
+            List<String> references = previous.getRemovedReferenceIds(snapshot);
+            List<String> components = previous.getRemovedComponentIds(snapshot);
+            reporter.println("Deleting "+references.size()+" references and "+components.size()+" components removed since the previous import");
+            delete(ardoqClient, mavenUtil, references, components);
+        }
+        if(snapshotDirectory != null){
+            snapshot.save(snapshotDirectory);
+        }
+        metrics.endPhase();
+        printSummary(projectSync, mavenUtil);
+
+        return projectIDs;
+    }
+
+    /**
+     * Reads the POM files and directory trees in the import list from disk.
+     * @param importList artifact coordinates, POM files and directories
+     * @param mavenUtil
+     * @return the import list with the coordinates of the local projects in place of their files and directories
+     * @throws IOException
+     */
+    private List<String> addLocalProjects(List<String> importList, MavenUtil mavenUtil) throws IOException {
+        List<String> projects = new LinkedList<String>();
+        for(String item:importList){
+            File file = resolve(workingDirectory, item);
+            if(file.isDirectory() || (file.isFile() && item.endsWith(".xml"))){
+                List<String> roots = mavenUtil.addLocalProjects(file, Runtime.getRuntime().availableProcessors());
+                mavenUtil.getReporter().println(mavenUtil.getLocalProjects()+", importing "+roots+" from "+item);
+                projects.addAll(roots);
+            }
+            else{
+                projects.add(item);
+            }
+        }
+        return projects;
+    }
+
+    /**
+     * Imports into a file, or nowhere for a dry run, without connecting to Ardoq.
+     * @param importList
+     * @param mavenUtil
+     * @return names of the imported projects
+     * @throws Exception
+     */
+    private List<String> export(List<String> importList, MavenUtil mavenUtil) throws Exception {
+        ImportMetrics metrics = mavenUtil.getMetrics();
+        metrics.startPhase("prepare");
+        String graphName = (workspaceName != null && workspaceName.trim().length() > 0) ? workspaceName
+                : (scanDirectory != null) ? scanDirectory.getName() : importList.get(0);
+        OutputSink sink = newOutputSink(output, graphName, importList, mavenUtil.getReporter());
+        List<String> projectIDs;
+        ProjectSync projectSync;
+        boolean complete = false;
+        try{
+            projectSync = new ProjectSync(sink, mavenUtil, threads);
+            projectIDs = syncProjects(projectSync, importList, mavenUtil);
+            metrics.startPhase("cleanup");
+            sink.close();
+            complete = true;
+        }
+        finally{
+            if(!complete){
+                sink.abort();
+            }
+        }
+        metrics.endPhase();
+        mavenUtil.getReporter().println(sink);
+        printSummary(projectSync, mavenUtil);
+        return projectIDs;
+    }
+
+    /**
+     * Resolves the projects and writes them to the sink of projectSync, or writes the graph read from the input file
+     * or scanned from the repository directory.
+     * @param projectSync
+     * @param importList
+     * @param mavenUtil
+     * @return IDs of the project components
+     * @throws Exception
+     */
+    private List<String> syncProjects(ProjectSync projectSync, List<String> importList, MavenUtil mavenUtil) throws Exception {
+        if(input != null){
+            return projectSync.syncGraph(input);
+        }
+        if(scanDirectory != null){
+            RepositoryScanner scanner = new RepositoryScanner(mavenUtil, scanDirectory, scanJournal, Runtime.getRuntime().availableProcessors());
+            List<String> projectIDs = projectSync.syncScan(scanner);
+            // written, so an interrupted import from here on scans again from the start
+            scanner.delete();
+            return projectIDs;
+        }
         List<String> projectIDs = projectSync.syncProjects(importList);
         projectSync.addExclusions(mavenUtil);
+        return projectIDs;
+    }
 
-        System.out.println("updating workspace");
-        ardoqSync.updateWorkspaceIfDifferent(workspace);
+    private void printSummary(ProjectSync projectSync, MavenUtil mavenUtil) {
+        ConsoleReporter reporter = mavenUtil.getReporter();
+        ImportMetrics metrics = mavenUtil.getMetrics();
+        reporter.println(projectSync.getPipeline());
+        metrics.count("ardoq_items", "result", "sent", projectSync.getPipeline().getWritten());
+        metrics.count("ardoq_items", "result", "unchanged", projectSync.getPipeline().getUnchanged());
+
+        reporter.println(mavenUtil.getMetadataCache());
+        reporter.println(mavenUtil.getGraphCache());
+        if(mavenUtil.isEffectiveModel()){
+            reporter.println(mavenUtil.getModelCache());
+        }
+    }
+
+    /**
+     * @param output 'none' for a dry run, or 'graph:', 'jsonl:', 'graphml:' or 'dot:' followed by a file name
+     * @param graphName
+     * @param importList
+     * @param reporter
+     * @return the sink, replacing the file when it is closed
+     * @throws IOException
+     */
+    static OutputSink newOutputSink(String output, String graphName, List<String> importList, ConsoleReporter reporter) throws IOException {
+        if(OUTPUT_NONE.equals(output)){
+            return new DryRunSink(graphName, reporter);
+        }
+        int colon = output.indexOf(':');
+        if(colon > 0 && colon < output.length()-1){
+            String format = output.substring(0, colon);
+            File file = new File(output.substring(colon+1));
+            if(OUTPUT_GRAPH.equals(format+":")){
+                return new GraphFileSink(file, graphName, importList);
+            }
+            if("jsonl".equals(format)){
+                return new JsonLinesSink(file, graphName);
+            }
+            if("graphml".equals(format)){
+                return new GraphMLSink(file, graphName);
+            }
+            if("dot".equals(format)){
+                return new DotSink(file, graphName);
+            }
+        }
+        throw new IllegalArgumentException("Unknown output "+output+", expected ardoq, none, graph:<file>, jsonl:<file>, graphml:<file> or dot:<file>");
+    }
 
-        System.out.println("Deleting not synced references");
-        ardoqSync.deleteNotSyncedItems();
+    /**
+     * Writes the metrics of an import, also after a failed one, to the files given with setMetricsJson and
+     * setMetricsPrometheus.
+     * @param mavenUtil
+     */
+    public void writeMetrics(MavenUtil mavenUtil) {
+        ImportMetrics metrics = mavenUtil.getMetrics();
+        metrics.endPhase();
+        mavenUtil.addCacheMetrics();
+        try{
+            if(metricsJson != null){
+                metrics.writeJson(metricsJson);
+            }
+            if(metricsPrometheus != null){
+                metrics.writePrometheus(metricsPrometheus);
+            }
+        }
+        catch(IOException e){
+            mavenUtil.getReporter().printError("Error writing metrics: "+e.getMessage());
+        }
+    }
 
-        return projectIDs;
+    public static ArdoqClient newArdoqClient(String host, String org, String token) {
+        ArdoqClient ardoqClient = new ArdoqClient(host,token);
+        ardoqClient.setOrganization(org);
+        ardoqClient.setLogLevel(RestAdapter.LogLevel.FULL);
+        return ardoqClient;
+    }
+
+    /**
+     * The snapshot is checked against the workspace first: if items were added or removed in Ardoq since, by another
+     * machine's import or by hand, it can't be trusted and everything is synced, which also removes what was added.
+     * @param workspace content of the workspace
+     * @param workspaceId
+     * @param reporter
+     * @return the snapshot of the previous import into the workspace, or null if everything has to be synced
+     */
+    private WorkspaceSnapshot loadSnapshot(AggregatedWorkspace workspace, String workspaceId, ConsoleReporter reporter) {
+        if(snapshotDirectory == null){
+            return null;
+        }
+        WorkspaceSnapshot previous = WorkspaceSnapshot.load(snapshotDirectory, workspaceId);
+        if(previous == null){
+            reporter.println("No snapshot of a previous import, syncing everything");
+            return null;
+        }
+        String difference = previous.verify(workspace);
+        if(difference != null){
+            reporter.println("Workspace has changed since the previous import ("+difference+"), syncing everything");
+            return null;
+        }
+        reporter.println("Syncing changes since the previous import, "+previous);
+        return previous;
+    }
+
+    /**
+     * Deletes what the import didn't write. Takes the place of SyncUtil.deleteNotSyncedItems, since SyncUtil doesn't
+     * know about the components and references that were skipped or created past it.
+     * @param ardoqClient
+     * @param mavenUtil
+     * @param references IDs of the references to delete
+     * @param components IDs of the components to delete, children first
+     */
+    private void delete(ArdoqClient ardoqClient, MavenUtil mavenUtil, List<String> references, List<String> components) {
+        ImportMetrics metrics = mavenUtil.getMetrics();
+        for(String id:references){
+            long start = System.nanoTime();
+            EventSpan event = ImportEvents.begin(ImportEventType.ARDOQ_REQUEST).operation("deleteReference").item(id);
+            ardoqClient.reference().deleteReference(id);
+            event.end("deleted");
+            metrics.record("ardoq_delete_reference", start);
+        }
+        for(String id:components){
+            long start = System.nanoTime();
+            EventSpan event = ImportEvents.begin(ImportEventType.ARDOQ_REQUEST).operation("deleteComponent").item(id);
+            ardoqClient.component().deleteComponent(id);
+            event.end("deleted");
+            metrics.record("ardoq_delete_component", start);
+        }
     }
 
     public Workspace findOrCreateWorkspace(List<String> importList, ArdoqClient ardoqClient) throws IOException {
@@ -208,18 +615,143 @@ public class ArdoqMavenImport {
         return workspaceID;
     }
 
+    /**
+     * @param ardoqClient client to import with, instead of a new one per import
+     */
+    public void setArdoqClient(ArdoqClient ardoqClient) {
+        this.ardoqClient = ardoqClient;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads number of projects loaded and resolved in parallel, 1 (the default) imports serially
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getWriteThreads() {
+        return writeThreads;
+    }
+
+    /**
+     * @param writeThreads number of components and reference chunks written to Ardoq at a time, 1 writes serially
+     */
+    public void setWriteThreads(int writeThreads) {
+        this.writeThreads = writeThreads;
+    }
+
+    public File getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    /**
+     * @param snapshotDirectory where workspace snapshots are kept for delta syncs, null to always sync everything
+     */
+    public void setSnapshotDirectory(File snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    public File getMetricsJson() {
+        return metricsJson;
+    }
+
+    /**
+     * @param metricsJson file the metrics of the import are written to as JSON, null for none
+     */
+    public void setMetricsJson(File metricsJson) {
+        this.metricsJson = metricsJson;
+    }
+
+    public File getMetricsPrometheus() {
+        return metricsPrometheus;
+    }
+
+    /**
+     * @param metricsPrometheus .prom file the metrics of the import are written to for the Prometheus textfile collector, null for none
+     */
+    public void setMetricsPrometheus(File metricsPrometheus) {
+        this.metricsPrometheus = metricsPrometheus;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @param output 'ardoq', 'none' for a dry run, or 'graph:', 'jsonl:', 'graphml:' or 'dot:' followed by a file name
+     */
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public File getInput() {
+        return input;
+    }
+
+    /**
+     * @param input a graph written with the output 'graph:', synced instead of resolving artifacts, or null
+     */
+    public void setInput(File input) {
+        this.input = input;
+    }
+
+    public File getScanDirectory() {
+        return scanDirectory;
+    }
+
+    /**
+     * @param scanDirectory a repository directory whose POMs are all imported, instead of resolving artifacts, or null
+     */
+    public void setScanDirectory(File scanDirectory) {
+        this.scanDirectory = scanDirectory;
+    }
+
+    public File getScanJournal() {
+        return scanJournal;
+    }
+
+    /**
+     * @param scanJournal where the scan is recorded so an interrupted import resumes it, null for the default
+     */
+    public void setScanJournal(File scanJournal) {
+        this.scanJournal = scanJournal;
+    }
+
+    public File getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * @param workingDirectory directory POM files and directories in the import list are resolved against, null for the current one
+     */
+    public void setWorkingDirectory(File workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * @param workingDirectory directory relative paths are resolved against, null for the current one
+     * @param path
+     * @return the file
+     */
+    static File resolve(File workingDirectory, String path) {
+        File file = new File(path);
+        return (workingDirectory == null || file.isAbsolute()) ? file : new File(workingDirectory, path);
+    }
+
     private static Options initOptions() {
         Options options = new Options();
 
         Option host = new Option("h","host",true,"Ardoq host name");
         options.addOption(host);
 
-        Option token = new Option("t","token",true,"Ardoq access token");
-        token.setRequired(true);
+        Option token = new Option("t","token",true,"Ardoq access token, required unless the output is a file or none");
         options.addOption(token);
 
-        Option workspace = new Option("w","workspace",true,"Ardoq workspace name");
-        workspace.setRequired(true);
+        Option workspace = new Option("w","workspace",true,"Ardoq workspace name, required unless the output is a file or none");
         options.addOption(workspace);
 
         Option model = new Option("m","model",true,"Ardoq model name - defaults to Maven");
@@ -237,6 +769,58 @@ public class ArdoqMavenImport {
         Option extrarepopass = new Option("p","password",true,"Extra repository password");
         options.addOption(extrarepopass);
 
+        Option threads = new Option("j","threads",true,"Number of projects resolved in parallel - defaults to 1");
+        options.addOption(threads);
+
+        Option writeThreads = new Option("wt","write-threads",true,"Number of components and reference chunks written to Ardoq at a time - defaults to 4");
+        options.addOption(writeThreads);
+
+        Option collectorThreads = new Option("ct","collector-threads",true,"Number of POMs read concurrently while collecting dependencies - defaults to 5");
+        options.addOption(collectorThreads);
+
+        Option localRepository = new Option("l","local-repository",true,"Local Maven repository, can be shared by concurrent imports - defaults to ~/.m2/repository");
+        options.addOption(localRepository);
+
+        Option downloadThreads = new Option("dt","download-threads",true,"Number of concurrent POM downloads per repository - defaults to 5");
+        options.addOption(downloadThreads);
+
+        Option cacheDir = new Option("c","cache-dir",true,"Directory of the POM metadata cache, 'none' to only cache in memory - defaults to ~/.ardoq-maven-import/pom-metadata");
+        options.addOption(cacheDir);
+
+        Option offline = new Option("offline","Resolve from the local repository and file:// repositories only");
+        options.addOption(offline);
+
+        Option snapshotDir = new Option("sd","snapshot-dir",true,"Directory of the workspace snapshots used to only sync changes, 'none' to always sync everything - defaults to ~/.ardoq-maven-import/workspace-snapshots");
+        options.addOption(snapshotDir);
+
+
+        Option output = new Option("out","output",true,"Where the graph is written: 'ardoq', 'graph:<file>' to sync it later with -in, 'jsonl:<file>', 'graphml:<file>', 'dot:<file>', or 'none' for a dry run - defaults to ardoq");
+        options.addOption(output);
+
+        Option input = new Option("in","input",true,"Sync a graph written with -out graph:<file> instead of resolving artifacts");
+        options.addOption(input);
+
+        Option scan = new Option("scan","scan-repository",true,"Import every POM in a repository directory, e.g. a local repository or a repository manager's storage, reading only the POMs in it");
+        options.addOption(scan);
+
+        Option journal = new Option("journal","scan-journal",true,"Journal of the -scan, an interrupted scan resumes from it - defaults to ~/.ardoq-maven-import/repository-scans");
+        options.addOption(journal);
+
+        Option quiet = new Option("q","quiet",false,"Only print a summary of the import and errors, not every artifact resolved, downloaded and written");
+        options.addOption(quiet);
+
+        Option metricsJson = new Option("mj","metrics-json",true,"Write the metrics of the import to this JSON file");
+        options.addOption(metricsJson);
+
+        Option metricsPrometheus = new Option("mp","metrics-prometheus",true,"Write the metrics of the import to this file in the Prometheus textfile collector format");
+        options.addOption(metricsPrometheus);
+
+        Option graphCacheDir = new Option("gc","graph-cache-dir",true,"Directory of the dependency graph cache, 'none' to disable it - defaults to ~/.ardoq-maven-import/dependency-graphs");
+        options.addOption(graphCacheDir);
+
+        Option effectiveModel = new Option("em","effective-model",false,"Read POMs with inheritance from their parents and property interpolation");
+        options.addOption(effectiveModel);
+
         Option help = new Option("help", "print this help message");
         options.addOption(help);
         return options;
@@ -245,7 +829,7 @@ public class ArdoqMavenImport {
 
     private static void printHelp(Options options) {
         HelpFormatter formatter = new HelpFormatter();
-        formatter.printHelp( "mavenimport [options] [pomfile|artifactId ...]", options);
+        formatter.printHelp( "mavenimport [daemon|submit|bulk <manifest>|resolve <file>|sync <file>|scan <directory>] [options] [pomfile|artifactId ...]", options);
     }
 
 
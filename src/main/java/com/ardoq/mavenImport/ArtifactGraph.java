@@ -0,0 +1,269 @@
+package com.ardoq.mavenImport;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.eclipse.aether.artifact.Artifact;
+
+/**
+ * The groups, artifacts, versions and dependencies seen by {@link ArtifactSync}, interned to ints. Coordinates are
+ * looked up in open addressing tables by the hash codes of their strings, which Strings cache, so visiting a node
+ * whose coordinates are known allocates nothing. Component names are built once per node, when first asked for.
+ *
+ * Dependencies between versions are kept in primitive arrays in the order they were first added, deduplicated by
+ * source and target. For graphs with 100k+ edges this takes a fraction of the heap of a map keyed by names.
+ *
+ * Not thread-safe, like the visitor.
+ */
+public class ArtifactGraph {
+
+    static final int INITIAL_CAPACITY = 256;
+
+    private String[] strings = new String[INITIAL_CAPACITY];
+    private int stringCount;
+    private int[] stringTable = new int[INITIAL_CAPACITY * 2];
+
+    private final Nodes groups = new Nodes(1);
+    private final Nodes artifacts = new Nodes(2);
+    private final Nodes versions = new Nodes(3);
+
+    private int[] edgeSource = new int[INITIAL_CAPACITY];
+    private int[] edgeTarget = new int[INITIAL_CAPACITY];
+    private int[] edgeDescription = new int[INITIAL_CAPACITY];
+    private int edgeCount;
+    private int[] edgeTable = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * @param artifact
+     * @return the node of the groupId of the artifact
+     */
+    public int group(Artifact artifact) {
+        return groups.add(intern(artifact.getGroupId()), 0, 0);
+    }
+
+    /**
+     * @param artifact
+     * @return the node of groupId:artifactId of the artifact
+     */
+    public int artifact(Artifact artifact) {
+        return artifacts.add(intern(artifact.getGroupId()), intern(artifact.getArtifactId()), 0);
+    }
+
+    /**
+     * @param artifact
+     * @return the node of groupId:artifactId:version of the artifact
+     */
+    public int version(Artifact artifact) {
+        return versions.add(intern(artifact.getGroupId()), intern(artifact.getArtifactId()), intern(artifact.getVersion()));
+    }
+
+    public Nodes getGroups() {
+        return groups;
+    }
+
+    public Nodes getArtifacts() {
+        return artifacts;
+    }
+
+    public Nodes getVersions() {
+        return versions;
+    }
+
+    /**
+     * Adds a dependency between two versions. If it was added before, only its description is replaced.
+     * @param source version node
+     * @param target version node
+     * @param description
+     * @return true if the dependency is new
+     */
+    public boolean addDependency(int source, int target, String description) {
+        int mask = edgeTable.length - 1;
+        int i = mix(source * 31 + target) & mask;
+        for (int slot; (slot = edgeTable[i]) != 0; i = (i + 1) & mask) {
+            if (edgeSource[slot - 1] == source && edgeTarget[slot - 1] == target) {
+                edgeDescription[slot - 1] = intern(description);
+                return false;
+            }
+        }
+        if (edgeCount == edgeSource.length) {
+            edgeSource = Arrays.copyOf(edgeSource, edgeCount * 2);
+            edgeTarget = Arrays.copyOf(edgeTarget, edgeCount * 2);
+            edgeDescription = Arrays.copyOf(edgeDescription, edgeCount * 2);
+        }
+        edgeSource[edgeCount] = source;
+        edgeTarget[edgeCount] = target;
+        edgeDescription[edgeCount] = intern(description);
+        edgeTable[i] = ++edgeCount;
+        if (edgeCount * 2 > edgeTable.length) {
+            rehashDependencies(edgeTable.length * 2);
+        }
+        return true;
+    }
+
+    public int getDependencyCount() {
+        return edgeCount;
+    }
+
+    public int getDependencySource(int dependency) {
+        return edgeSource[dependency];
+    }
+
+    public int getDependencyTarget(int dependency) {
+        return edgeTarget[dependency];
+    }
+
+    public String getDependencyDescription(int dependency) {
+        return strings[edgeDescription[dependency]];
+    }
+
+    /**
+     * Removes the dependencies, the nodes are kept.
+     */
+    public void clearDependencies() {
+        Arrays.fill(edgeTable, 0);
+        edgeCount = 0;
+    }
+
+    private void rehashDependencies(int capacity) {
+        edgeTable = new int[capacity];
+        int mask = capacity - 1;
+        for (int e = 0; e < edgeCount; e++) {
+            int i = mix(edgeSource[e] * 31 + edgeTarget[e]) & mask;
+            while (edgeTable[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            edgeTable[i] = e + 1;
+        }
+    }
+
+    int intern(String string) {
+        int mask = stringTable.length - 1;
+        int i = mix(string.hashCode()) & mask;
+        for (int slot; (slot = stringTable[i]) != 0; i = (i + 1) & mask) {
+            if (strings[slot - 1].equals(string)) {
+                return slot - 1;
+            }
+        }
+        if (stringCount == strings.length) {
+            strings = Arrays.copyOf(strings, stringCount * 2);
+        }
+        strings[stringCount] = string;
+        stringTable[i] = ++stringCount;
+        if (stringCount * 2 > stringTable.length) {
+            stringTable = new int[stringTable.length * 2];
+            mask = stringTable.length - 1;
+            for (int s = 0; s < stringCount; s++) {
+                int j = mix(strings[s].hashCode()) & mask;
+                while (stringTable[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                stringTable[j] = s + 1;
+            }
+        }
+        return stringCount - 1;
+    }
+
+    static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Nodes of one kind, keyed by the interned strings of their coordinates, which are joined by ':' to name them.
+     * Each node can be marked once its component is queued for writing.
+     */
+    public class Nodes {
+        final int arity;
+        int[] keys;
+        int count;
+        int[] table = new int[INITIAL_CAPACITY * 2];
+        String[] names = new String[INITIAL_CAPACITY];
+        final BitSet queued = new BitSet();
+
+        Nodes(int arity) {
+            this.arity = arity;
+            this.keys = new int[INITIAL_CAPACITY * arity];
+        }
+
+        int add(int a, int b, int c) {
+            int mask = table.length - 1;
+            int i = hash(a, b, c) & mask;
+            for (int slot; (slot = table[i]) != 0; i = (i + 1) & mask) {
+                if (matches(slot - 1, a, b, c)) {
+                    return slot - 1;
+                }
+            }
+            if (count == names.length) {
+                keys = Arrays.copyOf(keys, count * 2 * arity);
+                names = Arrays.copyOf(names, count * 2);
+            }
+            int offset = count * arity;
+            keys[offset] = a;
+            if (arity > 1) {
+                keys[offset + 1] = b;
+            }
+            if (arity > 2) {
+                keys[offset + 2] = c;
+            }
+            table[i] = ++count;
+            if (count * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            return count - 1;
+        }
+
+        private boolean matches(int node, int a, int b, int c) {
+            int offset = node * arity;
+            return keys[offset] == a
+                    && (arity < 2 || keys[offset + 1] == b)
+                    && (arity < 3 || keys[offset + 2] == c);
+        }
+
+        private int hash(int a, int b, int c) {
+            return mix((a * 31 + b) * 31 + c);
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            int mask = capacity - 1;
+            for (int node = 0; node < count; node++) {
+                int offset = node * arity;
+                int i = hash(keys[offset], (arity > 1) ? keys[offset + 1] : 0, (arity > 2) ? keys[offset + 2] : 0) & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = node + 1;
+            }
+        }
+
+        /**
+         * @param node
+         * @return the component name of the node, e.g. groupId:artifactId:version
+         */
+        public String getName(int node) {
+            String name = names[node];
+            if (name == null) {
+                int offset = node * arity;
+                name = strings[keys[offset]];
+                for (int k = 1; k < arity; k++) {
+                    name = name + ":" + strings[keys[offset + k]];
+                }
+                names[node] = name;
+            }
+            return name;
+        }
+
+        public boolean isQueued(int node) {
+            return queued.get(node);
+        }
+
+        public void setQueued(int node) {
+            queued.set(node);
+        }
+
+        public int size() {
+            return count;
+        }
+    }
+
+}
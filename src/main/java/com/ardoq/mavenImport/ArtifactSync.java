@@ -1,64 +1,90 @@
 package com.ardoq.mavenImport;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.graph.DependencyNode;
 import org.eclipse.aether.graph.DependencyVisitor;
 
+import com.ardoq.mavenImport.jfr.EventSpan;
+import com.ardoq.mavenImport.jfr.ImportEventType;
+import com.ardoq.mavenImport.jfr.ImportEvents;
+import com.ardoq.mavenImport.sink.OutputSink;
 import com.ardoq.model.Component;
-import com.ardoq.model.Reference;
 import com.ardoq.util.SyncUtil;
 
 /**
- * A dependency visitor that dumps the graph to Ardoq.
+ * A dependency visitor that dumps the graph to Ardoq, or the output sink of its pipeline. Nodes and dependencies are
+ * tracked by int in an {@link ArtifactGraph}, so revisiting a node doesn't build its name again.
  */
 public class ArtifactSync implements DependencyVisitor {
 
-    final SyncUtil ardoqSync;
+    final OutputSink sink;
     final String COMPONENT_TYPE_GROUP;
     final String COMPONENT_TYPE_ARTIFACT;
     final String COMPONENT_TYPE_VERSION;
+    final int REFERENCE_TYPE_DEPENDENCY;
 
-    Map<String, String> componentNameIdMap;
-    Map<String, Reference> references;
+    final WritePipeline pipeline;
+    final ArtifactGraph graph = new ArtifactGraph();
+    final Map<String, String> scopeDescriptions = new HashMap<String, String>();
 
     final MavenUtil mavenUtil;
 
     public ArtifactSync(SyncUtil ardoqSync, MavenUtil mavenUtil) {
-        this.ardoqSync = ardoqSync;
-        this.mavenUtil = mavenUtil;
+        this(mavenUtil, new WritePipeline(ardoqSync, mavenUtil));
+    }
 
-        COMPONENT_TYPE_GROUP = ardoqSync.getModel().getComponentTypeByName("Group");
-        COMPONENT_TYPE_ARTIFACT = ardoqSync.getModel().getComponentTypeByName("Artifact");
-        COMPONENT_TYPE_VERSION = ardoqSync.getModel().getComponentTypeByName("Version");
+    public ArtifactSync(MavenUtil mavenUtil, WritePipeline pipeline) {
+        this.sink = pipeline.getSink();
+        this.mavenUtil = mavenUtil;
+        this.pipeline = pipeline;
 
-        componentNameIdMap = new HashMap<String, String>();
-        references = new HashMap<String, Reference>();
+        COMPONENT_TYPE_GROUP = sink.getComponentType("Group");
+        COMPONENT_TYPE_ARTIFACT = sink.getComponentType("Artifact");
+        COMPONENT_TYPE_VERSION = sink.getComponentType("Version");
+        REFERENCE_TYPE_DEPENDENCY = sink.getReferenceType("Dependency");
     }
 
     public boolean visitEnter(DependencyNode node) {
-        return addArtifactVersion(node.getArtifact(), node.getDependency().isOptional());
+        EventSpan event = ImportEvents.begin(ImportEventType.ARTIFACT_VISIT).gav(node.getArtifact());
+        try {
+            return addArtifactVersion(node.getArtifact(), node.getDependency().isOptional());
+        } finally {
+            event.end("enter");
+        }
     }
 
     public boolean addArtifactVersion(Artifact artifact, boolean isOptional) {
-        String artifactVersionComponentName = getArtifactVersionComponentName(artifact);
+        return addArtifactVersion(artifact, isOptional, null);
+    }
 
-        if (componentNameIdMap.containsKey(artifactVersionComponentName)) {
+    /**
+     * @param artifact
+     * @param isOptional
+     * @param licenses licenses of the artifact, or null to look them up when the component is written
+     * @return true
+     */
+    public boolean addArtifactVersion(Artifact artifact, boolean isOptional, List<String> licenses) {
+        ArtifactGraph.Nodes versions = graph.getVersions();
+        int version = graph.version(artifact);
+        if (isQueued(versions, version)) {
             return true;
         }
 
-        String artifactCompId = addArtifact(artifact);
-        Component versionComp = new Component(artifactVersionComponentName, ardoqSync.getWorkspace().getId(), "", COMPONENT_TYPE_VERSION);
-        versionComp.setParent(artifactCompId);
+        String artifactComponentName = addArtifact(artifact);
+        Component versionComp = new Component(versions.getName(version), sink.getWorkspaceId(), "", COMPONENT_TYPE_VERSION);
 
         Map<String, Object> fields = new HashMap<String, Object>();
         fields.put("groupId", artifact.getGroupId());
         fields.put("artifactId", artifact.getArtifactId());
         fields.put("version", artifact.getVersion());
-        mavenUtil.addLicense(artifact, fields);
 
+        if (licenses != null) {
+            MavenUtil.addLicense(licenses, fields);
+        }
         versionComp.setFields(fields);
 
         String description = "";
@@ -71,15 +97,9 @@ public class ArtifactSync implements DependencyVisitor {
 
         versionComp.setDescription(description);
 
-        System.out.println("Adding Version component "+artifactVersionComponentName+" of type "+COMPONENT_TYPE_VERSION+ ", parent: "+artifactCompId);
-        versionComp = ardoqSync.addComponent(versionComp);
-
-        String versionCompId = versionComp.getId();
-        if(versionCompId == null){
-            throw new RuntimeException("Version Component doesn't have an ID");
-        }
-
-        componentNameIdMap.put(artifactVersionComponentName, versionCompId);
+        // unless given, the license is added by the pipeline when the component is written
+        pipeline.addComponent(WritePipeline.WAVE_VERSIONS, versionComp, artifactComponentName, (licenses == null) ? artifact : null);
+        versions.setQueued(version);
 
         return true;
     }
@@ -88,122 +108,147 @@ public class ArtifactSync implements DependencyVisitor {
     /**
      * Adds the artifact version (Version in Ardoq) as a child of an Artifact node.
      * @param artifact
-     * @return artifact component ID
+     * @return artifact component name
      */
     private String addArtifact(Artifact artifact) {
-        String artifactComponentName = getArtifactComponentName(artifact);
-        String artifactCompId = componentNameIdMap.get(artifactComponentName);
-        if(artifactCompId!=null){
-            return artifactCompId;
+        ArtifactGraph.Nodes artifacts = graph.getArtifacts();
+        int node = graph.artifact(artifact);
+        String artifactComponentName = artifacts.getName(node);
+        if(isQueued(artifacts, node)){
+            return artifactComponentName;
         }
 
-        String artifactGroupCompId = addArtifactGroup(artifact);
-        Component artifactComp = new Component(artifactComponentName, ardoqSync.getWorkspace().getId(), "", COMPONENT_TYPE_ARTIFACT);
-        artifactComp.setParent(artifactGroupCompId);
+        String artifactGroupComponentName = addArtifactGroup(artifact);
+        Component artifactComp = new Component(artifactComponentName, sink.getWorkspaceId(), "", COMPONENT_TYPE_ARTIFACT);
 
         Map<String, Object> fields = new HashMap<String, Object>();
         fields.put("groupId", artifact.getGroupId());
         fields.put("artifactId", artifact.getArtifactId());
         artifactComp.setFields(fields);
 
-        System.out.println("Adding Artifact component "+artifactComponentName+" of type "+COMPONENT_TYPE_ARTIFACT+", parent: "+artifactGroupCompId);
-        artifactComp = ardoqSync.addComponent(artifactComp);
-
-        artifactCompId = artifactComp.getId();
-        if(artifactCompId == null){
-            throw new RuntimeException("Artifact Component doesn't have an ID");
-        }
-
-        componentNameIdMap.put(artifactComponentName, artifactCompId);
+        pipeline.addComponent(WritePipeline.WAVE_ARTIFACTS, artifactComp, artifactGroupComponentName, null);
+        artifacts.setQueued(node);
 
-        return artifactCompId;
+        return artifactComponentName;
     }
 
     /**
      * Adds an Artifact as a child of an Group node in Ardoq.
      * @param artifact
-     * @return artifactGroup ID
+     * @return artifactGroup component name
      */
     private String addArtifactGroup(Artifact artifact) {
-        String artifactGroupComponentName = getArtifactGroupComponentName(artifact);
-        String groupCompId = componentNameIdMap.get(artifactGroupComponentName);
-        if (groupCompId!=null){
-            return groupCompId;
+        ArtifactGraph.Nodes groups = graph.getGroups();
+        int node = graph.group(artifact);
+        String artifactGroupComponentName = groups.getName(node);
+        if (isQueued(groups, node)){
+            return artifactGroupComponentName;
         }
 
-        Component groupComp = new Component(artifactGroupComponentName, ardoqSync.getWorkspace().getId(), "", COMPONENT_TYPE_GROUP);
+        Component groupComp = new Component(artifactGroupComponentName, sink.getWorkspaceId(), "", COMPONENT_TYPE_GROUP);
 
         Map<String, Object> fields = new HashMap<String, Object>();
         fields.put("groupId", artifact.getGroupId());
         groupComp.setFields(fields);
 
-        System.out.println("Adding Artifact component "+artifactGroupComponentName+" of type "+COMPONENT_TYPE_GROUP);
-        groupComp = ardoqSync.addComponent(groupComp);
+        pipeline.addComponent(WritePipeline.WAVE_ROOTS, groupComp, null, null);
+        groups.setQueued(node);
 
-        groupCompId = groupComp.getId();
-        if(groupCompId == null){
-            throw new RuntimeException("Artifact Component doesn't have an ID");
-        }
-
-        componentNameIdMap.put(artifactGroupComponentName, groupCompId);
-
-        return groupCompId;
+        return artifactGroupComponentName;
     }
 
+    /**
+     * The pipeline is only asked until a node is marked, since components added by others, e.g. a Project, may
+     * have the same name.
+     */
+    private boolean isQueued(ArtifactGraph.Nodes nodes, int node) {
+        if (nodes.isQueued(node)) {
+            return true;
+        }
+        if (pipeline.contains(nodes.getName(node))) {
+            nodes.setQueued(node);
+            return true;
+        }
+        return false;
+    }
 
 
 
     public boolean visitLeave(DependencyNode node) {
-        Map<String, Integer> refTypes = ardoqSync.getModel().getReferenceTypes();
-        int refTypeDep = refTypes.get("Dependency");
+        EventSpan event = ImportEvents.begin(ImportEventType.ARTIFACT_VISIT).gav(node.getArtifact());
+        try {
+            return addDependencyReferences(node);
+        } finally {
+            event.end("leave");
+        }
+    }
 
-        Artifact sourceArtifact = node.getArtifact();
-        String sourceName = getArtifactVersionComponentName(sourceArtifact);
-        String sourceId = componentNameIdMap.get(sourceName);
-        if(sourceId==null) {
-            System.err.println("Source "+sourceName+ " not found.");
+    private boolean addDependencyReferences(DependencyNode node) {
+        ArtifactGraph.Nodes versions = graph.getVersions();
+        int source = graph.version(node.getArtifact());
+        if(!isQueued(versions, source)) {
+            mavenUtil.getReporter().printError("Source "+versions.getName(source)+ " not found.");
             return false;
         }
 
         for (DependencyNode child : node.getChildren()) {
-            Artifact targetArtifact = child.getArtifact();
-            String targetName = getArtifactVersionComponentName(targetArtifact);
-            String targetId = componentNameIdMap.get(targetName);
-            String scope = child.getDependency().getScope();
-            Reference ref = new Reference(ardoqSync.getWorkspace().getId(), " #"+scope, sourceId, targetId, refTypeDep);
-            references.put(sourceId + "," + targetId, ref);
+            int target = graph.version(child.getArtifact());
+            graph.addDependency(source, target, getScopeDescription(child.getDependency().getScope()));
         }
         return true;
     }
 
+    /**
+     * Adds a dependency reference between two versions that are queued already, e.g. one declared in a POM.
+     * @param sourceArtifact
+     * @param targetArtifact
+     * @param description
+     */
+    public void addDependency(Artifact sourceArtifact, Artifact targetArtifact, String description) {
+        graph.addDependency(graph.version(sourceArtifact), graph.version(targetArtifact), description);
+    }
+
+    String getScopeDescription(String scope) {
+        String description = scopeDescriptions.get(scope);
+        if (description == null) {
+            description = " #" + scope;
+            scopeDescriptions.put(scope, description);
+        }
+        return description;
+    }
+
     public void addReference(Artifact sourceArtifact, Artifact targetArtifact, String referenceType) {
         String sourceName = getArtifactVersionComponentName(sourceArtifact);
-        String sourceId = componentNameIdMap.get(sourceName);
-        if(sourceId==null) {
-            System.err.println("Source "+sourceName+ " not found.");
+        if(!pipeline.contains(sourceName)) {
+            mavenUtil.getReporter().printError("Source "+sourceName+ " not found.");
             return;
         }
         String targetName = getArtifactVersionComponentName(targetArtifact);
-        String targetId = componentNameIdMap.get(targetName);
-        if(targetId==null) {
-            System.err.println("Target "+targetName+ " not found.");
+        if(!pipeline.contains(targetName)) {
+            mavenUtil.getReporter().printError("Target "+targetName+ " not found.");
             return;
         }
 
-        Map<String, Integer> refTypes = ardoqSync.getModel().getReferenceTypes();
-        int refTypeExclusion = refTypes.get(referenceType);
-        Reference ref = new Reference(ardoqSync.getWorkspace().getId(), " #excluded", sourceId, targetId, refTypeExclusion);
-        ardoqSync.addReference(ref);
+        pipeline.addReference(sourceName, targetName, " #excluded", sink.getReferenceType(referenceType));
     }
 
 
 
+    /**
+     * Queues the dependency references found so far. They are written when the pipeline is flushed.
+     */
     public void syncReferences() {
-        for (Reference ref : references.values()) {
-            System.out.println("adding ref to sync " + ref.getSource() + " " + ref.getTarget());
-            ardoqSync.addReference(ref);
+        ArtifactGraph.Nodes versions = graph.getVersions();
+        for (int i = 0; i < graph.getDependencyCount(); i++) {
+            String sourceName = versions.getName(graph.getDependencySource(i));
+            String targetName = versions.getName(graph.getDependencyTarget(i));
+            pipeline.addReference(sourceName, targetName, graph.getDependencyDescription(i), REFERENCE_TYPE_DEPENDENCY);
         }
-        references.clear();
+        graph.clearDependencies();
+    }
+
+    public ArtifactGraph getGraph() {
+        return graph;
     }
 
     public static String getArtifactGroupComponentName(Artifact artifact) {
@@ -229,7 +274,7 @@ public class ArtifactSync implements DependencyVisitor {
 
     public String getComponentIdFromArtifact(Artifact artifact) {
         String artifactName = getArtifactVersionComponentName(artifact);
-        return componentNameIdMap.get(artifactName);
+        return pipeline.getId(artifactName);
     }
 
 }
\ No newline at end of file
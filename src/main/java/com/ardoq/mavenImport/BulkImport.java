@@ -0,0 +1,216 @@
+package com.ardoq.mavenImport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the jobs of an {@link ImportManifest}, e.g. a nightly import of many artifacts into many workspaces.
+ *
+ * All jobs share the warm state of an {@link ImportDaemon}: one repository system, the artifact descriptors, POM
+ * metadata and parent models, and the Ardoq clients, so an artifact shared by several workspaces is resolved once.
+ * Jobs run in priority order, up to -jobs at a time, each with the import options given after the manifest plus
+ * -w and the artifacts of its workspace. Nothing of a job but its summary row is kept once it is done, and the warm
+ * state is dropped when a job leaves the heap more than 70% full, so memory stays bounded however long the manifest
+ * is.
+ *
+ * With more than one job at a time the jobs can't tell their heap and shared cache use apart, so the peak heap and
+ * the POM metadata cache counters are only in the metrics of the whole bulk import, written with -mj and -mp.
+ *
+ * Usage: mavenimport bulk [-jobs n] [-summary file] [-mj file] [-mp file] manifest [import options]
+ */
+public class BulkImport {
+
+    public static final int DEFAULT_JOBS = 2;
+
+    static final String SUMMARY_HEADER = "workspace,artifacts,rows,priority,status,seconds,sent,unchanged,error";
+
+    final ImportDaemon warm;
+    final String[] importArgs;
+    final int jobs;
+    final PrintWriter summary;
+    final ImportMetrics metrics = new ImportMetrics();
+
+    final AtomicInteger done = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param importArgs options of every import, without -w and artifacts
+     * @param jobs number of jobs running at a time
+     * @param summary where a CSV row is written for each job as it finishes, or null
+     */
+    public BulkImport(String[] importArgs, int jobs, PrintWriter summary) {
+        this.warm = new ImportDaemon(0, 0);
+        this.importArgs = importArgs;
+        this.jobs = Math.max(1, jobs);
+        this.summary = summary;
+        warm.setConcurrent(this.jobs > 1);
+        // serial jobs measure the peaks of their own phases
+        metrics.setHeapPeaks(this.jobs > 1);
+    }
+
+    /**
+     * @param args [-jobs n] [-summary file] [-mj file] [-mp file] manifest [import options]
+     * @return the exit code, 1 if a job failed
+     * @throws IOException
+     */
+    public static int run(String[] args) throws IOException {
+        int jobs = DEFAULT_JOBS;
+        File summaryFile = null;
+        File metricsJson = null;
+        File metricsPrometheus = null;
+        int first = 0;
+        while (args.length > first + 1 && args[first].startsWith("-")) {
+            if ("-jobs".equals(args[first])) {
+                jobs = Integer.parseInt(args[first + 1]);
+            } else if ("-summary".equals(args[first])) {
+                summaryFile = new File(args[first + 1]);
+            } else if ("-mj".equals(args[first])) {
+                metricsJson = new File(args[first + 1]);
+            } else if ("-mp".equals(args[first])) {
+                metricsPrometheus = new File(args[first + 1]);
+            } else {
+                break;
+            }
+            first += 2;
+        }
+        if (args.length <= first) {
+            System.out.println("Usage: mavenimport bulk [-jobs n] [-summary file] [-mj file] [-mp file] manifest [import options]");
+            return 2;
+        }
+
+        ImportManifest manifest = ImportManifest.read(new File(args[first]));
+        System.out.println(manifest);
+        String[] importArgs = Arrays.copyOfRange(args, first + 1, args.length);
+
+        PrintWriter summary = null;
+        if (summaryFile != null) {
+            summary = new PrintWriter(new OutputStreamWriter(new FileOutputStream(summaryFile), "UTF-8"), true);
+            summary.println(SUMMARY_HEADER);
+        }
+        try {
+            BulkImport bulk = new BulkImport(importArgs, jobs, summary);
+            try {
+                return bulk.run(manifest.getJobs()) ? 0 : 1;
+            } finally {
+                if (metricsJson != null) {
+                    bulk.getMetrics().writeJson(metricsJson);
+                }
+                if (metricsPrometheus != null) {
+                    bulk.getMetrics().writePrometheus(metricsPrometheus);
+                }
+            }
+        } finally {
+            if (summary != null) {
+                summary.close();
+            }
+        }
+    }
+
+    /**
+     * @return the metrics of the whole bulk import: its duration, the jobs by status, the items sent and unchanged, and
+     * the hits and misses of the shared POM metadata caches, plus the peak heap when jobs run concurrently
+     */
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param manifestJobs
+     * @return true if all jobs succeeded
+     */
+    public boolean run(List<ImportManifest.Job> manifestJobs) {
+        long start = System.currentTimeMillis();
+        metrics.startPhase("bulk");
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            // a fixed pool takes the tasks in the order they are submitted, highest priority first
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final ImportManifest.Job job : manifestJobs) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() {
+                        runJob(job);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            metrics.endPhase();
+            warm.addCacheMetrics(metrics);
+        }
+        System.out.println("Bulk import: " + done + " jobs, " + failed + " failed, in " + (System.currentTimeMillis() - start) / 1000 + "s");
+        return failed.get() == 0;
+    }
+
+    void runJob(ImportManifest.Job job) {
+        List<String> args = new ArrayList<String>(Arrays.asList(importArgs));
+        args.add("-w");
+        args.add(job.getWorkspace());
+        args.addAll(job.getArtifacts());
+
+        long start = System.nanoTime();
+        ImportMetrics metrics = null;
+        String error = null;
+        try {
+            metrics = ArdoqMavenImport.run(args.toArray(new String[args.size()]), warm, null);
+            if (metrics == null) {
+                error = "invalid import options " + Arrays.asList(ImportDaemon.maskSecrets(importArgs));
+            }
+        } catch (Throwable t) {
+            error = String.valueOf(t.getMessage());
+            t.printStackTrace();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (ImportDaemon.isHeapFull()) {
+            warm.evict("memory");
+        }
+
+        done.incrementAndGet();
+        if (error != null) {
+            failed.incrementAndGet();
+        }
+        long sent = (metrics != null) ? metrics.getCount("ardoq_items", "sent") : 0;
+        long unchanged = (metrics != null) ? metrics.getCount("ardoq_items", "unchanged") : 0;
+        String status = (error == null) ? "ok" : "failed";
+        this.metrics.count("jobs", "status", status, 1);
+        this.metrics.count("ardoq_items", "result", "sent", sent);
+        this.metrics.count("ardoq_items", "result", "unchanged", unchanged);
+        System.out.println(String.format(Locale.ENGLISH, "Job %s: %s, %d artifacts, %.1fs, %d sent, %d unchanged%s",
+                job.getWorkspace(), status, job.getArtifacts().size(), seconds, sent, unchanged, (error != null) ? ", " + error : ""));
+        if (summary != null) {
+            synchronized (summary) {
+                summary.println(csv(job.getWorkspace()) + "," + job.getArtifacts().size() + "," + job.getRows() + "," + job.getPriority() + ","
+                        + status + "," + String.format(Locale.ENGLISH, "%.3f", seconds) + "," + sent + "," + unchanged + "," + csv((error != null) ? error : ""));
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+}
@@ -0,0 +1,463 @@
+package com.ardoq.mavenImport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.DependencyVisitor;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of collected dependency graphs, keyed by root artifact, excluded scopes and repositories. A graph
+ * is only stored when it can't change: no SNAPSHOT and no version range anywhere in it. Along with the graph the
+ * artifacts its nodes excluded are stored, since no selector sees them when the graph is replayed.
+ *
+ * Graphs are stored in a compact binary format, one file per key, with strings written once and referred to by
+ * index after that. Shared nodes stay shared.
+ */
+public class DependencyGraphCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGraphCache.class);
+
+    private static final int MAGIC = 0x41444743;
+    private static final int FORMAT = 2;
+
+    final File directory;
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final AtomicLong bypassed = new AtomicLong();
+
+    /**
+     * @param directory where graphs are stored, null disables the cache
+     */
+    public DependencyGraphCache(File directory) {
+        this.directory = directory;
+    }
+
+    public static File getDefaultDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".ardoq-maven-import"), "dependency-graphs");
+    }
+
+    /**
+     * @param root
+     * @param scopes excluded dependency scopes
+     * @param repositories
+     * @return the cache key of the graph
+     */
+    public static String getKey(Artifact root, String[] scopes, List<RemoteRepository> repositories) {
+        String[] sortedScopes = scopes.clone();
+        Arrays.sort(sortedScopes);
+        StringBuilder buffer = new StringBuilder(256);
+        buffer.append(FORMAT).append('\n').append(root).append('\n');
+        for (String scope : sortedScopes) {
+            buffer.append(scope).append(',');
+        }
+        for (RemoteRepository repository : repositories) {
+            buffer.append('\n').append(repository.getId()).append('=').append(repository.getUrl());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(buffer.toString().getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(40);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param artifact
+     * @return false for SNAPSHOTs and version ranges, whose graphs may change
+     */
+    public static boolean isCacheable(Artifact artifact) {
+        String version = artifact.getVersion();
+        return !artifact.isSnapshot() && !version.startsWith("[") && !version.startsWith("(");
+    }
+
+    /**
+     * @param root
+     * @return true if neither the root nor any node below it is a SNAPSHOT or was selected from a version range
+     */
+    public static boolean isCacheable(DependencyNode root) {
+        final boolean[] cacheable = { true };
+        root.accept(new DependencyVisitor() {
+            public boolean visitEnter(DependencyNode node) {
+                if (!isCacheable(node.getArtifact())
+                        || (node.getVersionConstraint() != null && node.getVersionConstraint().getRange() != null)) {
+                    cacheable[0] = false;
+                }
+                return cacheable[0];
+            }
+
+            public boolean visitLeave(DependencyNode node) {
+                return cacheable[0];
+            }
+        });
+        return cacheable[0];
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Counts a lookup that was skipped because the root can't be cached.
+     */
+    public void bypass() {
+        bypassed.incrementAndGet();
+    }
+
+    /**
+     * @param key
+     * @return the cached graph, or null if it has to be collected
+     */
+    public CachedGraph get(String key) {
+        File file = getFile(key);
+        if (file == null || !file.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            CachedGraph graph = new Decoder(in).read();
+            if (graph == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return graph;
+        } catch (IOException e) {
+            logger.debug("Error reading cached dependency graph " + file, e);
+            misses.incrementAndGet();
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * @param key
+     * @param root a graph for which isCacheable is true
+     * @param excluded artifacts excluded below the nodes of the graph, by owner
+     */
+    public void put(String key, DependencyNode root, Map<Artifact, ? extends Collection<Artifact>> excluded) {
+        File file = getFile(key);
+        if (file == null) {
+            return;
+        }
+        // write to a temporary file first, so concurrent runs never see a half written graph
+        DataOutputStream out = null;
+        File tmp = null;
+        try {
+            file.getParentFile().mkdirs();
+            tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            new Encoder(out).write(root, excluded);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException e) {
+            logger.debug("Error caching dependency graph " + file, e);
+        } finally {
+            IOUtil.close(out);
+            if (tmp != null && tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBypassed() {
+        return bypassed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Dependency graph cache: " + hits.get() + " hits, " + misses.get() + " misses, " + bypassed.get()
+                + " bypassed (SNAPSHOT or version range)";
+    }
+
+    private File getFile(String key) {
+        if (directory == null) {
+            return null;
+        }
+        return new File(new File(directory, key.substring(0, 2)), key + ".graph");
+    }
+
+    /**
+     * A graph read from the cache, with the exclusions recorded while it was collected.
+     */
+    public static class CachedGraph {
+
+        final DependencyNode root;
+        final Map<Artifact, List<Artifact>> excluded;
+
+        CachedGraph(DependencyNode root, Map<Artifact, List<Artifact>> excluded) {
+            this.root = root;
+            this.excluded = excluded;
+        }
+
+        public DependencyNode getRoot() {
+            return root;
+        }
+
+        public Map<Artifact, List<Artifact>> getExcluded() {
+            return excluded;
+        }
+    }
+
+    static class Encoder {
+
+        final DataOutputStream out;
+        final Map<String, Integer> strings = new HashMap<String, Integer>();
+        final Map<DependencyNode, Integer> ids = new IdentityHashMap<DependencyNode, Integer>();
+        final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+
+        Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(DependencyNode root, Map<Artifact, ? extends Collection<Artifact>> excluded) throws IOException {
+            number(root);
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(nodes.size());
+            for (DependencyNode node : nodes) {
+                writeNode(node);
+            }
+            for (DependencyNode node : nodes) {
+                out.writeInt(node.getChildren().size());
+                for (DependencyNode child : node.getChildren()) {
+                    out.writeInt(ids.get(child));
+                }
+            }
+
+            out.writeInt(excluded.size());
+            for (Map.Entry<Artifact, ? extends Collection<Artifact>> entry : excluded.entrySet()) {
+                writeArtifact(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Artifact artifact : entry.getValue()) {
+                    writeArtifact(artifact);
+                }
+            }
+        }
+
+        private void number(DependencyNode root) {
+            // iterative, graphs can be deep
+            List<DependencyNode> stack = new ArrayList<DependencyNode>();
+            stack.add(root);
+            while (!stack.isEmpty()) {
+                DependencyNode node = stack.remove(stack.size() - 1);
+                if (ids.containsKey(node)) {
+                    continue;
+                }
+                ids.put(node, nodes.size());
+                nodes.add(node);
+                for (DependencyNode child : node.getChildren()) {
+                    stack.add(child);
+                }
+            }
+        }
+
+        private void writeNode(DependencyNode node) throws IOException {
+            Dependency dependency = node.getDependency();
+            out.writeBoolean(dependency != null);
+            if (dependency != null) {
+                writeArtifact(dependency.getArtifact());
+                writeString(dependency.getScope());
+                Boolean optional = dependency.getOptional();
+                out.writeByte(optional == null ? 0 : optional.booleanValue() ? 2 : 1);
+                out.writeInt(dependency.getExclusions().size());
+                for (Exclusion exclusion : dependency.getExclusions()) {
+                    writeString(exclusion.getGroupId());
+                    writeString(exclusion.getArtifactId());
+                    writeString(exclusion.getClassifier());
+                    writeString(exclusion.getExtension());
+                }
+            } else {
+                writeArtifact(node.getArtifact());
+            }
+            out.writeInt(node.getManagedBits());
+            writeString(DependencyManagerUtils.getPremanagedVersion(node));
+            writeString(DependencyManagerUtils.getPremanagedScope(node));
+            Integer winner = ids.get(node.getData().get(ConflictResolver.NODE_DATA_WINNER));
+            out.writeInt(winner == null ? -1 : winner.intValue());
+        }
+
+        private void writeArtifact(Artifact artifact) throws IOException {
+            writeString(artifact.getGroupId());
+            writeString(artifact.getArtifactId());
+            writeString(artifact.getClassifier());
+            writeString(artifact.getExtension());
+            writeString(artifact.getVersion());
+            Map<String, String> properties = artifact.getProperties();
+            out.writeInt(properties.size());
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                writeString(property.getKey());
+                writeString(property.getValue());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                out.writeInt(index.intValue());
+                return;
+            }
+            // a new string, its index is the next free one
+            out.writeInt(strings.size());
+            out.writeUTF(value);
+            strings.put(value, strings.size());
+        }
+    }
+
+    static class Decoder {
+
+        final DataInputStream in;
+        final List<String> strings = new ArrayList<String>();
+
+        Decoder(DataInputStream in) {
+            this.in = in;
+        }
+
+        CachedGraph read() throws IOException {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                return null;
+            }
+            int count = in.readInt();
+            DefaultDependencyNode[] nodes = new DefaultDependencyNode[count];
+            int[] winners = new int[count];
+            for (int i = 0; i < count; i++) {
+                nodes[i] = readNode();
+                winners[i] = in.readInt();
+            }
+            for (int i = 0; i < count; i++) {
+                int childCount = in.readInt();
+                List<DependencyNode> children = new ArrayList<DependencyNode>(childCount);
+                for (int j = 0; j < childCount; j++) {
+                    children.add(nodes[in.readInt()]);
+                }
+                nodes[i].setChildren(children);
+                if (winners[i] >= 0) {
+                    nodes[i].setData(ConflictResolver.NODE_DATA_WINNER, nodes[winners[i]]);
+                }
+            }
+
+            int owners = in.readInt();
+            Map<Artifact, List<Artifact>> excluded = new LinkedHashMap<Artifact, List<Artifact>>();
+            for (int i = 0; i < owners; i++) {
+                Artifact owner = readArtifact();
+                int excludedCount = in.readInt();
+                List<Artifact> artifacts = new ArrayList<Artifact>(excludedCount);
+                for (int j = 0; j < excludedCount; j++) {
+                    artifacts.add(readArtifact());
+                }
+                excluded.put(owner, artifacts);
+            }
+            return new CachedGraph(count > 0 ? nodes[0] : null, excluded);
+        }
+
+        private DefaultDependencyNode readNode() throws IOException {
+            DefaultDependencyNode node;
+            if (in.readBoolean()) {
+                Artifact artifact = readArtifact();
+                String scope = readString();
+                int optional = in.readByte();
+                int exclusionCount = in.readInt();
+                List<Exclusion> exclusions = new ArrayList<Exclusion>(exclusionCount);
+                for (int i = 0; i < exclusionCount; i++) {
+                    exclusions.add(new Exclusion(readString(), readString(), readString(), readString()));
+                }
+                Boolean optionalFlag = optional == 0 ? null : Boolean.valueOf(optional == 2);
+                node = new DefaultDependencyNode(new Dependency(artifact, scope, optionalFlag, exclusions));
+            } else {
+                node = new DefaultDependencyNode(readArtifact());
+            }
+            node.setManagedBits(in.readInt());
+            String premanagedVersion = readString();
+            if (premanagedVersion != null) {
+                node.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_VERSION, premanagedVersion);
+            }
+            String premanagedScope = readString();
+            if (premanagedScope != null) {
+                node.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_SCOPE, premanagedScope);
+            }
+            return node;
+        }
+
+        private Artifact readArtifact() throws IOException {
+            String groupId = readString();
+            String artifactId = readString();
+            String classifier = readString();
+            String extension = readString();
+            String version = readString();
+            int propertyCount = in.readInt();
+            Map<String, String> properties = new HashMap<String, String>();
+            for (int i = 0; i < propertyCount; i++) {
+                properties.put(readString(), readString());
+            }
+            return new DefaultArtifact(groupId, artifactId, classifier, extension, version, properties, (File) null);
+        }
+
+        private String readString() throws IOException {
+            int index = in.readInt();
+            if (index < 0) {
+                return null;
+            }
+            if (index == strings.size()) {
+                strings.add(in.readUTF());
+            }
+            return strings.get(index);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.ardoq.mavenImport;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Thin client for {@link ImportDaemon}: submits the command line of one import, with the daemon's token and the
+ * working directory relative files are resolved against, streams its output to the console and returns its exit code.
+ *
+ * Usage: mavenimport submit [-port n] [import options] [artifactId ...]
+ */
+public class ImportClient {
+
+    public static void main(String[] args) throws IOException {
+        System.exit(submit(args));
+    }
+
+    /**
+     * @param args import arguments, optionally preceded by -port n
+     * @return the exit code of the import
+     * @throws IOException
+     */
+    public static int submit(String[] args) throws IOException {
+        int port = ImportDaemon.DEFAULT_PORT;
+        int first = 0;
+        if (args.length > 1 && "-port".equals(args[0])) {
+            port = Integer.parseInt(args[1]);
+            first = 2;
+        }
+
+        String token;
+        try {
+            token = ImportDaemon.readToken(port);
+        } catch (IOException e) {
+            System.err.println("Could not read the token of the import daemon on port " + port + " from "
+                    + ImportDaemon.getTokenFile(port) + ", start one as this user with 'mavenimport daemon'");
+            return 2;
+        }
+
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+        } catch (ConnectException e) {
+            System.err.println("No import daemon on port " + port + ", start one with 'mavenimport daemon'");
+            return 2;
+        }
+        try {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            writer.write(token);
+            writer.write('\n');
+            writer.write(new File("").getAbsolutePath());
+            writer.write('\n');
+            writer.write(String.valueOf(args.length - first));
+            writer.write('\n');
+            for (int i = first; i < args.length; i++) {
+                writer.write(args[i]);
+                writer.write('\n');
+            }
+            writer.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] buffer = new byte[8192];
+            while (true) {
+                int type = in.readByte();
+                if (type == ImportDaemon.FRAME_EXIT) {
+                    return in.readInt();
+                }
+                int length = in.readInt();
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+                if (type == ImportDaemon.FRAME_ERR) {
+                    System.err.write(buffer, 0, length);
+                    System.err.flush();
+                } else {
+                    System.out.write(buffer, 0, length);
+                    System.out.flush();
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+package com.ardoq.mavenImport;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.eclipse.aether.DefaultRepositoryCache;
+import org.eclipse.aether.RepositoryCache;
+import org.eclipse.aether.RepositorySystem;
+
+import com.ardoq.ArdoqClient;
+import com.ardoq.mavenImport.util.Booter;
+import com.ardoq.mavenImport.util.SharedModelCache;
+
+/**
+ * Runs imports submitted by {@link ImportClient} in one long running process, so the repository system, the
+ * artifact descriptors, POM metadata and parent models, and the Ardoq clients stay warm between imports.
+ *
+ * The daemon listens on a loopback port only, and only takes jobs that start with the token it writes at startup to
+ * a file only its owner can read, see {@link #getTokenFile}, so other local users can't run imports as its owner.
+ * Jobs are the usual command line arguments, with relative files resolved against the client's working directory;
+ * their console output is streamed back to the client, followed by the exit code. A client has a few seconds to send
+ * its job. Jobs run one at a time, in the order they connect, since
+ * the import writes to System.out. The warm state is dropped after the daemon has been idle for a while, and after
+ * a job that left the heap more than 70% full.
+ *
+ * The warm state can be shared by jobs running concurrently, see {@link BulkImport}.
+ */
+public class ImportDaemon {
+
+    public static final int DEFAULT_PORT = 7878;
+    public static final int DEFAULT_IDLE_MINUTES = 30;
+
+    static final double MAX_HEAP_SHARE = 0.7;
+
+    // time a client has to send each line of its job
+    static final int JOB_READ_TIMEOUT = 10000;
+
+    // exit code of a job that was turned away
+    static final int EXIT_REJECTED = 2;
+
+    // frames of the response stream: type byte, then an int length and the bytes, or an int exit code
+    static final int FRAME_OUT = 1;
+    static final int FRAME_ERR = 2;
+    static final int FRAME_EXIT = 3;
+
+    final int port;
+    final long idleMillis;
+    final RepositorySystem system;
+    String token;
+
+    RepositoryCache repositoryCache;
+    PomMetadataCache metadataCache;
+    PomMetadataCache effectiveMetadataCache;
+    SharedModelCache modelCache;
+    final Map<String, ArdoqClient> ardoqClients = new HashMap<String, ArdoqClient>();
+    boolean warm;
+    // jobs run alongside each other, see MavenUtil.setConcurrent
+    boolean concurrent;
+    // hits and misses of the metadata caches dropped with the warm state
+    long evictedMemoryHits;
+    long evictedDiskHits;
+    long evictedMisses;
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption(new Option("port", true, "Loopback port to listen on - defaults to " + DEFAULT_PORT));
+        options.addOption(new Option("idle", true, "Minutes without jobs before the warm state is dropped - defaults to " + DEFAULT_IDLE_MINUTES));
+        options.addOption(new Option("help", "print this help message"));
+
+        CommandLine cmd = new BasicParser().parse(options, args);
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("mavenimport daemon [options]", options);
+            return;
+        }
+        int port = Integer.parseInt(cmd.getOptionValue("port", String.valueOf(DEFAULT_PORT)));
+        int idleMinutes = Integer.parseInt(cmd.getOptionValue("idle", String.valueOf(DEFAULT_IDLE_MINUTES)));
+        new ImportDaemon(port, idleMinutes * 60000L).serve();
+    }
+
+    public ImportDaemon(int port, long idleMillis) {
+        this.port = port;
+        this.idleMillis = idleMillis;
+        this.system = Booter.newRepositorySystem();
+        newCaches();
+    }
+
+    /**
+     * @param port
+     * @return the file with the token of the daemon on the port, ~/.ardoq-maven-import/daemon-port.token
+     */
+    public static File getTokenFile(int port) {
+        return new File(new File(System.getProperty("user.home"), ".ardoq-maven-import"), "daemon-" + port + ".token");
+    }
+
+    public void serve() throws IOException {
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        server.setSoTimeout((int) Math.min(idleMillis, Integer.MAX_VALUE));
+        File tokenFile = getTokenFile(port);
+        try {
+            token = writeToken(tokenFile);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        System.out.println("Import daemon listening on 127.0.0.1:" + port + ", token in " + tokenFile);
+        try {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (warm) {
+                        evict("idle");
+                    }
+                    continue;
+                }
+                try {
+                    // a client that connects and sends nothing must not block the daemon
+                    socket.setSoTimeout(JOB_READ_TIMEOUT);
+                    handle(socket);
+                } catch (IOException e) {
+                    System.err.println("Error serving import job: " + e);
+                } catch (RuntimeException e) {
+                    // a malformed job must not stop the daemon
+                    System.err.println("Error serving import job: " + e);
+                } finally {
+                    socket.close();
+                }
+                if (isHeapFull()) {
+                    evict("memory");
+                }
+            }
+        } finally {
+            server.close();
+            tokenFile.delete();
+        }
+    }
+
+    /**
+     * Writes a new random token to a file only the current user can read and write.
+     * @param file
+     * @return the token
+     * @throws IOException
+     */
+    static String writeToken(File file) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b & 0xff));
+        }
+
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // created with the permissions, so it's never readable by others
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+            if (!file.setReadable(false, false) || !file.setReadable(true, true) || !file.setWritable(false, false)
+                    || !file.setWritable(true, true)) {
+                throw new IOException("Could not make " + file + " private");
+            }
+        }
+        Files.write(path, token.toString().getBytes(StandardCharsets.US_ASCII));
+        return token.toString();
+    }
+
+    /**
+     * @param port
+     * @return the token of the daemon on the port
+     * @throws IOException if there's no token file the current user can read
+     */
+    static String readToken(int port) throws IOException {
+        return new String(Files.readAllBytes(getTokenFile(port).toPath()), StandardCharsets.US_ASCII).trim();
+    }
+
+    void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        String jobToken = in.readLine();
+        if (jobToken == null || token == null
+                || !MessageDigest.isEqual(token.getBytes(StandardCharsets.US_ASCII), jobToken.getBytes(StandardCharsets.US_ASCII))) {
+            reject(socket, "Import job rejected, the daemon token doesn't match " + getTokenFile(port));
+            throw new IOException("Import job without a valid token");
+        }
+        String workingDirectory = in.readLine();
+        String count = in.readLine();
+        if (workingDirectory == null || count == null) {
+            throw new IOException("Incomplete import job");
+        }
+        String[] args = new String[Integer.parseInt(count)];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readLine();
+            if (args[i] == null) {
+                throw new IOException("Incomplete import job, " + i + " of " + args.length + " arguments");
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        PrintStream jobOut = new PrintStream(new FrameOutputStream(out, FRAME_OUT), true, "UTF-8");
+        PrintStream jobErr = new PrintStream(new FrameOutputStream(out, FRAME_ERR), true, "UTF-8");
+        PrintStream consoleOut = System.out;
+        PrintStream consoleErr = System.err;
+        consoleOut.println("Import job " + Arrays.asList(maskSecrets(args)) + " in " + workingDirectory);
+
+        int exitCode = 0;
+        long start = System.currentTimeMillis();
+        System.setOut(jobOut);
+        System.setErr(jobErr);
+        try {
+            ArdoqMavenImport.run(args, this, new File(workingDirectory));
+        } catch (Throwable t) {
+            t.printStackTrace(jobErr);
+            exitCode = 1;
+        } finally {
+            System.setOut(consoleOut);
+            System.setErr(consoleErr);
+        }
+        jobOut.flush();
+        jobErr.flush();
+        synchronized (out) {
+            out.writeByte(FRAME_EXIT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+        consoleOut.println("Import job done in " + (System.currentTimeMillis() - start) + "ms, exit code " + exitCode);
+    }
+
+    private static void reject(Socket socket, String message) throws IOException {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        out.writeByte(FRAME_ERR);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeByte(FRAME_EXIT);
+        out.writeInt(EXIT_REJECTED);
+        out.flush();
+    }
+
+    /**
+     * @return true if more than MAX_HEAP_SHARE of the maximum heap is in use
+     */
+    static boolean isHeapFull() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() > runtime.maxMemory() * MAX_HEAP_SHARE;
+    }
+
+    static String[] maskSecrets(String[] args) {
+        String[] masked = args.clone();
+        for (int i = 1; i < masked.length; i++) {
+            if ("-t".equals(masked[i - 1]) || "-p".equals(masked[i - 1])) {
+                masked[i] = "***";
+            }
+        }
+        return masked;
+    }
+
+    /**
+     * @param out
+     * @param localRepository
+     * @param scopes
+     * @return a MavenUtil using the daemon's repository system and caches
+     */
+    synchronized MavenUtil newMavenUtil(PrintStream out, File localRepository, String... scopes) {
+        warm = true;
+        MavenUtil mavenUtil = new MavenUtil(out, system, repositoryCache, localRepository, scopes);
+        mavenUtil.setModelCache(modelCache);
+        mavenUtil.setConcurrent(concurrent);
+        return mavenUtil;
+    }
+
+    /**
+     * @param concurrent true if jobs run alongside each other
+     */
+    synchronized void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * Adds the hits and misses of the shared metadata caches, since the daemon started, to the metrics.
+     * @param metrics
+     */
+    synchronized void addCacheMetrics(ImportMetrics metrics) {
+        metrics.count("cache_hits", "cache", "pom_metadata_memory", evictedMemoryHits + metadataCache.getMemoryHits() + effectiveMetadataCache.getMemoryHits());
+        metrics.count("cache_hits", "cache", "pom_metadata_disk", evictedDiskHits + metadataCache.getDiskHits() + effectiveMetadataCache.getDiskHits());
+        metrics.count("cache_misses", "cache", "pom_metadata", evictedMisses + metadataCache.getMisses() + effectiveMetadataCache.getMisses());
+    }
+
+    synchronized PomMetadataCache getMetadataCache(boolean effectiveModel) {
+        return effectiveModel ? effectiveMetadataCache : metadataCache;
+    }
+
+    synchronized ArdoqClient getArdoqClient(String host, String org, String token) {
+        String key = host + "\n" + org + "\n" + token;
+        ArdoqClient client = ardoqClients.get(key);
+        if (client == null) {
+            client = ArdoqMavenImport.newArdoqClient(host, org, token);
+            ardoqClients.put(key, client);
+        }
+        return client;
+    }
+
+    synchronized void evict(String reason) {
+        System.out.println("Dropping warm state (" + reason + "), " + metadataCache);
+        evictedMemoryHits += metadataCache.getMemoryHits() + effectiveMetadataCache.getMemoryHits();
+        evictedDiskHits += metadataCache.getDiskHits() + effectiveMetadataCache.getDiskHits();
+        evictedMisses += metadataCache.getMisses() + effectiveMetadataCache.getMisses();
+        newCaches();
+        ardoqClients.clear();
+        warm = false;
+    }
+
+    private void newCaches() {
+        repositoryCache = new DefaultRepositoryCache();
+        metadataCache = new PomMetadataCache(PomMetadataCache.getDefaultDirectory(), PomMetadataCache.DEFAULT_MEMORY_SIZE);
+        effectiveMetadataCache = new PomMetadataCache(PomMetadataCache.getDefaultEffectiveDirectory(), PomMetadataCache.DEFAULT_MEMORY_SIZE);
+        modelCache = new SharedModelCache();
+    }
+
+    /**
+     * Writes everything as frames of one type.
+     */
+    static class FrameOutputStream extends OutputStream {
+
+        final DataOutputStream out;
+        final int type;
+
+        FrameOutputStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+}
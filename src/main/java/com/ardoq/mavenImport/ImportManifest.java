@@ -0,0 +1,354 @@
+package com.ardoq.mavenImport;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The jobs of a bulk import, read from a CSV or JSON manifest of workspace to artifact rows.
+ *
+ * CSV: one {@code workspace,groupId:artifactId:version[,priority]} row per line, blank lines and lines starting with
+ * # are skipped, as is a header row starting with "workspace". JSON: an array of objects with "workspace", "gav" or
+ * an "artifacts" array, and an optional "priority".
+ *
+ * An import replaces the content of its workspace, so all rows of a workspace are coalesced into one job, with each
+ * artifact once and the highest priority of the rows. The manifest is read as a stream, only the coalesced jobs are
+ * kept.
+ */
+public class ImportManifest {
+
+    /**
+     * One import: the artifacts of a workspace.
+     */
+    public static class Job {
+        final String workspace;
+        final Set<String> artifacts = new LinkedHashSet<String>();
+        final int order;
+        int priority = Integer.MIN_VALUE;
+        int rows;
+
+        Job(String workspace, int order) {
+            this.workspace = workspace;
+            this.order = order;
+        }
+
+        public String getWorkspace() {
+            return workspace;
+        }
+
+        public Set<String> getArtifacts() {
+            return artifacts;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return number of manifest rows coalesced into this job
+         */
+        public int getRows() {
+            return rows;
+        }
+    }
+
+    final Map<String, Job> jobs = new LinkedHashMap<String, Job>();
+    int rows;
+    int duplicates;
+
+    /**
+     * @param file a .json manifest, anything else is read as CSV
+     * @return the manifest
+     * @throws IOException if the manifest can't be read or a row is invalid
+     */
+    public static ImportManifest read(File file) throws IOException {
+        ImportManifest manifest = new ImportManifest();
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            if (file.getName().toLowerCase().endsWith(".json")) {
+                manifest.readJson(reader, file.getName());
+            } else {
+                manifest.readCsv((BufferedReader) reader, file.getName());
+            }
+        } finally {
+            IOUtil.close(reader);
+        }
+        return manifest;
+    }
+
+    /**
+     * Adds a row, coalescing it into the job of its workspace.
+     * @param workspace
+     * @param artifact groupId:artifactId:version
+     * @param priority higher runs earlier
+     */
+    public void add(String workspace, String artifact, int priority) {
+        rows++;
+        Job job = jobs.get(workspace);
+        if (job == null) {
+            job = new Job(workspace, jobs.size());
+            jobs.put(workspace, job);
+        }
+        job.rows++;
+        job.priority = Math.max(job.priority, priority);
+        if (!job.artifacts.add(artifact)) {
+            duplicates++;
+        }
+    }
+
+    /**
+     * @return the jobs, highest priority first, then in the order of their first row
+     */
+    public List<Job> getJobs() {
+        List<Job> sorted = new ArrayList<Job>(jobs.values());
+        Collections.sort(sorted, new Comparator<Job>() {
+            public int compare(Job a, Job b) {
+                if (a.priority != b.priority) {
+                    return (a.priority > b.priority) ? -1 : 1;
+                }
+                return a.order - b.order;
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * @return number of rows read
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return number of rows repeating an artifact already in the job of their workspace
+     */
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public String toString() {
+        return "Import manifest: " + rows + " rows, " + jobs.size() + " jobs, " + duplicates + " duplicate rows";
+    }
+
+    void readCsv(BufferedReader reader, String name) throws IOException {
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#") || (number == 1 && line.toLowerCase().startsWith("workspace"))) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            if (columns.length < 2 || columns.length > 3) {
+                throw new IOException(name + ":" + number + ": expected workspace,groupId:artifactId:version[,priority]");
+            }
+            int priority = (columns.length > 2) ? parsePriority(columns[2].trim(), name + ":" + number) : 0;
+            addRow(columns[0].trim(), columns[1].trim(), priority, name + ":" + number);
+        }
+    }
+
+    void readJson(Reader reader, String name) throws IOException {
+        JsonReader json = new JsonReader(reader, name);
+        json.expect('[');
+        if (json.next(']')) {
+            return;
+        }
+        int number = 0;
+        do {
+            number++;
+            Object value = json.readValue();
+            if (!(value instanceof Map)) {
+                throw new IOException(name + ": job " + number + " is not an object");
+            }
+            addJson((Map<?, ?>) value, name + ": job " + number);
+        } while (json.next(','));
+        json.expect(']');
+    }
+
+    private void addJson(Map<?, ?> row, String source) throws IOException {
+        Object workspace = row.get("workspace");
+        Object priority = row.get("priority");
+        List<Object> artifacts = new ArrayList<Object>();
+        if (row.get("gav") != null) {
+            artifacts.add(row.get("gav"));
+        }
+        if (row.get("artifacts") instanceof List) {
+            artifacts.addAll((List<?>) row.get("artifacts"));
+        }
+        if (!(workspace instanceof String) || artifacts.isEmpty()) {
+            throw new IOException(source + ": expected \"workspace\" and \"gav\" or \"artifacts\"");
+        }
+        int p = (priority != null) ? parsePriority(String.valueOf(priority), source) : 0;
+        for (Object artifact : artifacts) {
+            addRow((String) workspace, String.valueOf(artifact), p, source);
+        }
+    }
+
+    private void addRow(String workspace, String artifact, int priority, String source) throws IOException {
+        if (workspace.length() == 0 || artifact.split(":").length < 3) {
+            throw new IOException(source + ": expected a workspace and groupId:artifactId:version, not '" + workspace + "', '" + artifact + "'");
+        }
+        add(workspace, artifact, priority);
+    }
+
+    private static int parsePriority(String priority, String source) throws IOException {
+        try {
+            return (int) Double.parseDouble(priority);
+        } catch (NumberFormatException e) {
+            throw new IOException(source + ": invalid priority '" + priority + "'");
+        }
+    }
+
+    /**
+     * Reads the JSON values of a manifest, one at a time, so the manifest is never held as a whole.
+     */
+    static class JsonReader {
+        final Reader reader;
+        final String name;
+        int peeked = -2;
+
+        JsonReader(Reader reader, String name) {
+            this.reader = reader;
+            this.name = name;
+        }
+
+        Object readValue() throws IOException {
+            int c = peek();
+            if (c == '{') {
+                read();
+                Map<String, Object> object = new LinkedHashMap<String, Object>();
+                if (next('}')) {
+                    return object;
+                }
+                do {
+                    String key = readString();
+                    expect(':');
+                    object.put(key, readValue());
+                } while (next(','));
+                expect('}');
+                return object;
+            }
+            if (c == '[') {
+                read();
+                List<Object> array = new ArrayList<Object>();
+                if (next(']')) {
+                    return array;
+                }
+                do {
+                    array.add(readValue());
+                } while (next(','));
+                expect(']');
+                return array;
+            }
+            if (c == '"') {
+                return readString();
+            }
+            if (c == -1) {
+                throw new IOException(name + ": unexpected end of file");
+            }
+            StringBuilder literal = new StringBuilder().append((char) read());
+            while ((c = reader.read()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                literal.append((char) c);
+            }
+            // whitespace is skipped by the next peek
+            peeked = Character.isWhitespace(c) ? -2 : c;
+            String value = literal.toString();
+            if ("null".equals(value)) {
+                return null;
+            }
+            if ("true".equals(value) || "false".equals(value)) {
+                return Boolean.valueOf(value);
+            }
+            try {
+                return Double.valueOf(value);
+            } catch (NumberFormatException e) {
+                throw new IOException(name + ": unexpected '" + value + "'");
+            }
+        }
+
+        String readString() throws IOException {
+            expect('"');
+            StringBuilder string = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != '"') {
+                if (c == -1) {
+                    throw new IOException(name + ": unterminated string");
+                }
+                if (c == '\\') {
+                    c = reader.read();
+                    switch (c) {
+                        case 'n': c = '\n'; break;
+                        case 't': c = '\t'; break;
+                        case 'r': c = '\r'; break;
+                        case 'b': c = '\b'; break;
+                        case 'f': c = '\f'; break;
+                        case 'u':
+                            char[] hex = new char[4];
+                            for (int i = 0; i < 4; i++) {
+                                hex[i] = (char) reader.read();
+                            }
+                            c = Integer.parseInt(new String(hex), 16);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                string.append((char) c);
+            }
+            return string.toString();
+        }
+
+        /**
+         * Skips the next character if it is c.
+         * @return true if it was
+         */
+        boolean next(char c) throws IOException {
+            if (peek() == c) {
+                read();
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) throws IOException {
+            if (!next(c)) {
+                int found = peek();
+                throw new IOException(name + ": expected '" + c + "' but found " + ((found == -1) ? "end of file" : "'" + (char) found + "'"));
+            }
+        }
+
+        /**
+         * @return the next character that isn't whitespace, without consuming it, -1 at the end
+         */
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                do {
+                    peeked = reader.read();
+                } while (peeked != -1 && Character.isWhitespace(peeked));
+            }
+            return peeked;
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            peeked = -2;
+            return c;
+        }
+    }
+
+}
@@ -0,0 +1,329 @@
+package com.ardoq.mavenImport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Counters, latency histograms and per-phase peak heap of one import, written as a JSON report and in the text format
+ * of the Prometheus node exporter's textfile collector.
+ *
+ * Operations are timed with {@code long start = System.nanoTime(); ... metrics.record("operation", start);}, which is
+ * cheap enough for every POM read and Ardoq request. Phases run one after the other on the importing thread, the peak
+ * heap of a phase is the sum of the peaks of the heap memory pools while it ran. The pools are global to the JVM, so
+ * imports running alongside others, as the jobs of a {@link BulkImport} do, leave the peaks out.
+ */
+public class ImportMetrics {
+
+    static final String PREFIX = "ardoq_maven_import_";
+
+    /** upper bounds of the latency buckets, in seconds */
+    static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 60};
+
+    final ConcurrentMap<String, Timer> timers = new ConcurrentSkipListMap<String, Timer>();
+    final ConcurrentMap<String, Counter> counters = new ConcurrentSkipListMap<String, Counter>();
+    final List<Phase> phases = new ArrayList<Phase>();
+
+    Phase phase;
+    boolean heapPeaks = true;
+
+    /**
+     * Adds the time since start to the latency histogram of an operation.
+     * @param operation
+     * @param start System.nanoTime() when the operation started
+     */
+    public void record(String operation, long start) {
+        Timer timer = timers.get(operation);
+        if (timer == null) {
+            Timer created = new Timer();
+            timer = timers.putIfAbsent(operation, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        timer.add(System.nanoTime() - start);
+    }
+
+    /**
+     * @param name counter name, e.g. "cache_hits"
+     * @param labelName name of the counter's label, e.g. "cache"
+     * @param label value of the label, e.g. the name of the cache
+     * @param delta
+     */
+    public void count(String name, String labelName, String label, long delta) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter(labelName);
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        AtomicLong value = counter.values.get(label);
+        if (value == null) {
+            AtomicLong created = new AtomicLong();
+            value = counter.values.putIfAbsent(label, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        value.addAndGet(delta);
+    }
+
+    /**
+     * @param name
+     * @param label
+     * @return the value of a counter, 0 if it wasn't counted
+     */
+    public long getCount(String name, String label) {
+        Counter counter = counters.get(name);
+        AtomicLong value = (counter != null) ? counter.values.get(label) : null;
+        return (value != null) ? value.get() : 0;
+    }
+
+    public boolean isHeapPeaks() {
+        return heapPeaks;
+    }
+
+    /**
+     * @param heapPeaks false to neither reset nor report the peaks of the heap memory pools, when other imports run
+     * in the same JVM
+     */
+    public synchronized void setHeapPeaks(boolean heapPeaks) {
+        this.heapPeaks = heapPeaks;
+    }
+
+    /**
+     * Ends the current phase, if any, and starts the next.
+     * @param name
+     */
+    public synchronized void startPhase(String name) {
+        endPhase();
+        if (heapPeaks) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+        phase = new Phase(name, System.nanoTime());
+    }
+
+    public synchronized void endPhase() {
+        if (phase == null) {
+            return;
+        }
+        phase.nanos = System.nanoTime() - phase.start;
+        if (heapPeaks) {
+            phase.peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    phase.peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+        }
+        phases.add(phase);
+        phase = null;
+    }
+
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"operations\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            json.append(separator).append("    ").append(quote(entry.getKey())).append(": {\"count\": ").append(timer.count.get())
+                    .append(", \"totalSeconds\": ").append(seconds(timer.nanos.get()))
+                    .append(", \"maxSeconds\": ").append(seconds(timer.max.get()))
+                    .append(", \"buckets\": {");
+            for (int i = 0; i <= BUCKETS.length; i++) {
+                json.append(i > 0 ? ", " : "").append(quote(i < BUCKETS.length ? number(BUCKETS[i]) : "+Inf")).append(": ").append(timer.buckets.get(i));
+            }
+            json.append("}}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            json.append(separator).append("    ").append(quote(entry.getKey())).append(": {");
+            String valueSeparator = "";
+            for (Map.Entry<String, AtomicLong> value : entry.getValue().values.entrySet()) {
+                json.append(valueSeparator).append(quote(value.getKey())).append(": ").append(value.getValue().get());
+                valueSeparator = ", ";
+            }
+            json.append("}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"phases\": [");
+        separator = "\n";
+        for (Phase p : phases) {
+            json.append(separator).append("    {\"name\": ").append(quote(p.name)).append(", \"seconds\": ").append(seconds(p.nanos));
+            if (p.peakHeap >= 0) {
+                json.append(", \"peakHeapBytes\": ").append(p.peakHeap);
+            }
+            json.append("}");
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    public synchronized String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        String name = PREFIX + "operation_seconds";
+        text.append("# HELP ").append(name).append(" Latency of Maven and Ardoq operations.\n");
+        text.append("# TYPE ").append(name).append(" histogram\n");
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            String label = "operation=" + quote(entry.getKey());
+            long cumulative = 0;
+            for (int i = 0; i <= BUCKETS.length; i++) {
+                cumulative += timer.buckets.get(i);
+                text.append(name).append("_bucket{").append(label).append(",le=").append(quote(i < BUCKETS.length ? number(BUCKETS[i]) : "+Inf"))
+                        .append("} ").append(cumulative).append('\n');
+            }
+            text.append(name).append("_sum{").append(label).append("} ").append(seconds(timer.nanos.get())).append('\n');
+            text.append(name).append("_count{").append(label).append("} ").append(timer.count.get()).append('\n');
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            name = PREFIX + entry.getKey() + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<String, AtomicLong> value : entry.getValue().values.entrySet()) {
+                text.append(name).append('{').append(entry.getValue().labelName).append('=').append(quote(value.getKey())).append("} ").append(value.getValue().get()).append('\n');
+            }
+        }
+        text.append("# TYPE ").append(PREFIX).append("phase_seconds gauge\n");
+        for (Phase p : phases) {
+            text.append(PREFIX).append("phase_seconds{phase=").append(quote(p.name)).append("} ").append(seconds(p.nanos)).append('\n');
+        }
+        text.append("# TYPE ").append(PREFIX).append("phase_peak_heap_bytes gauge\n");
+        for (Phase p : phases) {
+            if (p.peakHeap >= 0) {
+                text.append(PREFIX).append("phase_peak_heap_bytes{phase=").append(quote(p.name)).append("} ").append(p.peakHeap).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    public void writeJson(File file) throws IOException {
+        write(file, toJson());
+    }
+
+    /**
+     * @param file a file with the .prom extension in the textfile collector's directory
+     * @throws IOException
+     */
+    public void writePrometheus(File file) throws IOException {
+        write(file, toPrometheus());
+    }
+
+    // write to a temporary file first, the textfile collector may read at any time
+    private static void write(File file, String content) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+            out.write(content);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Could not write " + file);
+                }
+            }
+        } finally {
+            IOUtil.close(out);
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c == '\n') {
+                quoted.append("\\n");
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String seconds(long nanos) {
+        return number(nanos / 1e9);
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ENGLISH, "%.6f", value).replaceAll("0+$", "").replaceAll("\\.$", "");
+    }
+
+    static class Timer {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+        final AtomicLong max = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+
+        void add(long elapsed) {
+            count.incrementAndGet();
+            nanos.addAndGet(elapsed);
+            long current = max.get();
+            while (elapsed > current && !max.compareAndSet(current, elapsed)) {
+                current = max.get();
+            }
+            double seconds = elapsed / 1e9;
+            int bucket = 0;
+            while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+        }
+    }
+
+    static class Counter {
+        final String labelName;
+        final ConcurrentMap<String, AtomicLong> values = new ConcurrentSkipListMap<String, AtomicLong>();
+
+        Counter(String labelName) {
+            this.labelName = labelName;
+        }
+    }
+
+    static class Phase {
+        final String name;
+        final long start;
+        long nanos;
+        // -1 if the peaks weren't measured
+        long peakHeap = -1;
+
+        Phase(String name, long start) {
+            this.name = name;
+            this.start = start;
+        }
+    }
+
+}
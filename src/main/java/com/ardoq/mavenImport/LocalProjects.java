@@ -0,0 +1,311 @@
+package com.ardoq.mavenImport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.WorkspaceReader;
+import org.eclipse.aether.repository.WorkspaceRepository;
+
+/**
+ * Projects imported from pom.xml files on disk, e.g. a checkout of a multi-module repository, instead of from a
+ * Maven repository.
+ *
+ * The directory tree is walked once and all POMs in it are parsed in parallel. Modules are linked to their POMs by
+ * the relative path in the modules section, so their coordinates are read, not guessed from the module name. As
+ * the workspace reader of the session, like the reactor in a Maven build, the local POMs are found by the repository
+ * system when a dependency graph is collected, so only external dependencies are resolved from repositories.
+ */
+public class LocalProjects implements WorkspaceReader {
+
+    /** directories that don't contain modules: build output, dependencies of other tools and hidden directories */
+    static final Set<String> SKIPPED_DIRECTORIES = new HashSet<String>(Arrays.asList("target", "node_modules", "bower_components"));
+
+    final MavenUtil mavenUtil;
+    final int threads;
+    final WorkspaceRepository repository = new WorkspaceRepository("local-projects");
+
+    final Map<String, LocalProject> projects = new ConcurrentHashMap<String, LocalProject>();
+    final Map<File, LocalProject> files = new ConcurrentHashMap<File, LocalProject>();
+
+    /**
+     * @param mavenUtil reads the POMs, with the effective model if enabled
+     * @param threads number of POMs parsed at a time
+     */
+    public LocalProjects(MavenUtil mavenUtil, int threads) {
+        this.mavenUtil = mavenUtil;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Reads the POMs of a directory tree, or a POM and its modules.
+     * @param file a directory, or a POM file
+     * @return coordinates of the given POM, or of the projects in the directory that aren't a module of another
+     * @throws IOException
+     */
+    public List<String> add(File file) throws IOException {
+        file = file.getCanonicalFile();
+        List<File> poms = file.isDirectory() ? findPoms(file) : Collections.singletonList(file);
+        List<LocalProject> added = read(poms);
+        if (!file.isDirectory()) {
+            readParents(added);
+            return Collections.singletonList(files.get(file).gav);
+        }
+
+        Set<LocalProject> modules = new HashSet<LocalProject>();
+        for (LocalProject project : added) {
+            for (String module : project.modules.values()) {
+                modules.add(projects.get(module));
+            }
+        }
+        List<String> roots = new ArrayList<String>();
+        for (LocalProject project : added) {
+            if (!modules.contains(project)) {
+                roots.add(project.gav);
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @param directory
+     * @return the pom.xml files in the tree, in path order
+     * @throws IOException
+     */
+    static List<File> findPoms(File directory) throws IOException {
+        final List<File> poms = new ArrayList<File>();
+        final Path root = directory.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName().toString();
+                if (!dir.equals(root) && (name.startsWith(".") || SKIPPED_DIRECTORIES.contains(name))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if ("pom.xml".equals(file.getFileName().toString()) && attrs.isRegularFile()) {
+                    poms.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(poms);
+        return poms;
+    }
+
+    /**
+     * Parses the POMs in parallel, then links their modules. Modules outside the given files, e.g. in a skipped
+     * directory, are read in another round.
+     * @param poms canonical POM files
+     * @return the projects read, in the order of the files
+     */
+    private List<LocalProject> read(List<File> poms) throws IOException {
+        List<LocalProject> added = new ArrayList<LocalProject>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Collection<File> pending = new LinkedHashSet<File>();
+            for (File pom : poms) {
+                if (!files.containsKey(pom)) {
+                    pending.add(pom);
+                }
+            }
+            while (!pending.isEmpty()) {
+                List<Future<LocalProject>> futures = new ArrayList<Future<LocalProject>>();
+                for (final File pom : pending) {
+                    futures.add(executor.submit(new Callable<LocalProject>() {
+                        public LocalProject call() {
+                            return new LocalProject(pom, mavenUtil.readMetadata(pom));
+                        }
+                    }));
+                }
+                Set<File> unread = new LinkedHashSet<File>();
+                for (Future<LocalProject> future : futures) {
+                    LocalProject project = get(future);
+                    files.put(project.pom, project);
+                    LocalProject same = projects.get(project.gav);
+                    if (same != null) {
+                        mavenUtil.getReporter().printError("Local project " + project.gav + " in " + project.pom + " is also in " + same.pom + ", ignoring the former");
+                        continue;
+                    }
+                    projects.put(project.gav, project);
+                    added.add(project);
+                    for (String module : project.metadata.getModules()) {
+                        File pom = getModulePom(project, module);
+                        if (pom != null && !files.containsKey(pom) && !pending.contains(pom)) {
+                            unread.add(pom);
+                        }
+                    }
+                }
+                pending = unread;
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (LocalProject project : added) {
+            for (String module : project.metadata.getModules()) {
+                File pom = getModulePom(project, module);
+                if (pom == null) {
+                    mavenUtil.getReporter().printError("Module " + module + " of " + project.gav + " not found in " + project.pom.getParentFile());
+                } else {
+                    project.modules.put(module, files.get(pom).gav);
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Reads the parents of the projects from the directories above them, if they are there. The streaming reader
+     * doesn't keep the relativePath of a parent, so each pom.xml up the tree is tried, which covers the default
+     * ../pom.xml as well as aggregators in between. The climb stops at the first directory without a pom.xml, so it
+     * doesn't wander out of the source tree, e.g. into a pom.xml in the home directory.
+     */
+    private void readParents(List<LocalProject> added) throws IOException {
+        List<LocalProject> children = new ArrayList<LocalProject>(added);
+        while (!children.isEmpty()) {
+            LocalProject child = children.remove(children.size() - 1);
+            String parentId = child.metadata.getParentId();
+            if (parentId == null) {
+                continue;
+            }
+            String parentGav = parentId.replace(":pom:", ":");
+            for (File directory = child.pom.getParentFile().getParentFile(); directory != null && !projects.containsKey(parentGav); directory = directory.getParentFile()) {
+                File pom = new File(directory, "pom.xml");
+                if (!pom.isFile()) {
+                    break;
+                }
+                if (!files.containsKey(pom)) {
+                    children.addAll(read(Collections.singletonList(pom)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the canonical POM file of a module, null if it doesn't exist
+     */
+    private static File getModulePom(LocalProject project, String module) throws IOException {
+        File pom = new File(project.pom.getParentFile(), module);
+        if (pom.isDirectory()) {
+            pom = new File(pom, "pom.xml");
+        }
+        return pom.isFile() ? pom.getCanonicalFile() : null;
+    }
+
+    private static LocalProject get(Future<LocalProject> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error reading local project: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * @param gav groupId:artifactId:version
+     * @return the metadata of the local project, null if there is none
+     */
+    public PomMetadata getMetadata(String gav) {
+        LocalProject project = projects.get(gav);
+        return (project != null) ? project.metadata : null;
+    }
+
+    /**
+     * @param artifact
+     * @return true if the artifact is a local project
+     */
+    public boolean contains(Artifact artifact) {
+        return projects.containsKey(getGav(artifact));
+    }
+
+    /**
+     * @param project
+     * @param module
+     * @return coordinates of the module, linked by its path, or null if the project isn't local or the module wasn't found
+     */
+    public String getModuleId(PomMetadata project, String module) {
+        LocalProject local = projects.get(project.getGroupId() + ":" + project.getArtifactId() + ":" + project.getVersion());
+        return (local != null) ? local.modules.get(module) : null;
+    }
+
+    public int size() {
+        return projects.size();
+    }
+
+    public WorkspaceRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Only POMs are provided, jars aren't needed for the import.
+     */
+    public File findArtifact(Artifact artifact) {
+        if (!"pom".equals(artifact.getExtension())) {
+            return null;
+        }
+        LocalProject project = projects.get(getGav(artifact));
+        return (project != null) ? project.pom : null;
+    }
+
+    public List<String> findVersions(Artifact artifact) {
+        List<String> versions = new ArrayList<String>();
+        for (LocalProject project : projects.values()) {
+            if (project.metadata.getGroupId().equals(artifact.getGroupId()) && project.metadata.getArtifactId().equals(artifact.getArtifactId())) {
+                versions.add(project.metadata.getVersion());
+            }
+        }
+        return versions;
+    }
+
+    @Override
+    public String toString() {
+        return "Local projects: " + projects.size() + " POMs";
+    }
+
+    private static String getGav(Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getBaseVersion();
+    }
+
+    static class LocalProject {
+        final File pom;
+        final PomMetadata metadata;
+        final String gav;
+        // module name -> coordinates
+        final Map<String, String> modules = new LinkedHashMap<String, String>();
+
+        LocalProject(File pom, PomMetadata metadata) {
+            this.pom = pom;
+            this.metadata = metadata;
+            this.gav = metadata.getGroupId() + ":" + metadata.getArtifactId() + ":" + metadata.getVersion();
+        }
+    }
+
+}
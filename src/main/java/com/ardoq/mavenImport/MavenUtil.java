@@ -1,48 +1,144 @@
 package com.ardoq.mavenImport;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.util.HashMap;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.maven.model.License;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelCache;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.resolution.ModelResolver;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryCache;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.DependencyVisitor;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.util.listener.ChainedTransferListener;
 import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.eclipse.aether.util.repository.SimpleArtifactDescriptorPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.ardoq.mavenImport.util.ArdoqExclusionDependencySelector;
+import com.ardoq.mavenImport.DependencyGraphCache.CachedGraph;
+import com.ardoq.mavenImport.jfr.EventSpan;
+import com.ardoq.mavenImport.jfr.ImportEventType;
+import com.ardoq.mavenImport.jfr.ImportEvents;
+import com.ardoq.mavenImport.util.AetherModelResolver;
 import com.ardoq.mavenImport.util.Booter;
+import com.ardoq.mavenImport.util.ConcurrentDependencyCollector;
+import com.ardoq.mavenImport.util.ConsoleReporter;
+import com.ardoq.mavenImport.util.ExclusionTracker;
+import com.ardoq.mavenImport.util.ExclusionWalker;
+import com.ardoq.mavenImport.util.ImportModelCache;
+import com.ardoq.mavenImport.util.SharedModelCache;
 
 public class MavenUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(MavenUtil.class);
 
+    /** POMs per request of resolvePoms */
+    static final int BULK_RESOLVE_SIZE = 32;
+
     final RepositorySystem system;
-    final RepositorySystemSession session;
+    final DefaultRepositorySystemSession session;
     final List<RemoteRepository> repos;
     final PrintStream printStream;
-    private Map<Artifact,ArdoqExclusionDependencySelector> dependencySelectors;
+    final ConsoleReporter reporter;
+    final String[] scopes;
+    private final ExclusionTracker exclusionTracker = new ExclusionTracker();
+    private PomMetadataCache metadataCache;
+    // counters of the metadata cache when this import took it, it may be used by earlier imports of a daemon
+    private long[] metadataCacheBase;
+    // other imports run in the same JVM, see setConcurrent
+    private boolean concurrent;
+    private DependencyGraphCache graphCache;
+    private boolean effectiveModel;
+    // set by the offline check, see setStrict
+    private volatile boolean strict;
+    private ImportMetrics metrics = new ImportMetrics();
+    private final ModelBuilder modelBuilder = new DefaultModelBuilderFactory().newInstance();
+    // parent and imported models, shared by all effective model builds
+    private SharedModelCache modelCache = new SharedModelCache();
+    private ImportModelCache importModelCache;
+    // POM files resolved in bulk by resolvePoms, waiting to be parsed
+    private final Map<String, File> resolvedPoms = new ConcurrentHashMap<String, File>();
+    // projects read from disk, null unless any were added
+    private volatile LocalProjects localProjects;
 
     public MavenUtil(PrintStream out, String ... scopes){
+        this(out, Booter.getDefaultLocalRepository(), scopes);
+    }
+
+    /**
+     * @param out
+     * @param localRepository the local repository, may be shared with other processes
+     * @param scopes dependency scopes to exclude
+     */
+    public MavenUtil(PrintStream out, File localRepository, String ... scopes){
+        this(out, Booter.newRepositorySystem(), null, localRepository, scopes);
+    }
+
+    /**
+     * For long running processes that import many times with the same repository system and caches.
+     * @param out
+     * @param system a repository system shared by all imports
+     * @param cache a repository cache shared by all imports (artifact descriptors), null for a new one
+     * @param localRepository the local repository, may be shared with other processes
+     * @param scopes dependency scopes to exclude
+     */
+    public MavenUtil(PrintStream out, RepositorySystem system, RepositoryCache cache, File localRepository, String ... scopes){
         this.printStream = out;
-        dependencySelectors = new HashMap<Artifact,ArdoqExclusionDependencySelector>();
-        this.system = Booter.newRepositorySystem();
-        this.session = Booter.newRepositorySystemSession(system, out, dependencySelectors, scopes);
+        this.reporter = new ConsoleReporter(out);
+        this.scopes = scopes;
+        this.system = system;
+        this.session = Booter.newRepositorySystemSession(system, reporter, localRepository, scopes);
+        if (cache != null) {
+            session.setCache(cache);
+        }
         this.repos = Booter.newRepositories(system, session);
+        session.setTransferListener(ChainedTransferListener.newInstance(session.getTransferListener(), new AbstractTransferListener() {
+            @Override
+            public void transferSucceeded(TransferEvent event) {
+                metrics.count("transferred_bytes", "repository", event.getResource().getRepositoryUrl(), event.getTransferredBytes());
+                metrics.count("transfers", "repository", event.getResource().getRepositoryUrl(), 1);
+            }
+
+            @Override
+            public void transferFailed(TransferEvent event) {
+                metrics.count("failed_transfers", "repository", event.getResource().getRepositoryUrl(), 1);
+            }
+        }));
+        setMetadataCache(new PomMetadataCache(PomMetadataCache.getDefaultDirectory(), PomMetadataCache.DEFAULT_MEMORY_SIZE));
+        this.graphCache = new DependencyGraphCache(DependencyGraphCache.getDefaultDirectory());
+        this.importModelCache = new ImportModelCache(modelCache, session);
     }
 
     public RepositorySystem getSystem() {
@@ -53,8 +149,8 @@ public class MavenUtil {
         return session;
     }
 
-    public Map<Artifact,ArdoqExclusionDependencySelector> getDependencySelectors() {
-        return dependencySelectors;
+    public ExclusionTracker getExclusionTracker() {
+        return exclusionTracker;
     }
 
     public List<RemoteRepository> getRepos() {
@@ -65,6 +161,156 @@ public class MavenUtil {
         return printStream;
     }
 
+    /**
+     * @return the asynchronous console of the import, use it instead of the print stream
+     */
+    public ConsoleReporter getReporter() {
+        return reporter;
+    }
+
+    public boolean isQuiet() {
+        return !reporter.isVerbose();
+    }
+
+    /**
+     * In quiet mode only the summary of the import and errors are printed, not every artifact resolved,
+     * transferred and written.
+     * @param quiet
+     */
+    public void setQuiet(boolean quiet) {
+        reporter.setVerbose(!quiet);
+    }
+
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(ImportMetrics metrics) {
+        this.metrics = metrics;
+        metrics.setHeapPeaks(!concurrent);
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Set when other imports run in the same JVM, as the jobs of a bulk import do. The metrics then leave out what
+     * the imports can't tell apart: the peak heap of the phases and the counters of the shared metadata cache.
+     * @param concurrent
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+        metrics.setHeapPeaks(!concurrent);
+    }
+
+    /**
+     * Adds the hits and misses of the caches during this import to the metrics.
+     */
+    public void addCacheMetrics() {
+        if (!concurrent) {
+            metrics.count("cache_hits", "cache", "pom_metadata_memory", metadataCache.getMemoryHits() - metadataCacheBase[0]);
+            metrics.count("cache_hits", "cache", "pom_metadata_disk", metadataCache.getDiskHits() - metadataCacheBase[1]);
+            metrics.count("cache_misses", "cache", "pom_metadata", metadataCache.getMisses() - metadataCacheBase[2]);
+        }
+        metrics.count("cache_hits", "cache", "dependency_graph", graphCache.getHits());
+        metrics.count("cache_misses", "cache", "dependency_graph", graphCache.getMisses());
+        metrics.count("cache_bypassed", "cache", "dependency_graph", graphCache.getBypassed());
+        if (effectiveModel) {
+            metrics.count("cache_hits", "cache", "effective_model", importModelCache.getHits());
+            metrics.count("cache_misses", "cache", "effective_model", importModelCache.getMisses());
+        }
+    }
+
+    public PomMetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    public void setMetadataCache(PomMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+        this.metadataCacheBase = new long[] { metadataCache.getMemoryHits(), metadataCache.getDiskHits(), metadataCache.getMisses() };
+    }
+
+    public boolean isEffectiveModel() {
+        return effectiveModel;
+    }
+
+    /**
+     * In effective model mode POMs are read with inheritance from their parents and property interpolation, so
+     * inherited coordinates, licenses and developers are filled in. Parent models are built once per run and shared.
+     * Effective and raw metadata differ, so this also switches to a separate default metadata cache.
+     * @param effectiveModel
+     */
+    public void setEffectiveModel(boolean effectiveModel) {
+        this.effectiveModel = effectiveModel;
+        File directory = effectiveModel ? PomMetadataCache.getDefaultEffectiveDirectory() : PomMetadataCache.getDefaultDirectory();
+        setMetadataCache(new PomMetadataCache(directory, PomMetadataCache.DEFAULT_MEMORY_SIZE));
+    }
+
+    public SharedModelCache getModelCache() {
+        return modelCache;
+    }
+
+    /**
+     * @param modelCache parent and imported models that may be shared with other imports, SNAPSHOTs and local projects
+     * are kept apart, see ImportModelCache
+     */
+    public void setModelCache(SharedModelCache modelCache) {
+        this.modelCache = modelCache;
+        this.importModelCache = new ImportModelCache(modelCache, session);
+    }
+
+    public DependencyGraphCache getGraphCache() {
+        return graphCache;
+    }
+
+    public void setGraphCache(DependencyGraphCache graphCache) {
+        this.graphCache = graphCache;
+    }
+
+    /**
+     * @param threads number of artifact descriptors read concurrently while collecting dependencies, 1 reads them one at a time
+     */
+    public void setCollectorThreads(int threads) {
+        session.setConfigProperty(ConcurrentDependencyCollector.CONFIG_PROP_THREADS, threads);
+    }
+
+    /**
+     * @param threads number of concurrent downloads per repository when resolving artifacts in bulk
+     */
+    public void setDownloadThreads(int threads) {
+        session.setConfigProperty("aether.connector.basic.threads", threads);
+    }
+
+    /**
+     * In offline mode artifacts are only resolved from the local repository and file:// repositories. Other
+     * repositories are kept, so artifacts already downloaded from them are still found in the local repository.
+     * @param offline
+     */
+    public void setOffline(boolean offline) {
+        session.setOffline(offline);
+        session.setConfigProperty("aether.offline.protocols", offline ? "file" : null);
+    }
+
+    public boolean isOffline() {
+        return session.isOffline();
+    }
+
+    /**
+     * In strict mode a POM missing anywhere in a dependency graph fails the collection, where the session otherwise
+     * carries on without the dependencies of that artifact. The metadata and graph caches are bypassed, so every POM
+     * is looked up in the repositories again. Used by the offline check, invalid POMs are still tolerated.
+     * @param strict
+     */
+    public void setStrict(boolean strict) {
+        this.strict = strict;
+        session.setArtifactDescriptorPolicy(new SimpleArtifactDescriptorPolicy(!strict, true));
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
     public void addRepository(String url){
         RemoteRepository.Builder b = new RemoteRepository.Builder("custom","default",url);
         this.repos.add(b.build());
@@ -79,26 +325,209 @@ public class MavenUtil {
         this.repos.add(b.build());
     }
 
+    /**
+     * Reads the POMs of a directory tree, or a POM and its modules, from disk. From then on they are found without
+     * asking a repository, including while dependency graphs are collected.
+     * @param file a directory, or a POM file
+     * @param threads number of POMs parsed at a time
+     * @return coordinates of the given POM, or of the projects in the directory that aren't a module of another
+     * @throws IOException
+     */
+    public synchronized List<String> addLocalProjects(File file, int threads) throws IOException {
+        if (localProjects == null) {
+            localProjects = new LocalProjects(this, threads);
+            session.setWorkspaceReader(localProjects);
+        }
+        return localProjects.add(file);
+    }
+
+    /**
+     * @return the projects read from disk, or null
+     */
+    public LocalProjects getLocalProjects() {
+        return localProjects;
+    }
+
+    /**
+     * @param project
+     * @param module
+     * @return coordinates of the module: those of its POM if the project was read from disk, otherwise assuming
+     * that the module name equals the artifactId
+     */
+    public String getModuleId(PomMetadata project, String module) {
+        String id = (localProjects != null) ? localProjects.getModuleId(project, module) : null;
+        return (id != null) ? id : ProjectSync.getModuleId(project, module);
+    }
+
+    private boolean isLocal(Artifact artifact) {
+        return localProjects != null && localProjects.contains(artifact);
+    }
+
+    private boolean containsLocal(DependencyNode root) {
+        if (localProjects == null) {
+            return false;
+        }
+        final boolean[] found = new boolean[1];
+        root.accept(new DependencyVisitor() {
+            public boolean visitEnter(DependencyNode node) {
+                found[0] |= node.getArtifact() != null && localProjects.contains(node.getArtifact());
+                return !found[0];
+            }
+
+            public boolean visitLeave(DependencyNode node) {
+                return !found[0];
+            }
+        });
+        return found[0];
+    }
+
     public MavenProject loadProject(String projectStr) throws ArtifactResolutionException {
         Artifact artifact = new DefaultArtifact(projectStr);
         return loadProject(artifact);
     }
 
+    public PomMetadata loadMetadata(String projectStr) throws ArtifactResolutionException {
+        Artifact artifact = new DefaultArtifact(projectStr);
+        return loadMetadata(artifact);
+    }
+
+    /**
+     * Like loadProject, but served from the metadata cache when possible.
+     * @param artifact
+     * @return the metadata of the artifact's POM
+     * @throws ArtifactResolutionException
+     */
+    public PomMetadata loadMetadata(Artifact artifact) throws ArtifactResolutionException {
+        long start = System.nanoTime();
+        try {
+            String gav = getGav(artifact);
+            if (localProjects != null) {
+                // read from disk when added, and never cached since they change between imports
+                PomMetadata local = localProjects.getMetadata(gav);
+                if (local != null) {
+                    return local;
+                }
+            }
+            PomMetadata metadata = strict ? null : metadataCache.get(gav);
+            if (metadata == null) {
+                File pomFile = resolvePom(artifact);
+                EventSpan event = ImportEvents.begin(ImportEventType.POM_PARSE).gav(gav);
+                if (event.isRecording()) {
+                    event.bytes(pomFile.length());
+                }
+                metadata = readMetadata(pomFile);
+                event.end(effectiveModel ? "effective" : "parsed");
+                metadataCache.put(gav, metadata, !artifact.isSnapshot());
+            }
+            return metadata;
+        } finally {
+            metrics.record("load_metadata", start);
+        }
+    }
+
+    /**
+     * Extracts the metadata with the streaming reader, falling back to the full Maven model for POMs it can't read.
+     * @param pomFile
+     * @return the metadata of the POM
+     */
+    public static PomMetadata loadMetadata(File pomFile) {
+        try {
+            return PomMetadataReader.read(pomFile);
+        } catch (Exception e) {
+            logger.debug("Streaming read of " + pomFile + " failed, reading the full model", e);
+            return PomMetadata.fromProject(loadProject(pomFile));
+        }
+    }
+
+    PomMetadata readMetadata(File pomFile) {
+        long start = System.nanoTime();
+        try {
+            if (effectiveModel) {
+                try {
+                    return PomMetadata.fromProject(loadEffectiveProject(pomFile));
+                } catch (ModelBuildingException e) {
+                    logger.debug("Could not build the effective model of " + pomFile + ", reading the POM as is", e);
+                }
+            }
+            return loadMetadata(pomFile);
+        } finally {
+            metrics.record("read_pom", start);
+        }
+    }
+
+    /**
+     * Builds the effective model of a POM, resolving its parents through the repository system.
+     * @param pomFile
+     * @return the project
+     * @throws ModelBuildingException
+     */
+    public MavenProject loadEffectiveProject(File pomFile) throws ModelBuildingException {
+        return new MavenProject(buildEffectiveModel(pomFile, new AetherModelResolver(system, session, repos)));
+    }
+
+    /**
+     * Builds the effective model of a POM, with the shared parent and import cache.
+     * @param pomFile
+     * @param resolver finds the parents and imported POMs
+     * @return the model
+     * @throws ModelBuildingException
+     */
+    public Model buildEffectiveModel(File pomFile, ModelResolver resolver) throws ModelBuildingException {
+        return buildEffectiveModel(pomFile, resolver, importModelCache);
+    }
+
+    /**
+     * Builds the effective model of a POM.
+     * @param pomFile
+     * @param resolver finds the parents and imported POMs
+     * @param modelCache caches the parents and imported POMs
+     * @return the model
+     * @throws ModelBuildingException
+     */
+    public Model buildEffectiveModel(File pomFile, ModelResolver resolver, ModelCache modelCache) throws ModelBuildingException {
+        DefaultModelBuildingRequest request = new DefaultModelBuildingRequest();
+        request.setModelSource(new FileModelSource(pomFile));
+        request.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+        request.setProcessPlugins(false);
+        request.setTwoPhaseBuilding(false);
+        request.setSystemProperties(System.getProperties());
+        request.setModelResolver(resolver);
+        request.setModelCache(modelCache);
+
+        Model model = modelBuilder.build(request).getEffectiveModel();
+        model.setPomFile(pomFile);
+        return model;
+    }
+
     public void addLicense(Artifact artifact, Map<String, Object> fields) {
+        long start = System.nanoTime();
         try {
-            MavenProject project = loadProject(artifact);
-            addLicense(project, fields);
+            PomMetadata metadata = loadMetadata(artifact);
+            addLicense(metadata, fields);
         } catch (Exception ignore) {
             logger.debug("",ignore);
+        } finally {
+            metrics.record("add_license", start);
         }
     }
 
     public void addLicense(MavenProject project, Map<String, Object> fields) {
-        List<License> licenses = project.getLicenses();
+        addLicense(PomMetadata.fromProject(project), fields);
+    }
+
+    public void addLicense(PomMetadata metadata, Map<String, Object> fields) {
+        addLicense(metadata.getLicenses(), fields);
+    }
+
+    /**
+     * @param licenses license names, joined into the license field unless empty
+     * @param fields
+     */
+    public static void addLicense(List<String> licenses, Map<String, Object> fields) {
         if(!licenses.isEmpty()){
             String licenseString = "";
-            for(License license:licenses){
-                licenseString += license.getName()+", ";
+            for(String license:licenses){
+                licenseString += license+", ";
             }
             licenseString = licenseString.substring(0, licenseString.length()-2);
             fields.put("license", licenseString);
@@ -107,22 +536,178 @@ public class MavenUtil {
 
 
     public MavenProject loadProject(Artifact artifact) throws ArtifactResolutionException {
-        Artifact pomArtifact = new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), "pom", artifact.getVersion());
-        ArtifactRequest artifactreq = new ArtifactRequest();
-        artifactreq.setArtifact(pomArtifact);
-        artifactreq.setRepositories(repos);
-        ArtifactResult artifactres = system.resolveArtifact(session, artifactreq);
-        File pomFile = artifactres.getArtifact().getFile();
-        MavenProject mavenProject = loadProject(pomFile);
-        return mavenProject;
+        long start = System.nanoTime();
+        try {
+            File pomFile = resolvePom(artifact);
+            MavenProject mavenProject = loadProject(pomFile);
+            return mavenProject;
+        } finally {
+            metrics.record("load_project", start);
+        }
+    }
+
+    private File resolvePom(Artifact artifact) throws ArtifactResolutionException {
+        File pomFile = resolvedPoms.remove(getGav(artifact));
+        if (pomFile == null) {
+            long start = System.nanoTime();
+            EventSpan event = ImportEvents.begin(ImportEventType.POM_RESOLUTION).gav(artifact);
+            String outcome = "failed";
+            try {
+                ArtifactRequest artifactreq = new ArtifactRequest();
+                artifactreq.setArtifact(getPomArtifact(artifact));
+                artifactreq.setRepositories(repos);
+                ArtifactResult artifactres = system.resolveArtifact(session, artifactreq);
+                pomFile = artifactres.getArtifact().getFile();
+                if (event.isRecording()) {
+                    event.repository(artifactres.getRepository() != null ? artifactres.getRepository().getId() : null).bytes(pomFile.length());
+                }
+                outcome = "resolved";
+            } finally {
+                event.end(outcome);
+                metrics.record("resolve_pom", start);
+            }
+        }
+        return pomFile;
+    }
+
+    /**
+     * Resolves the POMs of all artifacts in a dependency graph with one bulk request, so they are downloaded
+     * in parallel instead of one by one as the graph is synced. POMs with cached metadata are skipped.
+     * Failures are ignored here, they show up again when the POM is loaded. The artifact resolver locks all artifacts
+     * of a request until it is done, so the POMs are requested BULK_RESOLVE_SIZE at a time, which still keeps the
+     * download threads busy without blocking other collections and processes for the whole graph.
+     * @param root
+     */
+    public void resolvePoms(DependencyNode root) {
+        final Map<String, ArtifactRequest> requests = new LinkedHashMap<String, ArtifactRequest>();
+        root.accept(new DependencyVisitor() {
+            public boolean visitEnter(DependencyNode node) {
+                Artifact artifact = node.getArtifact();
+                String gav = getGav(artifact);
+                if (requests.containsKey(gav) || resolvedPoms.containsKey(gav) || metadataCache.contains(gav)) {
+                    return true;
+                }
+                ArtifactRequest request = new ArtifactRequest();
+                request.setArtifact(getPomArtifact(artifact));
+                request.setRepositories(node.getRepositories().isEmpty() ? repos : node.getRepositories());
+                requests.put(gav, request);
+                return true;
+            }
+
+            public boolean visitLeave(DependencyNode node) {
+                return true;
+            }
+        });
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        List<ArtifactResult> results = new ArrayList<ArtifactResult>();
+        List<ArtifactRequest> pending = new ArrayList<ArtifactRequest>(requests.values());
+        long start = System.nanoTime();
+        EventSpan event = ImportEvents.begin(ImportEventType.POM_RESOLUTION).gav(root.getArtifact());
+        try {
+            for (int i = 0; i < pending.size(); i += BULK_RESOLVE_SIZE) {
+                List<ArtifactRequest> chunk = pending.subList(i, Math.min(i + BULK_RESOLVE_SIZE, pending.size()));
+                try {
+                    results.addAll(system.resolveArtifacts(session, chunk));
+                } catch (ArtifactResolutionException e) {
+                    logger.debug("Some POMs could not be resolved", e);
+                    results.addAll(e.getResults());
+                }
+            }
+        } finally {
+            metrics.record("resolve_poms", start);
+        }
+        long bytes = 0;
+        int resolved = 0;
+        for (ArtifactResult result : results) {
+            if (result.isResolved()) {
+                resolvedPoms.put(getGav(result.getArtifact()), result.getArtifact().getFile());
+                if (event.isRecording()) {
+                    bytes += result.getArtifact().getFile().length();
+                }
+                resolved++;
+            }
+        }
+        event.bytes(bytes).end(event.isRecording() ? "bulk: " + resolved + " of " + requests.size() + " resolved" : null);
+    }
+
+    private static Artifact getPomArtifact(Artifact artifact) {
+        return new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), "pom", artifact.getVersion());
+    }
+
+    private static String getGav(Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion();
+    }
+
+    /**
+     * Collects the dependency graph of an artifact, or replays it from the graph cache. Exclusions recorded with a
+     * cached graph are added to the exclusion tracker, as if the graph had been collected.
+     * @param artifact
+     * @return the dependency graph
+     * @throws DependencyCollectionException
+     */
+    public CollectResult collectDependencies(Artifact artifact) throws DependencyCollectionException {
+        long start = System.nanoTime();
+        EventSpan event = ImportEvents.begin(ImportEventType.DEPENDENCY_COLLECTION).gav(artifact);
+        String outcome = "failed";
+        try {
+            CollectRequest collectRequest = new CollectRequest();
+            collectRequest.setRoot(new Dependency(artifact, ""));
+            collectRequest.setRepositories(repos);
+
+            String key = null;
+            if (graphCache.isEnabled() && !strict) {
+                if (DependencyGraphCache.isCacheable(artifact) && !isLocal(artifact)) {
+                    key = DependencyGraphCache.getKey(artifact, scopes, repos);
+                    CachedGraph cached = graphCache.get(key);
+                    if (cached != null) {
+                        for (Map.Entry<Artifact, List<Artifact>> entry : cached.getExcluded().entrySet()) {
+                            exclusionTracker.recordAll(entry.getKey(), entry.getValue());
+                        }
+                        CollectResult collectResult = new CollectResult(collectRequest);
+                        collectResult.setRoot(cached.getRoot());
+                        outcome = "cached";
+                        return collectResult;
+                    }
+                } else {
+                    graphCache.bypass();
+                }
+            }
+
+            // exclusions are found before conflict resolution prunes the losing versions and their subtrees
+            ExclusionWalker walker = new ExclusionWalker(system, session, Booter.newScopeDependencySelector(scopes), repos, exclusionTracker);
+            DefaultRepositorySystemSession collectSession = new DefaultRepositorySystemSession(session);
+            collectSession.setDependencyGraphTransformer(walker.before(session.getDependencyGraphTransformer()));
+            CollectResult collectResult = system.collectDependencies(collectSession, collectRequest);
+            if (key != null) {
+                if (DependencyGraphCache.isCacheable(collectResult.getRoot()) && !containsLocal(collectResult.getRoot())) {
+                    graphCache.put(key, collectResult.getRoot(), walker.getRecorded());
+                } else {
+                    graphCache.bypass();
+                }
+            }
+            outcome = "collected";
+            return collectResult;
+        } finally {
+            event.end(outcome);
+            metrics.record("collect_dependencies", start);
+        }
     }
 
-    private static MavenProject loadProject(File pomFile) {
+    /**
+     * Reads the full Maven model of a POM.
+     * @param pomFile
+     * @return the project
+     */
+    public static MavenProject loadProject(File pomFile) {
         MavenXpp3Reader mavenReader = new MavenXpp3Reader();
-        FileReader reader = null;
+        Reader reader = null;
 
         try {
-            reader = new FileReader(pomFile);
+            // honours the encoding declared in the POM, like Maven does
+            reader = ReaderFactory.newXmlReader(pomFile);
             Model model = mavenReader.read(reader);
             model.setPomFile(pomFile);
 
@@ -0,0 +1,108 @@
+package com.ardoq.mavenImport;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+
+/**
+ * Walks the projects of an offline import the same way as {@link ProjectSync} (roots, parents, modules and their
+ * dependency graphs) and lists the artifacts that are neither in the local repository nor in a file:// repository.
+ * Run before anything is written to Ardoq, so an offline import fails with the full list at once instead of
+ * half way through.
+ *
+ * The check runs in strict mode (see {@link MavenUtil#setStrict}): a POM missing deep in a graph fails the
+ * collection instead of silently cutting the graph short, and nothing is served from the metadata or graph caches,
+ * which may hold artifacts since removed from the local repository. The descriptors read here stay in the session
+ * cache, so the sync itself does not read them again.
+ */
+public class OfflineCheck {
+
+    final MavenUtil mavenUtil;
+
+    final Set<String> visited = new HashSet<String>();
+    final Set<String> missing = new TreeSet<String>();
+
+    public OfflineCheck(MavenUtil mavenUtil) {
+        this.mavenUtil = mavenUtil;
+    }
+
+    /**
+     * @param projects
+     * @return groupId:artifactId:version of every missing artifact, sorted, empty if the import can run offline
+     */
+    public Set<String> findMissingArtifacts(List<String> projects) {
+        boolean strict = mavenUtil.isStrict();
+        mavenUtil.setStrict(true);
+        try {
+            for (String project : projects) {
+                checkProject(project, true);
+            }
+        } finally {
+            mavenUtil.setStrict(strict);
+        }
+        return missing;
+    }
+
+    private void checkProject(String projectStr, boolean required) {
+        if (!visited.add(projectStr)) {
+            return;
+        }
+
+        PomMetadata project;
+        try {
+            project = mavenUtil.loadMetadata(projectStr);
+        } catch (ArtifactResolutionException e) {
+            // ProjectSync carries on without missing modules, so only roots and parents count
+            if (required) {
+                addMissing(e);
+            }
+            return;
+        }
+
+        try {
+            mavenUtil.collectDependencies(ProjectSync.getProjectArtifact(project));
+        } catch (DependencyCollectionException e) {
+            addMissing(e);
+        }
+
+        if (project.getParentId() != null) {
+            checkProject(project.getParentId(), true);
+        }
+        for (String module : project.getModules()) {
+            checkProject(mavenUtil.getModuleId(project, module), false);
+        }
+    }
+
+    private void addMissing(ArtifactResolutionException e) {
+        for (ArtifactResult result : e.getResults()) {
+            if (!result.isResolved()) {
+                addMissing(result.getRequest().getArtifact());
+            }
+        }
+    }
+
+    private void addMissing(DependencyCollectionException e) {
+        for (Exception exception : e.getResult().getExceptions()) {
+            if (exception instanceof ArtifactDescriptorException) {
+                addMissing(((ArtifactDescriptorException) exception).getResult().getArtifact());
+            } else if (exception instanceof VersionRangeResolutionException) {
+                addMissing(((VersionRangeResolutionException) exception).getResult().getRequest().getArtifact());
+            } else {
+                missing.add(String.valueOf(exception.getMessage()));
+            }
+        }
+    }
+
+    private void addMissing(Artifact artifact) {
+        missing.add(artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion());
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.ardoq.mavenImport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.CollectResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads Maven projects and collects their dependency graphs on a fork-join pool, following parents and
+ * modules the same way as {@link ProjectSync}. Independent roots, parents and modules are processed
+ * concurrently.
+ *
+ * Nothing is written to Ardoq from here; ProjectSync replays the preloaded projects and graphs in its usual
+ * serial order, so the resulting components and references are the same as for a serial import.
+ */
+public class ParallelProjectLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelProjectLoader.class);
+
+    final MavenUtil mavenUtil;
+    final ForkJoinPool pool;
+
+    final ConcurrentMap<String, Boolean> visited = new ConcurrentHashMap<String, Boolean>();
+    final ConcurrentMap<String, PomMetadata> projects = new ConcurrentHashMap<String, PomMetadata>();
+    final ConcurrentMap<String, CollectResult> graphs = new ConcurrentHashMap<String, CollectResult>();
+
+    public ParallelProjectLoader(MavenUtil mavenUtil, int threads) {
+        this.mavenUtil = mavenUtil;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Loads the given projects, their parents and modules, and collects the dependencies of each of them.
+     * Failures are not reported here, ProjectSync will run into (and report) them again when it gets there.
+     * @param projectStrs
+     */
+    public void load(List<String> projectStrs) {
+        final List<LoadProjectTask> tasks = new ArrayList<LoadProjectTask>();
+        for (String projectStr : projectStrs) {
+            tasks.add(new LoadProjectTask(projectStr));
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * @param projectStr
+     * @return the preloaded project, or null if it was not loaded
+     */
+    public PomMetadata getProject(String projectStr) {
+        return projects.get(projectStr);
+    }
+
+    /**
+     * @param artifact
+     * @return the preloaded dependency graph of the artifact, or null if it was not collected
+     */
+    public CollectResult getDependencies(Artifact artifact) {
+        return graphs.get(artifact.toString());
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    class LoadProjectTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final String projectStr;
+
+        LoadProjectTask(String projectStr) {
+            this.projectStr = projectStr;
+        }
+
+        @Override
+        protected void compute() {
+            if (visited.putIfAbsent(projectStr, Boolean.TRUE) != null) {
+                return;
+            }
+
+            PomMetadata project;
+            try {
+                project = mavenUtil.loadMetadata(projectStr);
+            } catch (Exception e) {
+                logger.debug("Error preloading Maven project " + projectStr, e);
+                return;
+            }
+            projects.put(projectStr, project);
+
+            List<RecursiveAction> subtasks = new ArrayList<RecursiveAction>();
+            subtasks.add(new CollectDependenciesTask(ProjectSync.getProjectArtifact(project)));
+
+            if (project.getParentId() != null) {
+                subtasks.add(new LoadProjectTask(project.getParentId()));
+            }
+            for (String module : project.getModules()) {
+                subtasks.add(new LoadProjectTask(mavenUtil.getModuleId(project, module)));
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    class CollectDependenciesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final Artifact artifact;
+
+        CollectDependenciesTask(Artifact artifact) {
+            this.artifact = artifact;
+        }
+
+        @Override
+        protected void compute() {
+            String key = artifact.toString();
+            if (graphs.containsKey(key)) {
+                return;
+            }
+            try {
+                CollectResult collectResult = mavenUtil.collectDependencies(artifact);
+                if (graphs.putIfAbsent(key, collectResult) == null) {
+                    mavenUtil.resolvePoms(collectResult.getRoot());
+                }
+            } catch (Exception e) {
+                logger.debug("Error preloading dependencies of " + key, e);
+            }
+        }
+    }
+
+}
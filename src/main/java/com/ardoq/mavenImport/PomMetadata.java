@@ -0,0 +1,145 @@
+package com.ardoq.mavenImport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.model.Developer;
+import org.apache.maven.model.License;
+import org.apache.maven.model.Parent;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * The parts of a POM that are synced to Ardoq. Immutable, and small enough to be cached for every artifact of an
+ * import.
+ */
+public final class PomMetadata {
+
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String name;
+    private final String description;
+    private final String parentId;
+    private final List<String> licenses;
+    private final List<String> modules;
+    private final List<PomDeveloper> developers;
+
+    /**
+     * @param groupId
+     * @param artifactId
+     * @param version
+     * @param name may be null, in which case the artifactId is used
+     * @param description may be null
+     * @param parentId coordinates of the parent (groupId:artifactId:pom:version), null if there is none
+     * @param licenses license names
+     * @param modules module names
+     * @param developers
+     */
+    public PomMetadata(String groupId, String artifactId, String version, String name, String description, String parentId,
+            List<String> licenses, List<String> modules, List<PomDeveloper> developers) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.name = name;
+        this.description = description;
+        this.parentId = parentId;
+        this.licenses = immutableCopy(licenses);
+        this.modules = immutableCopy(modules);
+        this.developers = immutableCopy(developers);
+    }
+
+    public static PomMetadata fromProject(MavenProject project) {
+        List<String> licenses = new ArrayList<String>();
+        for (License license : project.getLicenses()) {
+            licenses.add(license.getName());
+        }
+        List<PomDeveloper> developers = new ArrayList<PomDeveloper>();
+        for (Developer developer : project.getDevelopers()) {
+            developers.add(new PomDeveloper(developer.getName(), developer.getEmail()));
+        }
+        Parent parent = project.getModel().getParent();
+        String parentId = (parent != null) ? parent.getId() : null;
+
+        return new PomMetadata(project.getGroupId(), project.getArtifactId(), project.getVersion(), project.getModel().getName(),
+                project.getDescription(), parentId, licenses, project.getModules(), developers);
+    }
+
+    private static <T> List<T> immutableCopy(List<T> list) {
+        if (list == null || list.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<T>(list));
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the project name, or the artifactId if the POM has no name (like MavenProject.getName())
+     */
+    public String getName() {
+        return (name != null) ? name : artifactId;
+    }
+
+    /**
+     * @return the name as declared in the POM, may be null
+     */
+    public String getDeclaredName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public List<String> getLicenses() {
+        return licenses;
+    }
+
+    public List<String> getModules() {
+        return modules;
+    }
+
+    public List<PomDeveloper> getDevelopers() {
+        return developers;
+    }
+
+    @Override
+    public String toString() {
+        return groupId + ":" + artifactId + ":" + version;
+    }
+
+    public static final class PomDeveloper {
+
+        private final String name;
+        private final String email;
+
+        public PomDeveloper(String name, String email) {
+            this.name = name;
+            this.email = email;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+    }
+
+}
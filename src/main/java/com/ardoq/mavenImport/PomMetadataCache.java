@@ -0,0 +1,270 @@
+package com.ardoq.mavenImport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ardoq.mavenImport.PomMetadata.PomDeveloper;
+
+/**
+ * Two level cache of {@link PomMetadata} keyed by groupId:artifactId:version. The first level is an in-memory LRU,
+ * the second a directory with one properties file per release version. Release POMs never change, so they are
+ * parsed once and then read from disk on later runs. Snapshots are only kept in memory.
+ */
+public class PomMetadataCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PomMetadataCache.class);
+
+    public static final int DEFAULT_MEMORY_SIZE = 10000;
+
+    private static final String FORMAT = "1";
+
+    final File directory;
+    final Map<String, PomMetadata> memory;
+
+    final AtomicLong memoryHits = new AtomicLong();
+    final AtomicLong diskHits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param directory where release metadata is stored, null for an in-memory cache only
+     * @param memorySize number of entries kept in memory
+     */
+    public PomMetadataCache(File directory, final int memorySize) {
+        this.directory = directory;
+        this.memory = new LinkedHashMap<String, PomMetadata>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PomMetadata> eldest) {
+                return size() > memorySize;
+            }
+        };
+    }
+
+    public static File getDefaultDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".ardoq-maven-import"), "pom-metadata");
+    }
+
+    /**
+     * @return the default directory for metadata read from effective models
+     */
+    public static File getDefaultEffectiveDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".ardoq-maven-import"), "effective-pom-metadata");
+    }
+
+    /**
+     * @param gav groupId:artifactId:version
+     * @return the cached metadata, or null if it has to be loaded
+     */
+    public PomMetadata get(String gav) {
+        PomMetadata metadata;
+        synchronized (memory) {
+            metadata = memory.get(gav);
+        }
+        if (metadata != null) {
+            memoryHits.incrementAndGet();
+            return metadata;
+        }
+
+        metadata = readFromDisk(gav);
+        if (metadata != null) {
+            diskHits.incrementAndGet();
+            synchronized (memory) {
+                memory.put(gav, metadata);
+            }
+            return metadata;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Checks for an entry without loading it or counting it as a lookup.
+     * @param gav groupId:artifactId:version
+     * @return true if get will return metadata for the gav
+     */
+    public boolean contains(String gav) {
+        synchronized (memory) {
+            if (memory.containsKey(gav)) {
+                return true;
+            }
+        }
+        File file = getFile(gav);
+        return file != null && file.isFile();
+    }
+
+    /**
+     * @param gav groupId:artifactId:version
+     * @param metadata
+     * @param persistent true if the POM can't change (release versions), and should be stored on disk
+     */
+    public void put(String gav, PomMetadata metadata, boolean persistent) {
+        synchronized (memory) {
+            memory.put(gav, metadata);
+        }
+        if (persistent) {
+            writeToDisk(gav, metadata);
+        }
+    }
+
+    public void clearMemory() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    public long getRequests() {
+        return memoryHits.get() + diskHits.get() + misses.get();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the share of lookups served from memory or disk, 0 if there were none
+     */
+    public double getHitRate() {
+        long requests = getRequests();
+        return requests == 0 ? 0 : (double) (memoryHits.get() + diskHits.get()) / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "POM metadata cache: " + getRequests() + " lookups, " + memoryHits.get() + " memory hits, " + diskHits.get()
+                + " disk hits, " + misses.get() + " misses (hit rate " + Math.round(getHitRate() * 100) + "%)";
+    }
+
+    private File getFile(String gav) {
+        String[] parts = gav.split(":");
+        if (directory == null || parts.length != 3) {
+            return null;
+        }
+        return new File(new File(new File(directory, parts[0]), parts[1]), parts[2] + ".properties");
+    }
+
+    private PomMetadata readFromDisk(String gav) {
+        File file = getFile(gav);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            Properties props = new Properties();
+            props.load(in);
+            if (!FORMAT.equals(props.getProperty("format"))) {
+                return null;
+            }
+            List<PomDeveloper> developers = new ArrayList<PomDeveloper>();
+            int developerCount = Integer.parseInt(props.getProperty("developer.count", "0"));
+            for (int i = 0; i < developerCount; i++) {
+                developers.add(new PomDeveloper(props.getProperty("developer." + i + ".name"), props.getProperty("developer." + i + ".email")));
+            }
+            return new PomMetadata(props.getProperty("groupId"), props.getProperty("artifactId"), props.getProperty("version"),
+                    props.getProperty("name"), props.getProperty("description"), props.getProperty("parent"),
+                    readList(props, "license"), readList(props, "module"), developers);
+        } catch (IOException e) {
+            logger.debug("Error reading cached POM metadata " + file, e);
+            return null;
+        } catch (RuntimeException e) {
+            // a damaged or edited entry, e.g. a count that isn't a number
+            logger.debug("Invalid cached POM metadata " + file, e);
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    private void writeToDisk(String gav, PomMetadata metadata) {
+        File file = getFile(gav);
+        if (file == null) {
+            return;
+        }
+        Properties props = new Properties();
+        props.setProperty("format", FORMAT);
+        setProperty(props, "groupId", metadata.getGroupId());
+        setProperty(props, "artifactId", metadata.getArtifactId());
+        setProperty(props, "version", metadata.getVersion());
+        setProperty(props, "name", metadata.getDeclaredName());
+        setProperty(props, "description", metadata.getDescription());
+        setProperty(props, "parent", metadata.getParentId());
+        writeList(props, "license", metadata.getLicenses());
+        writeList(props, "module", metadata.getModules());
+        props.setProperty("developer.count", String.valueOf(metadata.getDevelopers().size()));
+        for (int i = 0; i < metadata.getDevelopers().size(); i++) {
+            PomDeveloper developer = metadata.getDevelopers().get(i);
+            setProperty(props, "developer." + i + ".name", developer.getName());
+            setProperty(props, "developer." + i + ".email", developer.getEmail());
+        }
+
+        // write to a temporary file first, so concurrent runs never see a half written entry
+        OutputStream out = null;
+        File tmp = null;
+        try {
+            file.getParentFile().mkdirs();
+            tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            out = new FileOutputStream(tmp);
+            props.store(out, gav);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException e) {
+            logger.debug("Error caching POM metadata " + file, e);
+        } finally {
+            IOUtil.close(out);
+            if (tmp != null && tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static void setProperty(Properties props, String key, String value) {
+        if (value != null) {
+            props.setProperty(key, value);
+        }
+    }
+
+    private static List<String> readList(Properties props, String prefix) {
+        List<String> list = new ArrayList<String>();
+        int count = Integer.parseInt(props.getProperty(prefix + ".count", "0"));
+        for (int i = 0; i < count; i++) {
+            list.add(props.getProperty(prefix + "." + i));
+        }
+        return list;
+    }
+
+    private static void writeList(Properties props, String prefix, List<String> list) {
+        props.setProperty(prefix + ".count", String.valueOf(list.size()));
+        for (int i = 0; i < list.size(); i++) {
+            setProperty(props, prefix + "." + i, list.get(i));
+        }
+    }
+
+}
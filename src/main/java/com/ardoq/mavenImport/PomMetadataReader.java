@@ -0,0 +1,493 @@
+package com.ardoq.mavenImport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.ardoq.mavenImport.PomMetadata.PomDeveloper;
+
+/**
+ * Streaming extractor for the parts of a POM that are synced to Ardoq. It is a minimal pull parser working directly
+ * on the bytes of the file: markup is matched as ASCII, and only the text of the wanted elements is decoded. It
+ * does not build a Model, skips uninteresting sections without decoding them, and stops as soon as every wanted
+ * section has been seen.
+ *
+ * Values are trimmed and groupId/version fall back to the parent's, like MavenXpp3Reader and MavenProject do.
+ * POMs this reader does not handle (non ASCII compatible encodings, DTDs, HTML entities that MavenXpp3Reader
+ * accepts, malformed XML) cause an IOException, and the caller is expected to fall back to the full model.
+ */
+public class PomMetadataReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] PROJECT = ascii("project");
+    private static final byte[] PARENT = ascii("parent");
+    private static final byte[] GROUP_ID = ascii("groupId");
+    private static final byte[] ARTIFACT_ID = ascii("artifactId");
+    private static final byte[] VERSION = ascii("version");
+    private static final byte[] NAME = ascii("name");
+    private static final byte[] DESCRIPTION = ascii("description");
+    private static final byte[] LICENSES = ascii("licenses");
+    private static final byte[] DEVELOPERS = ascii("developers");
+    private static final byte[] MODULES = ascii("modules");
+    private static final byte[] EMAIL = ascii("email");
+
+    private static final int FOUND_PARENT = 1;
+    private static final int FOUND_GROUP_ID = 1 << 1;
+    private static final int FOUND_ARTIFACT_ID = 1 << 2;
+    private static final int FOUND_VERSION = 1 << 3;
+    private static final int FOUND_NAME = 1 << 4;
+    private static final int FOUND_DESCRIPTION = 1 << 5;
+    private static final int FOUND_LICENSES = 1 << 6;
+    private static final int FOUND_DEVELOPERS = 1 << 7;
+    private static final int FOUND_MODULES = 1 << 8;
+    private static final int FOUND_ALL = (1 << 9) - 1;
+
+    // reused between reads on the same thread, grows to the largest POM read
+    private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(64 * 1024);
+        }
+    };
+
+    private final byte[] buf;
+    private final int limit;
+    private int pos;
+    private Charset charset = UTF_8;
+
+    // the element last started
+    private int nameStart;
+    private int nameLength;
+    private boolean emptyElement;
+
+    private PomMetadataReader(byte[] buf, int offset, int limit) {
+        this.buf = buf;
+        this.pos = offset;
+        this.limit = limit;
+    }
+
+    public static PomMetadata read(File pomFile) throws IOException {
+        ByteBuffer buffer = readFile(pomFile);
+        return read(buffer.array(), buffer.limit());
+    }
+
+    /**
+     * @param pom the POM file contents
+     * @param length number of bytes used in pom
+     * @return the extracted metadata
+     * @throws IOException if the POM can't be handled by this reader
+     */
+    public static PomMetadata read(byte[] pom, int length) throws IOException {
+        return new PomMetadataReader(pom, 0, length).readProject();
+    }
+
+    private static ByteBuffer readFile(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("POM too large: " + file);
+            }
+            ByteBuffer buffer = buffers.get();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate((int) size);
+                buffers.set(buffer);
+            }
+            buffer.clear();
+            while (buffer.position() < size && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    private PomMetadata readProject() throws IOException {
+        readProlog();
+        if (!nextChild() || !isName(PROJECT)) {
+            throw new IOException("Expected <project> at " + pos);
+        }
+
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String name = null;
+        String description = null;
+        String parentGroupId = null;
+        String parentArtifactId = null;
+        String parentVersion = null;
+        List<String> licenses = new ArrayList<String>();
+        List<String> modules = new ArrayList<String>();
+        List<PomDeveloper> developers = new ArrayList<PomDeveloper>();
+
+        int found = 0;
+        while (found != FOUND_ALL && nextChild()) {
+            if (isName(PARENT)) {
+                found |= FOUND_PARENT;
+                while (nextChild()) {
+                    if (isName(GROUP_ID)) {
+                        parentGroupId = readText();
+                    } else if (isName(ARTIFACT_ID)) {
+                        parentArtifactId = readText();
+                    } else if (isName(VERSION)) {
+                        parentVersion = readText();
+                    } else {
+                        skipElement();
+                    }
+                }
+            } else if (isName(GROUP_ID)) {
+                found |= FOUND_GROUP_ID;
+                groupId = readText();
+            } else if (isName(ARTIFACT_ID)) {
+                found |= FOUND_ARTIFACT_ID;
+                artifactId = readText();
+            } else if (isName(VERSION)) {
+                found |= FOUND_VERSION;
+                version = readText();
+            } else if (isName(NAME)) {
+                found |= FOUND_NAME;
+                name = readText();
+            } else if (isName(DESCRIPTION)) {
+                found |= FOUND_DESCRIPTION;
+                description = readText();
+            } else if (isName(LICENSES)) {
+                found |= FOUND_LICENSES;
+                while (nextChild()) {
+                    licenses.add(readLicense());
+                }
+            } else if (isName(DEVELOPERS)) {
+                found |= FOUND_DEVELOPERS;
+                while (nextChild()) {
+                    developers.add(readDeveloper());
+                }
+            } else if (isName(MODULES)) {
+                found |= FOUND_MODULES;
+                while (nextChild()) {
+                    modules.add(readText());
+                }
+            } else {
+                skipElement();
+            }
+        }
+
+        if (groupId == null) {
+            groupId = parentGroupId;
+        }
+        if (version == null) {
+            version = parentVersion;
+        }
+        String parentId = null;
+        if ((found & FOUND_PARENT) != 0) {
+            parentId = parentGroupId + ":" + parentArtifactId + ":pom:" + parentVersion;
+        }
+        return new PomMetadata(groupId, artifactId, version, name, description, parentId, licenses, modules, developers);
+    }
+
+    private String readLicense() throws IOException {
+        String name = null;
+        while (nextChild()) {
+            if (isName(NAME)) {
+                name = readText();
+            } else {
+                skipElement();
+            }
+        }
+        return name;
+    }
+
+    private PomDeveloper readDeveloper() throws IOException {
+        String name = null;
+        String email = null;
+        while (nextChild()) {
+            if (isName(NAME)) {
+                name = readText();
+            } else if (isName(EMAIL)) {
+                email = readText();
+            } else {
+                skipElement();
+            }
+        }
+        return new PomDeveloper(name, email);
+    }
+
+    /**
+     * Skips a byte order mark and reads the encoding from the XML declaration.
+     */
+    private void readProlog() throws IOException {
+        if (limit - pos >= 2 && ((buf[pos] == (byte) 0xFE && buf[pos + 1] == (byte) 0xFF) || (buf[pos] == (byte) 0xFF && buf[pos + 1] == (byte) 0xFE))) {
+            throw new IOException("UTF-16 POMs are not supported");
+        }
+        if (limit - pos >= 3 && buf[pos] == (byte) 0xEF && buf[pos + 1] == (byte) 0xBB && buf[pos + 2] == (byte) 0xBF) {
+            pos += 3;
+        }
+        if (startsWith(pos, "<?xml")) {
+            int end = indexOf("?>", pos);
+            String declaration = new String(buf, pos, end - pos, UTF_8);
+            int encoding = declaration.indexOf("encoding");
+            if (encoding >= 0) {
+                int quote = encoding + "encoding".length();
+                while (quote < declaration.length() && declaration.charAt(quote) != '"' && declaration.charAt(quote) != '\'') {
+                    quote++;
+                }
+                int endQuote = declaration.indexOf(declaration.charAt(quote), quote + 1);
+                charset = toCharset(declaration.substring(quote + 1, endQuote).trim());
+            }
+            pos = end + 2;
+        }
+    }
+
+    private static Charset toCharset(String encoding) throws IOException {
+        String upper = encoding.toUpperCase();
+        if (!(upper.startsWith("UTF-8") || upper.startsWith("UTF8") || upper.startsWith("ISO-8859") || upper.startsWith("ISO8859")
+                || upper.startsWith("US-ASCII") || upper.equals("ASCII") || upper.startsWith("WINDOWS-125") || upper.startsWith("CP125")
+                || upper.startsWith("LATIN"))) {
+            throw new IOException("Unsupported POM encoding " + encoding);
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unsupported POM encoding " + encoding, e);
+        }
+    }
+
+    /**
+     * Moves to the next child element of the current element.
+     * @return false, after the end tag of the current element, when there are no more children
+     */
+    private boolean nextChild() throws IOException {
+        if (emptyElement) {
+            emptyElement = false;
+            return false;
+        }
+        while (true) {
+            int lt = indexOf('<', pos);
+            pos = lt + 1;
+            if (pos >= limit) {
+                throw new IOException("Unexpected end of POM");
+            }
+            byte b = buf[pos];
+            if (b == '/') {
+                pos = indexOf('>', pos) + 1;
+                return false;
+            } else if (b == '?') {
+                pos = indexOf("?>", pos) + 2;
+            } else if (b == '!') {
+                skipDeclaration();
+            } else {
+                readStartTag();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Skips a comment, CDATA section or DOCTYPE, positioned after the "&lt;!".
+     */
+    private void skipDeclaration() throws IOException {
+        if (startsWith(pos, "!--")) {
+            pos = indexOf("-->", pos + 3) + 3;
+        } else if (startsWith(pos, "![CDATA[")) {
+            pos = indexOf("]]>", pos) + 3;
+        } else {
+            int end = indexOf('>', pos);
+            for (int i = pos; i < end; i++) {
+                if (buf[i] == '[') {
+                    throw new IOException("DTDs with an internal subset are not supported");
+                }
+            }
+            pos = end + 1;
+        }
+    }
+
+    private void readStartTag() throws IOException {
+        nameStart = pos;
+        while (pos < limit && !isNameEnd(buf[pos])) {
+            pos++;
+        }
+        nameLength = pos - nameStart;
+        // skip attributes, which may contain quoted '>'
+        while (pos < limit && buf[pos] != '>') {
+            byte b = buf[pos];
+            if (b == '"' || b == '\'') {
+                pos = indexOf(b, pos + 1);
+            }
+            pos++;
+        }
+        if (pos >= limit) {
+            throw new IOException("Unexpected end of POM");
+        }
+        emptyElement = buf[pos - 1] == '/';
+        pos++;
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private void skipElement() throws IOException {
+        while (nextChild()) {
+            skipElement();
+        }
+    }
+
+    /**
+     * Reads the trimmed text of the current element, including its end tag.
+     */
+    private String readText() throws IOException {
+        if (emptyElement) {
+            emptyElement = false;
+            return "";
+        }
+        int start = pos;
+        int lt = indexOf('<', pos);
+        if (lt + 1 < limit && buf[lt + 1] == '/' && indexOf('&', start, lt) < 0 && indexOf('\r', start, lt) < 0) {
+            // the common case, plain text
+            pos = indexOf('>', lt) + 1;
+            return new String(buf, start, lt - start, charset).trim();
+        }
+
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            lt = indexOf('<', pos);
+            appendDecoded(text, pos, lt);
+            pos = lt + 1;
+            if (pos >= limit) {
+                throw new IOException("Unexpected end of POM");
+            }
+            if (buf[pos] == '/') {
+                pos = indexOf('>', pos) + 1;
+                break;
+            } else if (startsWith(pos, "![CDATA[")) {
+                int end = indexOf("]]>", pos);
+                text.append(new String(buf, pos + 8, end - pos - 8, charset));
+                pos = end + 3;
+            } else if (startsWith(pos, "!--")) {
+                pos = indexOf("-->", pos + 3) + 3;
+            } else if (buf[pos] == '?') {
+                pos = indexOf("?>", pos) + 2;
+            } else {
+                throw new IOException("Unexpected element in text at " + pos);
+            }
+        }
+        return normalizeLineEnds(text.toString()).trim();
+    }
+
+    private void appendDecoded(StringBuilder text, int start, int end) throws IOException {
+        int amp = indexOf('&', start, end);
+        while (amp >= 0) {
+            text.append(new String(buf, start, amp - start, charset));
+            int semicolon = indexOf(';', amp, end);
+            if (semicolon < 0) {
+                throw new IOException("Unterminated entity at " + amp);
+            }
+            text.append(decodeEntity(new String(buf, amp + 1, semicolon - amp - 1, UTF_8)));
+            start = semicolon + 1;
+            amp = indexOf('&', start, end);
+        }
+        text.append(new String(buf, start, end - start, charset));
+    }
+
+    private static String decodeEntity(String entity) throws IOException {
+        if ("lt".equals(entity)) {
+            return "<";
+        } else if ("gt".equals(entity)) {
+            return ">";
+        } else if ("amp".equals(entity)) {
+            return "&";
+        } else if ("quot".equals(entity)) {
+            return "\"";
+        } else if ("apos".equals(entity)) {
+            return "'";
+        } else if (entity.startsWith("#x")) {
+            return new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+        } else if (entity.startsWith("#")) {
+            return new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+        }
+        throw new IOException("Unsupported entity &" + entity + ";");
+    }
+
+    private static String normalizeLineEnds(String text) {
+        if (text.indexOf('\r') < 0) {
+            return text;
+        }
+        return text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    private boolean isName(byte[] name) {
+        if (name.length != nameLength) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (buf[nameStart + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(int at, String s) {
+        if (at + s.length() > limit) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (buf[at + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte b, int from) throws IOException {
+        int i = indexOf(b, from, limit);
+        if (i < 0) {
+            throw new IOException("Unexpected end of POM");
+        }
+        return i;
+    }
+
+    private int indexOf(char c, int from) throws IOException {
+        return indexOf((byte) c, from);
+    }
+
+    private int indexOf(char c, int from, int to) {
+        return indexOf((byte) c, from, to);
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String s, int from) throws IOException {
+        byte first = (byte) s.charAt(0);
+        for (int i = indexOf(first, from); ; i = indexOf(first, i + 1)) {
+            if (startsWith(i, s)) {
+                return i;
+            }
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+
+}
@@ -1,59 +1,137 @@
 package com.ardoq.mavenImport;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import org.apache.maven.model.Developer;
-import org.apache.maven.model.License;
-import org.apache.maven.model.Parent;
-import org.apache.maven.project.MavenProject;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
-import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.collection.CollectResult;
 import org.eclipse.aether.collection.DependencyCollectionException;
 import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.DependencyVisitor;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 
-import com.ardoq.mavenImport.util.ArdoqExclusionDependencySelector;
+import com.ardoq.mavenImport.PomMetadata.PomDeveloper;
 import com.ardoq.mavenImport.util.ConsoleDependencyGraphDumper;
+import com.ardoq.mavenImport.util.ConsoleReporter;
+import com.ardoq.mavenImport.sink.ArdoqSink;
+import com.ardoq.mavenImport.sink.GraphFileReader;
+import com.ardoq.mavenImport.sink.OutputSink;
+import com.ardoq.mavenImport.util.ExclusionTracker;
 import com.ardoq.model.Component;
-import com.ardoq.model.Reference;
 import com.ardoq.util.SyncUtil;
 
 public class ProjectSync {
 
+    /** scanned POMs whose references are queued before the pipeline is flushed */
+    static final int SCAN_BATCH_SIZE = 5000;
 
-    final SyncUtil ardoqSync;
+    final OutputSink sink;
     final ArtifactSync artifactSync;
     final String COMPONENT_TYPE_PROJECT;
 
-    Map<String, String> componentNameIdMap;
+    final WritePipeline pipeline;
 
     final MavenUtil mavenUtil;
 
+    final int threads;
+    ParallelProjectLoader loader;
+
     public ProjectSync(SyncUtil ardoqSync, MavenUtil mavenUtil) {
-        this.ardoqSync = ardoqSync;
-        this.artifactSync = new ArtifactSync(ardoqSync, mavenUtil);
-        this.mavenUtil = mavenUtil;
+        this(ardoqSync, mavenUtil, 1);
+    }
+
+    /**
+     * @param ardoqSync
+     * @param mavenUtil
+     * @param threads number of workers loading projects and collecting dependencies in parallel, 1 means serial
+     */
+    public ProjectSync(SyncUtil ardoqSync, MavenUtil mavenUtil, int threads) {
+        this(new ArdoqSink(ardoqSync), mavenUtil, threads);
+    }
+
+    /**
+     * @param sink where the components and references are written
+     * @param mavenUtil
+     * @param threads number of workers loading projects and collecting dependencies in parallel, 1 means serial
+     */
+    public ProjectSync(OutputSink sink, MavenUtil mavenUtil, int threads) {
+        this(sink, mavenUtil, threads, 1);
+    }
 
-        COMPONENT_TYPE_PROJECT = ardoqSync.getModel().getComponentTypeByName("Project");
+    /**
+     * @param sink where the components and references are written
+     * @param mavenUtil
+     * @param threads number of workers loading projects and collecting dependencies in parallel, 1 means serial
+     * @param writeThreads number of components or reference chunks written at a time if the sink is concurrent
+     */
+    public ProjectSync(OutputSink sink, MavenUtil mavenUtil, int threads, int writeThreads) {
+        this.sink = sink;
+        this.pipeline = new WritePipeline(sink, mavenUtil, writeThreads);
+        this.artifactSync = new ArtifactSync(mavenUtil, pipeline);
+        this.mavenUtil = mavenUtil;
+        this.threads = threads;
 
-        componentNameIdMap = new HashMap<String, String>();
+        COMPONENT_TYPE_PROJECT = sink.getComponentType("Project");
     }
 
 
+    public WritePipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Adds the exclusions that are still tracked, and clears the tracker. These include the exclusions declared by
+     * versions that lost a conflict and aren't in any synced graph; those versions are added like the excluded ones.
+     * @param mavenUtil
+     */
     public void addExclusions(MavenUtil mavenUtil) {
-        Map<Artifact,ArdoqExclusionDependencySelector> dependencySelectors = mavenUtil.getDependencySelectors();
-        for(Artifact a:dependencySelectors.keySet()){
+        mavenUtil.getMetrics().startPhase("exclusions");
+        ExclusionTracker tracker = mavenUtil.getExclusionTracker();
+        for(Map.Entry<Artifact, Set<Artifact>> entry:tracker.getAll().entrySet()){
+            artifactSync.addArtifactVersion(entry.getKey(),false);
+            addExclusions(entry.getKey(), entry.getValue());
+        }
+        tracker.clear();
+        pipeline.flush();
+    }
 
-            ArdoqExclusionDependencySelector depsel = dependencySelectors.get(a);
-            for(Artifact ex:depsel.getExcluded()){
-                artifactSync.addArtifactVersion(ex,false);
-                artifactSync.addReference(a, ex, "Exclusion");
+    /**
+     * Adds the exclusions of the nodes of a synced graph, and removes them from the tracker.
+     * @param root
+     */
+    private void addExclusions(DependencyNode root) {
+        final ExclusionTracker tracker = mavenUtil.getExclusionTracker();
+        root.accept(new DependencyVisitor() {
+            public boolean visitEnter(DependencyNode node) {
+                Set<Artifact> excluded = tracker.take(node.getArtifact());
+                if(!excluded.isEmpty()){
+                    addExclusions(node.getArtifact(), excluded);
+                }
+                return true;
+            }
+
+            public boolean visitLeave(DependencyNode node) {
+                return true;
             }
+        });
+    }
+
+    private void addExclusions(Artifact owner, Set<Artifact> excluded) {
+        for(Artifact ex:excluded){
+            artifactSync.addArtifactVersion(ex,false);
+            artifactSync.addReference(owner, ex, "Exclusion");
         }
     }
 
@@ -64,40 +142,164 @@ public class ProjectSync {
      * @throws Exception
      */
     public List<String> syncProjects(List<String> projects) throws Exception {
+        mavenUtil.getMetrics().startPhase("collect");
+        if (threads > 1) {
+            loader = new ParallelProjectLoader(mavenUtil, threads);
+            loader.load(projects);
+        }
+        try {
+            List<String> projectNames = new LinkedList<String>();
+            for (String project : projects) {
+                projectNames.add(queueProject(project));
+            }
+            mavenUtil.getMetrics().startPhase("write");
+            pipeline.flush();
+
+            List<String> projectIDs = new LinkedList<String>();
+            for (String name : projectNames) {
+                projectIDs.add(pipeline.getId(name));
+            }
+            return projectIDs;
+        } finally {
+            if (loader != null) {
+                loader.shutdown();
+                loader = null;
+            }
+        }
+    }
+
+    /**
+     * Writes a graph resolved earlier, see GraphFileSink, instead of resolving projects.
+     * @param file
+     * @return the component IDs of the projects in the graph
+     * @throws IOException
+     */
+    public List<String> syncGraph(File file) throws IOException {
+        mavenUtil.getMetrics().startPhase("read");
+        final List<String> projectNames = new LinkedList<String>();
+        new GraphFileReader(file).read(new GraphFileReader.Handler() {
+            public void component(String name, String type, String parent, String description, Map<String, Object> fields) {
+                Component component = new Component(name, sink.getWorkspaceId(), description, sink.getComponentType(type));
+                component.setFields(fields);
+                int wave = (parent == null) ? WritePipeline.WAVE_ROOTS : "Artifact".equals(type) ? WritePipeline.WAVE_ARTIFACTS : WritePipeline.WAVE_VERSIONS;
+                pipeline.addComponent(wave, component, parent, null);
+                if ("Project".equals(type)) {
+                    projectNames.add(name);
+                }
+            }
+
+            public void reference(String source, String target, String type, String description) {
+                pipeline.addReference(source, target, description, sink.getReferenceType(type));
+            }
+        });
+
+        mavenUtil.getMetrics().startPhase("write");
+        pipeline.flush();
         List<String> projectIDs = new LinkedList<String>();
-        for (String project : projects) {
-            String pid = syncProject(project);
-            projectIDs.add(pid);
+        for (String name : projectNames) {
+            projectIDs.add(pipeline.getId(name));
         }
         return projectIDs;
     }
 
+    /**
+     * Writes the graph of every POM in a repository directory, see RepositoryScanner, instead of resolving projects.
+     * The versions of the scanned POMs are queued first, so each gets the licenses of its own POM, then the declared
+     * dependencies in batches, so the references in flight stay bounded. Nothing is looked up: a dependency that
+     * isn't in the directory is a version without a license.
+     * @param scanner
+     * @return no component IDs, a scan has no projects
+     * @throws IOException
+     */
+    public List<String> syncScan(RepositoryScanner scanner) throws IOException {
+        mavenUtil.getMetrics().startPhase("scan");
+        scanner.scan();
+        mavenUtil.getMetrics().startPhase("write");
+        scanner.replay(new RepositoryScanner.Handler() {
+            public void pom(RepositoryScanner.ScannedPom pom) {
+                artifactSync.addArtifactVersion(pom.getArtifact(), false, pom.getLicenses());
+            }
+        });
+        pipeline.flush();
+
+        final Set<String> excludedScopes = new HashSet<String>();
+        if (mavenUtil.scopes != null) {
+            excludedScopes.addAll(Arrays.asList(mavenUtil.scopes));
+        }
+        final List<String> noLicenses = Collections.emptyList();
+        scanner.replay(new RepositoryScanner.Handler() {
+            int count;
+
+            public void pom(RepositoryScanner.ScannedPom pom) {
+                for (Dependency dependency : pom.getDependencies()) {
+                    if (excludedScopes.contains(dependency.getScope())) {
+                        continue;
+                    }
+                    String description = artifactSync.getScopeDescription(dependency.getScope());
+                    if (dependency.isOptional()) {
+                        description += " #optional";
+                    }
+                    artifactSync.addArtifactVersion(dependency.getArtifact(), false, noLicenses);
+                    artifactSync.addDependency(pom.getArtifact(), dependency.getArtifact(), description);
+                }
+                if (++count % SCAN_BATCH_SIZE == 0) {
+                    artifactSync.syncReferences();
+                    pipeline.flush();
+                }
+            }
+        });
+        artifactSync.syncReferences();
+        pipeline.flush();
+        mavenUtil.getReporter().println(scanner.toString());
+        return new LinkedList<String>();
+    }
+
     /**
      * @param projectStr
      * @return The component ID of the project
      * @throws ArtifactResolutionException
      */
     public String syncProject(String projectStr) throws ArtifactResolutionException  {
-        MavenProject mavenProject = mavenUtil.loadProject(projectStr);
-        String ret = syncProject(mavenProject);
+        String name = queueProject(projectStr);
+        pipeline.flush();
+        return pipeline.getId(name);
+    }
+
+    /**
+     * Queues a project, its artifact graph, parents and modules in the write pipeline.
+     * @param projectStr
+     * @return The component name of the project
+     * @throws ArtifactResolutionException
+     */
+    private String queueProject(String projectStr) throws ArtifactResolutionException  {
+        PomMetadata mavenProject = loadProject(projectStr);
+        String ret = queueProject(mavenProject);
         syncRelations();
         return ret;
     }
 
 
+    private PomMetadata loadProject(String projectStr) throws ArtifactResolutionException {
+        PomMetadata mavenProject = (loader != null) ? loader.getProject(projectStr) : null;
+        if (mavenProject == null) {
+            mavenProject = mavenUtil.loadMetadata(projectStr);
+        }
+        return mavenProject;
+    }
+
     /**
-     * Returns Ardoq project component ID
+     * Returns Ardoq project component name
      * @param project
      * @return
      */
-    private String syncProject(MavenProject project) {
+    private String queueProject(PomMetadata project) {
         String componentName = project.getName();
 
-        if (componentNameIdMap.containsKey(componentName)) {
-            return componentNameIdMap.get(componentName);
+        if (pipeline.contains(componentName)) {
+            return componentName;
         }
 
-        Component ardoqProjectComponent = new Component(componentName, ardoqSync.getWorkspace().getId(), "", COMPONENT_TYPE_PROJECT);
+        Component ardoqProjectComponent = new Component(componentName, sink.getWorkspaceId(), "", COMPONENT_TYPE_PROJECT);
 
         ardoqProjectComponent.setDescription(buildProjectDescription(project));
 
@@ -108,19 +310,16 @@ public class ProjectSync {
         mavenUtil.addLicense(project, fields);
 
         ardoqProjectComponent.setFields(fields);
-        ardoqProjectComponent = ardoqSync.addComponent(ardoqProjectComponent);
-        componentNameIdMap.put(componentName, ardoqProjectComponent.getId());
+        pipeline.addComponent(WritePipeline.WAVE_ROOTS, ardoqProjectComponent, null, null);
 
-        Map<String, Integer> refTypes = ardoqSync.getModel().getReferenceTypes();
+        syncProjectArtifact(project, ardoqProjectComponent);
+        syncProjectParent(project, ardoqProjectComponent);
+        syncProjectModules(project, ardoqProjectComponent);
 
-        syncProjectArtifact(project, ardoqProjectComponent, refTypes);
-        syncProjectParent(project, ardoqProjectComponent, refTypes);
-        syncProjectModules(project, ardoqProjectComponent, refTypes);
-
-        return ardoqProjectComponent.getId();
+        return componentName;
     }
 
-    private String buildProjectDescription(MavenProject project) {
+    private String buildProjectDescription(PomMetadata project) {
         // TODO: add url, organization, developers, contributors, mailing lists, etc..
 
 
@@ -131,14 +330,14 @@ public class ProjectSync {
 
         if (!project.getLicenses().isEmpty()) {
             description += "\nLicenses\n----\n\n";
-            for (License license : project.getLicenses()) {
-                description += " * " + license.getName() + "\n";
+            for (String license : project.getLicenses()) {
+                description += " * " + license + "\n";
             }
         }
 
         if( !project.getDevelopers().isEmpty()) {
             description += "\nDevelopers\n----\n\n";
-            for (Developer developer : project.getDevelopers()) {
+            for (PomDeveloper developer : project.getDevelopers()) {
                 description += " * "+developer.getName()+" ("+developer.getEmail()+")\n";
             }
         }
@@ -147,89 +346,76 @@ public class ProjectSync {
     }
 
     /**
-     * NB! only modules named the same as the artifact will be synced
+     * NB! unless the project was read from disk, only modules named the same as the artifact will be synced
      * @param project
      * @param ardoqProjectComponent
-     * @param refTypes
      * @throws DependencyCollectionException
      */
-    private void syncProjectModules(MavenProject project, Component ardoqProjectComponent, Map<String, Integer> refTypes) {
+    private void syncProjectModules(PomMetadata project, Component ardoqProjectComponent) {
         for (String module : project.getModules()) {
             try {
-                String groupId = project.getGroupId();
-                String artifactId = module;
-                String version = project.getVersion();
-
-                String id = groupId + ":" + artifactId + ":" + version;
-                String moduleComponentId = syncProject(id);
+                String id = mavenUtil.getModuleId(project, module);
+                String moduleComponentName = queueProject(id);
 
-                if(moduleComponentId!=null) {
-                    int refType = refTypes.get("Module");
-                    Reference ref = new Reference(ardoqSync.getWorkspace().getId(), "artifact", ardoqProjectComponent.getId(), moduleComponentId, refType);
-                    ardoqSync.addReference(ref);
-                }
-                else{
-                    System.err.println("Error adding reference from "+ardoqProjectComponent.getId()+ " "+moduleComponentId);
-                }
+                int refType = sink.getReferenceType("Module");
+                pipeline.addReference(ardoqProjectComponent.getName(), moduleComponentName, "artifact", refType);
 
             } catch (ArtifactResolutionException e) {
-                System.out.println("***************************************************************");
-                System.out.println("* Error syncing Maven module " + module + " of " + project.getName());
-                System.out.println("* This tool assumes that the module name equals the artifactId. ");
-                System.out.println("* -> ignoring and carrying on.. ");
-                System.out.println("***************************************************************");
+                ConsoleReporter reporter = mavenUtil.getReporter();
+                reporter.println("***************************************************************");
+                reporter.println("* Error syncing Maven module " + module + " of " + project.getName());
+                reporter.println("* This tool assumes that the module name equals the artifactId. ");
+                reporter.println("* -> ignoring and carrying on.. ");
+                reporter.println("***************************************************************");
             }
         }
     }
 
-    private void syncProjectArtifact(MavenProject project, Component ardoqProjectComponent, Map<String, Integer> refTypes) {
-        int refType = refTypes.get("Dependency");
-        DefaultArtifact artifact = new DefaultArtifact(project.getGroupId(), project.getArtifactId(), "pom", project.getVersion());
+    private void syncProjectArtifact(PomMetadata project, Component ardoqProjectComponent) {
+        int refType = sink.getReferenceType("Dependency");
+        Artifact artifact = getProjectArtifact(project);
         syncProjectDependencies(artifact);
 
-        String sourceId = ardoqProjectComponent.getId();
-        String targetId = artifactSync.getComponentIdFromArtifact(artifact);
-
-        if(sourceId!=null && targetId!=null){
-            System.out.println("adding reference from project to artifact " + sourceId + " " + ardoqProjectComponent.getName() + " " + targetId + " "+ artifact.getArtifactId());
-            Reference ref = new Reference(ardoqSync.getWorkspace().getId(), "artifact", ardoqProjectComponent.getId(), targetId, refType);
-            ardoqSync.addReference(ref);
-        }
-        else{
-            System.err.println("Error creating reference from "+ardoqProjectComponent.getName()+" to "+artifact.getArtifactId()+".. sourceId: "+sourceId+", targetId: "+targetId);
+        String targetName = ArtifactSync.getArtifactVersionComponentName(artifact);
+        if (mavenUtil.getReporter().isVerbose()) {
+            mavenUtil.getReporter().println("adding reference from project to artifact " + ardoqProjectComponent.getName() + " " + targetName);
         }
+        pipeline.addReference(ardoqProjectComponent.getName(), targetName, "artifact", refType);
     }
 
-    private void syncProjectParent(MavenProject project, Component ardoqProjectComponent, Map<String, Integer> refTypes) {
-        Parent parent = project.getModel().getParent();
-        if (parent != null) {
+    private void syncProjectParent(PomMetadata project, Component ardoqProjectComponent) {
+        String parentId = project.getParentId();
+        if (parentId != null) {
             try {
-                String parentComponentId = syncProject(parent.getId());
+                String parentComponentName = queueProject(parentId);
 
-                if(ardoqProjectComponent.getId()!=null && parentComponentId!=null) {
-                    System.out.println("reference relation from project to parent " + ardoqProjectComponent.getId() + " " + parentComponentId);
-                    int refTypeParent = refTypes.get("Parent");
-                    Reference parentRef = new Reference(ardoqSync.getWorkspace().getId(), "artifact", ardoqProjectComponent.getId(), parentComponentId, refTypeParent);
-                    ardoqSync.addReference(parentRef);
-                }
-                else{
-                    System.err.println("Error creating reference from "+ardoqProjectComponent.getId() + " to " + parentComponentId);
+                if (mavenUtil.getReporter().isVerbose()) {
+                    mavenUtil.getReporter().println("reference relation from project to parent " + ardoqProjectComponent.getName() + " " + parentComponentName);
                 }
+                int refTypeParent = sink.getReferenceType("Parent");
+                pipeline.addReference(ardoqProjectComponent.getName(), parentComponentName, "artifact", refTypeParent);
             } catch (ArtifactResolutionException e) {
-                throw new RuntimeException("Error reading Maven project parent: "+parent.getId(),e);
+                throw new RuntimeException("Error reading Maven project parent: "+parentId,e);
             }
         }
     }
 
     private void syncProjectDependencies(Artifact artifact) {
         try {
-            CollectRequest collectRequest = new CollectRequest();
-            collectRequest.setRoot(new Dependency(artifact, ""));
-            collectRequest.setRepositories(mavenUtil.getRepos());
-            CollectResult collectResult = mavenUtil.getSystem().collectDependencies(mavenUtil.getSession(), collectRequest);
+            CollectResult collectResult = (loader != null) ? loader.getDependencies(artifact) : null;
+            if (collectResult == null) {
+                collectResult = mavenUtil.collectDependencies(artifact);
+            }
+            mavenUtil.resolvePoms(collectResult.getRoot());
 
-            collectResult.getRoot().accept(new ConsoleDependencyGraphDumper(mavenUtil.getPrintStream()));
+            if (mavenUtil.getReporter().isVerbose()) {
+                // dumped in one piece, so the tree isn't interleaved with the output of other threads
+                ByteArrayOutputStream tree = new ByteArrayOutputStream();
+                collectResult.getRoot().accept(new ConsoleDependencyGraphDumper(new PrintStream(tree)));
+                mavenUtil.getReporter().println(tree.toString().trim());
+            }
             collectResult.getRoot().accept(artifactSync);
+            addExclusions(collectResult.getRoot());
         } catch (DependencyCollectionException e) {
             throw new RuntimeException(e);
         }
@@ -239,5 +425,19 @@ public class ProjectSync {
         artifactSync.syncReferences();
     }
 
+    static Artifact getProjectArtifact(PomMetadata project) {
+        return new DefaultArtifact(project.getGroupId(), project.getArtifactId(), "pom", project.getVersion());
+    }
+
+    /**
+     * NB! assumes that the module name equals the artifactId, see MavenUtil.getModuleId for projects read from disk
+     * @param project
+     * @param module
+     * @return coordinates of the module
+     */
+    static String getModuleId(PomMetadata project, String module) {
+        return project.getGroupId() + ":" + module + ":" + project.getVersion();
+    }
+
 
 }
@@ -0,0 +1,512 @@
+package com.ardoq.mavenImport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.model.License;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.IOUtil;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.VersionScheme;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ardoq.mavenImport.util.ConsoleReporter;
+import com.ardoq.mavenImport.util.RepositoryLayoutModelResolver;
+import com.ardoq.mavenImport.util.SharedModelCache;
+
+/**
+ * Reads the dependencies declared by every POM in a repository directory, e.g. a local repository or a mirror of
+ * a repository manager's storage, to build the graph of all its artifacts at once instead of collecting a graph per
+ * root. Nothing is resolved from a repository: effective models are built with the parents and imported POMs found
+ * in the same directory, and a POM whose parent isn't there is read as is. The parent models are cached for this scan
+ * only, in a bounded cache, so they neither pile up nor fill the model cache of later imports.
+ *
+ * The tree is walked in name order by one thread while the POMs are parsed on a pool, and the results are appended
+ * to a journal in walk order. Only a bounded number of POMs are in flight, so memory doesn't depend on the size of
+ * the repository. A scan that was interrupted resumes after the last POM in its journal; the journal is deleted once
+ * its graph has been written.
+ */
+public class RepositoryScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryScanner.class);
+
+    private static final int MAGIC = 0x41445253;
+    private static final int FORMAT = 1;
+
+    static final int PROGRESS_INTERVAL = 10000;
+
+    private static final Future<ScannedPom> END = new FutureTask<ScannedPom>(new Callable<ScannedPom>() {
+        public ScannedPom call() {
+            return null;
+        }
+    });
+
+    /**
+     * Receives the POMs of a journal.
+     */
+    public interface Handler {
+        void pom(ScannedPom pom);
+    }
+
+    /**
+     * The coordinates, licenses and declared dependencies of a POM.
+     */
+    public static class ScannedPom {
+        final String path;
+        final Artifact artifact;
+        final List<String> licenses;
+        final List<Dependency> dependencies;
+
+        ScannedPom(String path, Artifact artifact, List<String> licenses, List<Dependency> dependencies) {
+            this.path = path;
+            this.artifact = artifact;
+            this.licenses = licenses;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * @return path of the POM in the repository, / separated
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public Artifact getArtifact() {
+            return artifact;
+        }
+
+        public List<String> getLicenses() {
+            return licenses;
+        }
+
+        /**
+         * @return the declared dependencies with a single version, not a range, of all scopes
+         */
+        public List<Dependency> getDependencies() {
+            return dependencies;
+        }
+    }
+
+    final MavenUtil mavenUtil;
+    final File repository;
+    final File journal;
+    final int threads;
+    final RepositoryLayoutModelResolver resolver;
+    final SharedModelCache modelCache = new SharedModelCache();
+    final VersionScheme versionScheme = new GenericVersionScheme();
+
+    final AtomicLong scanned = new AtomicLong();
+    final AtomicLong resumed = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong unversioned = new AtomicLong();
+
+    /**
+     * @param mavenUtil builds the effective models
+     * @param repository root of the repository layout
+     * @param journal where the scan is recorded, null for the default
+     * @param threads number of POMs parsed at a time
+     * @throws IOException
+     */
+    public RepositoryScanner(MavenUtil mavenUtil, File repository, File journal, int threads) throws IOException {
+        this.mavenUtil = mavenUtil;
+        this.repository = repository.getCanonicalFile();
+        this.journal = (journal != null) ? journal : getDefaultJournal(this.repository);
+        this.threads = Math.max(1, threads);
+        this.resolver = new RepositoryLayoutModelResolver(this.repository);
+    }
+
+    /**
+     * @param repository
+     * @return a journal per repository in ~/.ardoq-maven-import/repository-scans
+     */
+    public static File getDefaultJournal(File repository) {
+        File directory = new File(new File(System.getProperty("user.home"), ".ardoq-maven-import"), "repository-scans");
+        String name = repository.getName() + "-" + Integer.toHexString(repository.getPath().hashCode()) + ".journal";
+        return new File(directory, name);
+    }
+
+    public File getRepository() {
+        return repository;
+    }
+
+    public File getJournal() {
+        return journal;
+    }
+
+    /**
+     * Scans the POMs that aren't in the journal yet.
+     * @throws IOException
+     */
+    public void scan() throws IOException {
+        final String[] last = resume();
+        journal.getAbsoluteFile().getParentFile().mkdirs();
+        boolean created = !journal.exists();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true), 65536));
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final BlockingQueue<Future<ScannedPom>> queue = new ArrayBlockingQueue<Future<ScannedPom>>(threads * 16);
+        Thread walker = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    walk(repository.toPath(), new String[0], last, pool, queue);
+                } catch (final Exception e) {
+                    FutureTask<ScannedPom> failure = new FutureTask<ScannedPom>(new Callable<ScannedPom>() {
+                        public ScannedPom call() throws Exception {
+                            throw e;
+                        }
+                    });
+                    failure.run();
+                    put(queue, failure);
+                } finally {
+                    put(queue, END);
+                }
+            }
+        }, "repository-scan");
+        walker.setDaemon(true);
+        walker.start();
+
+        ConsoleReporter reporter = mavenUtil.getReporter();
+        try {
+            if (created) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(repository.getPath());
+            }
+            while (true) {
+                Future<ScannedPom> future = queue.take();
+                if (future == END) {
+                    break;
+                }
+                ScannedPom pom = future.get();
+                if (pom == null) {
+                    continue;
+                }
+                write(out, pom);
+                if (scanned.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                    // everything up to here survives an interruption
+                    out.flush();
+                    if (reporter.isVerbose()) {
+                        reporter.println("Scanned " + scanned + " POMs, at " + pom.path);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Repository scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error scanning " + repository + ": " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            walker.interrupt();
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    private static void put(BlockingQueue<Future<ScannedPom>> queue, Future<ScannedPom> future) {
+        try {
+            queue.put(future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Walks a directory in name order, depth first, so POMs are visited in the order of their path components.
+     * Subtrees that come before the last POM of the journal are skipped without listing them.
+     */
+    private void walk(Path directory, String[] path, String[] last, ExecutorService pool, BlockingQueue<Future<ScannedPom>> queue)
+            throws IOException, InterruptedException {
+        List<String> names = new ArrayList<String>();
+        DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+        try {
+            for (Path child : stream) {
+                names.add(child.getFileName().toString());
+            }
+        } finally {
+            stream.close();
+        }
+        Collections.sort(names);
+
+        for (String name : names) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            // .locks, .cache, .index and the like
+            if (name.startsWith(".")) {
+                continue;
+            }
+            Path child = directory.resolve(name);
+            String[] childPath = append(path, name);
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                if (last == null || compare(childPath, last) >= 0 || isPrefix(childPath, last)) {
+                    walk(child, childPath, last, pool, queue);
+                }
+            } else if (name.endsWith(".pom") && (last == null || compare(childPath, last) > 0)) {
+                final File pom = child.toFile();
+                final String pomPath = join(childPath);
+                queue.put(pool.submit(new Callable<ScannedPom>() {
+                    public ScannedPom call() {
+                        return parse(pom, pomPath);
+                    }
+                }));
+            }
+        }
+    }
+
+    /**
+     * @return the POM's coordinates, licenses and declared dependencies, or null if it can't be read
+     */
+    ScannedPom parse(File pom, String path) {
+        Model model;
+        try {
+            try {
+                model = mavenUtil.buildEffectiveModel(pom, resolver, modelCache);
+            } catch (ModelBuildingException e) {
+                logger.debug("Could not build the effective model of " + pom + ", reading the POM as is", e);
+                MavenProject project = MavenUtil.loadProject(pom);
+                model = project.getModel().clone();
+                model.setGroupId(project.getGroupId());
+                model.setVersion(project.getVersion());
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Could not read " + pom, e);
+            failed.incrementAndGet();
+            return null;
+        }
+        if (model.getGroupId() == null || model.getArtifactId() == null || model.getVersion() == null) {
+            failed.incrementAndGet();
+            return null;
+        }
+
+        List<String> licenses = new ArrayList<String>();
+        for (License license : model.getLicenses()) {
+            licenses.add(license.getName());
+        }
+        List<Dependency> dependencies = new ArrayList<Dependency>();
+        for (org.apache.maven.model.Dependency declared : model.getDependencies()) {
+            String version = declared.getVersion();
+            // managed by a parent that isn't in the repository, a property that couldn't be interpolated, or a range
+            if (version == null || version.contains("${") || declared.getGroupId() == null || declared.getGroupId().contains("${")
+                    || !isSingleVersion(version)) {
+                unversioned.incrementAndGet();
+                continue;
+            }
+            String scope = (declared.getScope() != null) ? declared.getScope() : "compile";
+            dependencies.add(new Dependency(new DefaultArtifact(declared.getGroupId(), declared.getArtifactId(), "pom", version), scope, declared.isOptional()));
+        }
+        return new ScannedPom(path, new DefaultArtifact(model.getGroupId(), model.getArtifactId(), "pom", model.getVersion()), licenses, dependencies);
+    }
+
+    private boolean isSingleVersion(String version) {
+        try {
+            return versionScheme.parseVersionConstraint(version).getVersion() != null;
+        } catch (InvalidVersionSpecificationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the journal of an earlier scan of the repository, and cuts off a record that was only partly written.
+     * @return path of the last POM in the journal, or null to scan everything
+     */
+    private String[] resume() throws IOException {
+        if (!journal.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal), 65536));
+        String lastPath = null;
+        long complete = 0;
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !repository.getPath().equals(in.readUTF())) {
+                IOUtil.close(in);
+                in = null;
+                mavenUtil.getReporter().println("Journal " + journal + " isn't a scan of " + repository + ", scanning everything");
+                if (!journal.delete()) {
+                    throw new IOException("Could not delete " + journal);
+                }
+                return null;
+            }
+            complete = 8 + 2 + repository.getPath().getBytes("UTF-8").length;
+            while (true) {
+                int length = in.readInt();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                lastPath = new DataInputStream(new ByteArrayInputStream(record)).readUTF();
+                complete += 4 + length;
+                resumed.incrementAndGet();
+            }
+        } catch (EOFException e) {
+            // the end, or a record cut off by the interruption
+        } finally {
+            IOUtil.close(in);
+        }
+        if (complete == 0) {
+            journal.delete();
+            return null;
+        }
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        try {
+            file.setLength(complete);
+        } finally {
+            file.close();
+        }
+        if (lastPath != null) {
+            mavenUtil.getReporter().println("Resuming the scan of " + repository + " after " + resumed + " POMs, at " + lastPath);
+        }
+        return (lastPath != null) ? lastPath.split("/") : null;
+    }
+
+    /**
+     * Reads the POMs in the journal, in walk order.
+     * @param handler
+     * @throws IOException
+     */
+    public void replay(Handler handler) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal), 65536));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("Not a repository scan journal: " + journal);
+            }
+            in.readUTF();
+            while (true) {
+                try {
+                    // the length is only needed to cut off a partial record
+                    in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                handler.pom(read(in));
+            }
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Deletes the journal, the next scan of the repository starts from the beginning.
+     */
+    public void delete() {
+        if (journal.exists() && !journal.delete()) {
+            logger.warn("Could not delete " + journal);
+        }
+    }
+
+    private static void write(DataOutputStream out, ScannedPom pom) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeUTF(pom.path);
+        writeArtifact(record, pom.artifact);
+        record.writeShort(pom.licenses.size());
+        for (String license : pom.licenses) {
+            record.writeUTF(String.valueOf(license));
+        }
+        record.writeShort(pom.dependencies.size());
+        for (Dependency dependency : pom.dependencies) {
+            writeArtifact(record, dependency.getArtifact());
+            record.writeUTF(dependency.getScope());
+            record.writeBoolean(dependency.isOptional());
+        }
+        record.flush();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static ScannedPom read(DataInputStream in) throws IOException {
+        String path = in.readUTF();
+        Artifact artifact = readArtifact(in);
+        int count = in.readShort();
+        List<String> licenses = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            licenses.add(in.readUTF());
+        }
+        count = in.readShort();
+        List<Dependency> dependencies = new ArrayList<Dependency>(count);
+        for (int i = 0; i < count; i++) {
+            Artifact target = readArtifact(in);
+            String scope = in.readUTF();
+            dependencies.add(new Dependency(target, scope, in.readBoolean()));
+        }
+        return new ScannedPom(path, artifact, licenses, dependencies);
+    }
+
+    private static void writeArtifact(DataOutputStream out, Artifact artifact) throws IOException {
+        out.writeUTF(artifact.getGroupId());
+        out.writeUTF(artifact.getArtifactId());
+        out.writeUTF(artifact.getVersion());
+    }
+
+    private static Artifact readArtifact(DataInputStream in) throws IOException {
+        return new DefaultArtifact(in.readUTF(), in.readUTF(), "pom", in.readUTF());
+    }
+
+    static int compare(String[] a, String[] b) {
+        for (int i = 0; i < a.length && i < b.length; i++) {
+            int c = a[i].compareTo(b[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static boolean isPrefix(String[] prefix, String[] path) {
+        return prefix.length <= path.length && compare(prefix, Arrays.copyOf(path, prefix.length)) == 0;
+    }
+
+    private static String[] append(String[] path, String name) {
+        String[] appended = Arrays.copyOf(path, path.length + 1);
+        appended[path.length] = name;
+        return appended;
+    }
+
+    private static String join(String[] path) {
+        StringBuilder joined = new StringBuilder();
+        for (String name : path) {
+            if (joined.length() > 0) {
+                joined.append('/');
+            }
+            joined.append(name);
+        }
+        return joined.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Repository scan of " + repository + ": " + scanned + " POMs scanned, " + resumed + " resumed from the journal, "
+                + failed + " unreadable, " + unversioned + " dependencies without a single version skipped";
+    }
+
+}
@@ -0,0 +1,373 @@
+package com.ardoq.mavenImport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ardoq.model.AggregatedWorkspace;
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * What an import wrote to a workspace: the Ardoq ID and a hash of the payload of every component, keyed by name, and
+ * of every reference, keyed by source name, target name and type. The snapshot of the previous import lets the
+ * {@link WritePipeline} skip components and references that haven't changed, and lists the ones to delete.
+ *
+ * A reference is keyed by the positions of its source and target among the components of the snapshot, and payloads
+ * are hashed to 64 bits, so a reference costs little more than its ID however long the component names are.
+ *
+ * Snapshots are stored per workspace ID in a directory, and written in the order the items were written, so
+ * deleting in reverse order removes children before their parents.
+ */
+public class WorkspaceSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceSnapshot.class);
+
+    private static final int MAGIC = 0x41445753;
+    private static final int FORMAT = 2;
+
+    final String workspaceId;
+    final Map<String, Entry> components = new LinkedHashMap<String, Entry>();
+    // names of the components by position, which references refer to
+    final List<String> componentNames = new ArrayList<String>();
+    final Map<ReferenceKey, Entry> references = new LinkedHashMap<ReferenceKey, Entry>();
+
+    public WorkspaceSnapshot(String workspaceId) {
+        this.workspaceId = workspaceId;
+    }
+
+    public static File getDefaultDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".ardoq-maven-import"), "workspace-snapshots");
+    }
+
+    /**
+     * @param directory
+     * @param workspaceId
+     * @return the snapshot of the last import into the workspace, or null if there is none
+     */
+    public static WorkspaceSnapshot load(File directory, String workspaceId) {
+        File file = getFile(directory, workspaceId);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !workspaceId.equals(in.readUTF())) {
+                return null;
+            }
+            WorkspaceSnapshot snapshot = new WorkspaceSnapshot(workspaceId);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                snapshot.putComponent(name, in.readUTF(), in.readLong());
+            }
+            count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                ReferenceKey key = new ReferenceKey(in.readInt(), in.readInt(), in.readInt());
+                if (key.source >= snapshot.componentNames.size() || key.target >= snapshot.componentNames.size()) {
+                    throw new IOException("Reference to unknown component");
+                }
+                snapshot.references.put(key, new Entry(in.readUTF(), in.readLong()));
+            }
+            return snapshot;
+        } catch (IOException e) {
+            logger.debug("Error reading workspace snapshot " + file, e);
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Stores the snapshot, replacing the previous one of the workspace.
+     * @param directory
+     */
+    public void save(File directory) {
+        File file = getFile(directory, workspaceId);
+        // write to a temporary file first, so an interrupted run leaves the previous snapshot intact
+        DataOutputStream out = null;
+        File tmp = null;
+        try {
+            directory.mkdirs();
+            tmp = File.createTempFile(file.getName(), ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(workspaceId);
+            synchronized (this) {
+                out.writeInt(components.size());
+                for (Map.Entry<String, Entry> entry : components.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().id);
+                    out.writeLong(entry.getValue().hash);
+                }
+                out.writeInt(references.size());
+                for (Map.Entry<ReferenceKey, Entry> entry : references.entrySet()) {
+                    out.writeInt(entry.getKey().source);
+                    out.writeInt(entry.getKey().target);
+                    out.writeInt(entry.getKey().type);
+                    out.writeUTF(entry.getValue().id);
+                    out.writeLong(entry.getValue().hash);
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Error storing workspace snapshot " + file, e);
+        } finally {
+            IOUtil.close(out);
+            if (tmp != null && tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static File getFile(File directory, String workspaceId) {
+        return new File(directory, workspaceId + ".snapshot");
+    }
+
+    /**
+     * @param component a component with its parent ID set
+     * @return hash of everything the import writes to the component
+     */
+    public static long hash(Component component) {
+        Map<String, Object> fields = component.getFields() != null ? new TreeMap<String, Object>(component.getFields()) : null;
+        return hash(component.getType() + "\n" + component.getParent() + "\n" + component.getDescription() + "\n" + fields);
+    }
+
+    /**
+     * @param reference
+     * @return hash of everything the import writes to the reference
+     */
+    public static long hash(Reference reference) {
+        return hash(reference.getType() + "\n" + reference.getSource() + "\n" + reference.getTarget() + "\n" + reference.getDescription());
+    }
+
+    /**
+     * @param payload
+     * @return the first 64 bits of the SHA-1 digest of the payload
+     */
+    private static long hash(String payload) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(payload.getBytes("UTF-8"));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    /**
+     * @param name
+     * @return the component written with this name, or null
+     */
+    public synchronized Entry getComponent(String name) {
+        return components.get(name);
+    }
+
+    public synchronized void putComponent(String name, String id, long hash) {
+        Entry last = components.get(name);
+        Entry entry = new Entry(id, hash, last != null ? last.position : componentNames.size());
+        components.put(name, entry);
+        if (last == null) {
+            componentNames.add(name);
+        }
+    }
+
+    /**
+     * @param sourceName
+     * @param targetName
+     * @param type
+     * @return the reference written between these components with this type, or null
+     */
+    public synchronized Entry getReference(String sourceName, String targetName, int type) {
+        ReferenceKey key = getReferenceKey(sourceName, targetName, type);
+        return key != null ? references.get(key) : null;
+    }
+
+    /**
+     * @param sourceName a component of this snapshot
+     * @param targetName a component of this snapshot
+     * @param type
+     * @param id
+     * @param hash
+     */
+    public synchronized void putReference(String sourceName, String targetName, int type, String id, long hash) {
+        ReferenceKey key = getReferenceKey(sourceName, targetName, type);
+        if (key == null) {
+            throw new IllegalArgumentException("Reference from " + sourceName + " to " + targetName + " between components not in the snapshot");
+        }
+        references.put(key, new Entry(id, hash));
+    }
+
+    private ReferenceKey getReferenceKey(String sourceName, String targetName, int type) {
+        Entry source = components.get(sourceName);
+        Entry target = components.get(targetName);
+        return (source != null && target != null) ? new ReferenceKey(source.position, target.position, type) : null;
+    }
+
+    /**
+     * @param current snapshot of this import
+     * @return IDs of the components of this snapshot that current doesn't have, children before parents
+     */
+    public List<String> getRemovedComponentIds(WorkspaceSnapshot current) {
+        List<String> removed = new ArrayList<String>();
+        synchronized (this) {
+            for (Map.Entry<String, Entry> entry : components.entrySet()) {
+                Entry kept = current.getComponent(entry.getKey());
+                if (kept == null || !kept.id.equals(entry.getValue().id)) {
+                    removed.add(entry.getValue().id);
+                }
+            }
+        }
+        Collections.reverse(removed);
+        return removed;
+    }
+
+    /**
+     * @param current snapshot of this import
+     * @return IDs of the references of this snapshot that current doesn't have
+     */
+    public List<String> getRemovedReferenceIds(WorkspaceSnapshot current) {
+        List<String> removed = new ArrayList<String>();
+        synchronized (this) {
+            for (Map.Entry<ReferenceKey, Entry> entry : references.entrySet()) {
+                ReferenceKey key = entry.getKey();
+                Entry kept = current.getReference(componentNames.get(key.source), componentNames.get(key.target), key.type);
+                if (kept == null || !kept.id.equals(entry.getValue().id)) {
+                    removed.add(entry.getValue().id);
+                }
+            }
+        }
+        Collections.reverse(removed);
+        return removed;
+    }
+
+    /**
+     * Checks that the workspace holds exactly the components and references of this snapshot, by ID and name. Changes
+     * made in Ardoq since the snapshot was taken make it useless for a delta sync.
+     * @param workspace
+     * @return null if the workspace matches, otherwise a description of the first difference
+     */
+    public String verify(AggregatedWorkspace workspace) {
+        Map<String, String> componentNames = new HashMap<String, String>();
+        for (Component component : workspace.getComponents()) {
+            componentNames.put(component.getId(), component.getName());
+        }
+        Map<String, String> expected = new HashMap<String, String>();
+        synchronized (this) {
+            for (Map.Entry<String, Entry> entry : components.entrySet()) {
+                expected.put(entry.getValue().id, entry.getKey());
+            }
+        }
+        if (!componentNames.equals(expected)) {
+            return "components differ, " + componentNames.size() + " in the workspace, " + expected.size() + " in the snapshot";
+        }
+
+        List<String> referenceIds = new ArrayList<String>();
+        for (Reference reference : workspace.getReferences()) {
+            referenceIds.add(reference.getId());
+        }
+        List<String> expectedIds = new ArrayList<String>();
+        synchronized (this) {
+            for (Entry entry : references.values()) {
+                expectedIds.add(entry.id);
+            }
+        }
+        Collections.sort(referenceIds);
+        Collections.sort(expectedIds);
+        if (!referenceIds.equals(expectedIds)) {
+            return "references differ, " + referenceIds.size() + " in the workspace, " + expectedIds.size() + " in the snapshot";
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Workspace snapshot " + workspaceId + ": " + components.size() + " components, " + references.size() + " references";
+    }
+
+    public static class Entry {
+        final String id;
+        final long hash;
+        // position among the components, unused for references
+        final int position;
+
+        Entry(String id, long hash) {
+            this(id, hash, -1);
+        }
+
+        Entry(String id, long hash, int position) {
+            this.id = id;
+            this.hash = hash;
+            this.position = position;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+    }
+
+    static final class ReferenceKey {
+        final int source;
+        final int target;
+        final int type;
+
+        ReferenceKey(int source, int target, int type) {
+            this.source = source;
+            this.target = target;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ReferenceKey)) {
+                return false;
+            }
+            ReferenceKey that = (ReferenceKey) obj;
+            return source == that.source && target == that.target && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (source * 31 + target) * 31 + type;
+        }
+    }
+
+}
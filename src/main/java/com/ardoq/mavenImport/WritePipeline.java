@@ -0,0 +1,541 @@
+package com.ardoq.mavenImport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.eclipse.aether.artifact.Artifact;
+
+import com.ardoq.mavenImport.jfr.EventSpan;
+import com.ardoq.mavenImport.jfr.ImportEventType;
+import com.ardoq.mavenImport.jfr.ImportEvents;
+import com.ardoq.mavenImport.sink.ArdoqSink;
+import com.ardoq.mavenImport.sink.OutputSink;
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+import com.ardoq.util.SyncUtil;
+
+/**
+ * Collects the components and references of an import by name, and writes them to an {@link OutputSink}, Ardoq
+ * unless exporting, in waves: components whose parents are written, starting with the ones without a parent
+ * (Projects and Groups), then Artifacts, then Versions, and finally the references. A concurrent sink is written by
+ * a pool of threads, a wave at a time, with the references in chunks; other sinks are written one item at a time.
+ * At most as many writes as there are threads are in flight, and no more of them are prepared.
+ *
+ * Components are prepared in the order they were first added, per wave, and their IDs go into the pipeline and the
+ * snapshot in that order once the wave is written, so the result is the same as adding them to the SyncUtil
+ * directly. The license of a component is looked up just before it is written.
+ *
+ * Given the {@link WorkspaceSnapshot} of the previous import, components and references whose payload hasn't changed
+ * are not sent again, their IDs are taken from the snapshot. Everything written or skipped goes into the snapshot of
+ * this import.
+ */
+public class WritePipeline {
+
+    public static final int WAVE_ROOTS = 0;
+    public static final int WAVE_ARTIFACTS = 1;
+    public static final int WAVE_VERSIONS = 2;
+    static final int WAVES = 3;
+
+    /** references written one after the other by a thread */
+    static final int REFERENCE_CHUNK_SIZE = 50;
+
+    final OutputSink sink;
+    final MavenUtil mavenUtil;
+    final int writeThreads;
+
+    final List<Map<String, PendingComponent>> waves = new ArrayList<Map<String, PendingComponent>>();
+    final PendingReferences references = new PendingReferences();
+    final Map<String, String> componentNameIdMap = new HashMap<String, String>();
+
+    WorkspaceSnapshot previous;
+    final WorkspaceSnapshot current;
+    long written;
+    long unchanged;
+
+    public WritePipeline(SyncUtil ardoqSync, MavenUtil mavenUtil) {
+        this(new ArdoqSink(ardoqSync), mavenUtil);
+    }
+
+    public WritePipeline(OutputSink sink, MavenUtil mavenUtil) {
+        this(sink, mavenUtil, 1);
+    }
+
+    /**
+     * @param sink
+     * @param mavenUtil
+     * @param writeThreads number of components or reference chunks written at a time if the sink is concurrent, 1
+     *            writes one item at a time
+     */
+    public WritePipeline(OutputSink sink, MavenUtil mavenUtil, int writeThreads) {
+        this.sink = sink;
+        this.mavenUtil = mavenUtil;
+        this.writeThreads = Math.max(1, writeThreads);
+        this.current = new WorkspaceSnapshot(sink.getWorkspaceId());
+        for (int i = 0; i < WAVES; i++) {
+            waves.add(new LinkedHashMap<String, PendingComponent>());
+        }
+    }
+
+    public OutputSink getSink() {
+        return sink;
+    }
+
+    /**
+     * @param previous snapshot of the previous import into the workspace, null to send everything
+     */
+    public void setPreviousSnapshot(WorkspaceSnapshot previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * @return snapshot of what this import has written so far
+     */
+    public WorkspaceSnapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * @param name
+     * @return true if a component with this name is written or waiting to be written
+     */
+    public boolean contains(String name) {
+        if (componentNameIdMap.containsKey(name)) {
+            return true;
+        }
+        for (Map<String, PendingComponent> wave : waves) {
+            if (wave.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queues a component, unless one with the same name is already queued or written.
+     * @param wave WAVE_ROOTS, WAVE_ARTIFACTS or WAVE_VERSIONS, the parent must be in an earlier wave
+     * @param component
+     * @param parentName name of the parent component, or null
+     * @param licenseArtifact artifact whose license is added to the fields of the component, or null
+     * @return true if the component was queued
+     */
+    public boolean addComponent(int wave, Component component, String parentName, Artifact licenseArtifact) {
+        if (contains(component.getName())) {
+            return false;
+        }
+        waves.get(wave).put(component.getName(), new PendingComponent(component, parentName, licenseArtifact));
+        return true;
+    }
+
+    /**
+     * Queues a reference between two components by name. It is written after all queued components.
+     * @param sourceName
+     * @param targetName
+     * @param description
+     * @param type
+     */
+    public void addReference(String sourceName, String targetName, String description, int type) {
+        references.add(sourceName, targetName, description, type);
+    }
+
+    /**
+     * @param name
+     * @return the ID of a written component, assigned by the sink, or null
+     */
+    public String getId(String name) {
+        return componentNameIdMap.get(name);
+    }
+
+    /**
+     * Writes everything queued so far, and waits until it is done.
+     */
+    public void flush() {
+        Writes writes = new Writes((sink.isConcurrent() && writeThreads > 1) ? writeThreads : 0);
+        try {
+            for (Map<String, PendingComponent> wave : waves) {
+                writeComponents(new ArrayList<PendingComponent>(wave.values()), writes);
+                wave.clear();
+            }
+            writeReferences(references, writes);
+            references.clear();
+        } finally {
+            writes.shutdown();
+        }
+    }
+
+    /**
+     * Writes the components of a wave, whose parents are all written, and records their IDs in queue order.
+     */
+    private void writeComponents(List<PendingComponent> wave, Writes writes) {
+        final String[] ids = new String[wave.size()];
+        long[] hashes = new long[wave.size()];
+        BitSet sent = new BitSet(wave.size());
+        for (int i = 0; i < wave.size(); i++) {
+            PendingComponent pending = wave.get(i);
+            final Component component = pending.component;
+            String parentId = null;
+            if (pending.parentName != null) {
+                parentId = componentNameIdMap.get(pending.parentName);
+                if (parentId == null) {
+                    throw new RuntimeException("Parent " + pending.parentName + " of " + component.getName() + " doesn't have an ID");
+                }
+                component.setParent(parentId);
+            }
+            if (pending.licenseArtifact != null) {
+                mavenUtil.addLicense(pending.licenseArtifact, component.getFields());
+            }
+
+            String name = component.getName();
+            hashes[i] = WorkspaceSnapshot.hash(component);
+            WorkspaceSnapshot.Entry last = (previous != null) ? previous.getComponent(name) : null;
+            if (last != null && last.getHash() == hashes[i]) {
+                ids[i] = last.getId();
+                continue;
+            }
+            if (mavenUtil.getReporter().isVerbose()) {
+                mavenUtil.getReporter().println("Adding component " + name + " of type " + component.getType() + (parentId != null ? ", parent: " + parentId : ""));
+            }
+            sent.set(i);
+            final int index = i;
+            writes.submit(new Runnable() {
+                public void run() {
+                    ids[index] = writeComponent(component);
+                }
+            });
+        }
+        writes.await();
+
+        for (int i = 0; i < wave.size(); i++) {
+            String name = wave.get(i).component.getName();
+            if (ids[i] == null) {
+                throw new RuntimeException("Component " + name + " doesn't have an ID");
+            }
+            if (sent.get(i)) {
+                written++;
+            } else {
+                unchanged++;
+            }
+            componentNameIdMap.put(name, ids[i]);
+            current.putComponent(name, ids[i], hashes[i]);
+        }
+    }
+
+    private String writeComponent(Component component) {
+        String name = component.getName();
+        long start = System.nanoTime();
+        EventSpan event = ImportEvents.begin(ImportEventType.ARDOQ_REQUEST).operation("addComponent").item(name);
+        String outcome = "failed";
+        try {
+            component = sink.addComponent(component);
+            outcome = "written";
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing component " + name + " to " + sink, e);
+        } finally {
+            event.end(outcome);
+            mavenUtil.getMetrics().record("ardoq_add_component", start);
+        }
+        return component.getId();
+    }
+
+    /**
+     * Writes the references in chunks, after deciding in queue order which of them are sent: a reference that is
+     * unchanged since the previous import, or already written by this one, is skipped, and of the references queued
+     * more than once only the last one is sent.
+     */
+    private void writeReferences(final PendingReferences references, Writes writes) {
+        String workspaceId = sink.getWorkspaceId();
+        long[] hashes = new long[references.size()];
+        BitSet send = new BitSet(references.size());
+        // the reference to send for each source, target and type
+        Map<String, Integer> queued = new HashMap<String, Integer>();
+        for (int i = 0; i < references.size(); i++) {
+            String sourceName = references.getSourceName(i);
+            String targetName = references.getTargetName(i);
+            int type = references.types[i];
+            String sourceId = componentNameIdMap.get(sourceName);
+            String targetId = componentNameIdMap.get(targetName);
+            if (sourceId == null || targetId == null) {
+                mavenUtil.getReporter().printError("Error creating reference from " + sourceName + " to " + targetName + ".. sourceId: " + sourceId + ", targetId: " + targetId);
+                continue;
+            }
+            hashes[i] = WorkspaceSnapshot.hash(new Reference(workspaceId, references.descriptions[i], sourceId, targetId, type));
+            String key = references.ends[2 * i] + " " + references.ends[2 * i + 1] + " " + type;
+            Integer earlier = queued.get(key);
+            if (earlier != null) {
+                if (hashes[earlier] == hashes[i]) {
+                    continue;
+                }
+                send.clear(earlier);
+            } else {
+                WorkspaceSnapshot.Entry same = current.getReference(sourceName, targetName, type);
+                if (same != null && same.getHash() == hashes[i]) {
+                    // the same reference was queued again, e.g. by the graph of another project
+                    continue;
+                }
+                WorkspaceSnapshot.Entry last = (previous != null) ? previous.getReference(sourceName, targetName, type) : null;
+                if (last != null && last.getHash() == hashes[i]) {
+                    current.putReference(sourceName, targetName, type, last.getId(), hashes[i]);
+                    unchanged++;
+                    continue;
+                }
+            }
+            queued.put(key, i);
+            send.set(i);
+        }
+
+        final String[] ids = new String[references.size()];
+        int[] chunk = new int[REFERENCE_CHUNK_SIZE];
+        int size = 0;
+        for (int i = send.nextSetBit(0); i >= 0; i = send.nextSetBit(i + 1)) {
+            chunk[size++] = i;
+            if (size == chunk.length) {
+                submitReferences(references, Arrays.copyOf(chunk, size), ids, writes);
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            submitReferences(references, Arrays.copyOf(chunk, size), ids, writes);
+        }
+        writes.await();
+
+        for (int i = send.nextSetBit(0); i >= 0; i = send.nextSetBit(i + 1)) {
+            written++;
+            // without an ID the reference can't be skipped or deleted by a later import, so it is sent again
+            if (ids[i] != null) {
+                current.putReference(references.getSourceName(i), references.getTargetName(i), references.types[i], ids[i], hashes[i]);
+            }
+        }
+    }
+
+    private void submitReferences(final PendingReferences references, final int[] chunk, final String[] ids, Writes writes) {
+        final String workspaceId = sink.getWorkspaceId();
+        // the ends are looked up here, the pending references aren't changed until the chunks are written
+        final String[] sourceIds = new String[chunk.length];
+        final String[] targetIds = new String[chunk.length];
+        for (int j = 0; j < chunk.length; j++) {
+            sourceIds[j] = componentNameIdMap.get(references.getSourceName(chunk[j]));
+            targetIds[j] = componentNameIdMap.get(references.getTargetName(chunk[j]));
+        }
+        writes.submit(new Runnable() {
+            public void run() {
+                for (int j = 0; j < chunk.length; j++) {
+                    int i = chunk[j];
+                    Reference ref = new Reference(workspaceId, references.descriptions[i], sourceIds[j], targetIds[j], references.types[i]);
+                    ids[i] = writeReference(ref, references.getSourceName(i), references.getTargetName(i));
+                }
+            }
+        });
+    }
+
+    private String writeReference(Reference ref, String sourceName, String targetName) {
+        if (mavenUtil.getReporter().isVerbose()) {
+            mavenUtil.getReporter().println("adding ref to sync " + ref.getSource() + " " + ref.getTarget());
+        }
+        long start = System.nanoTime();
+        EventSpan event = ImportEvents.begin(ImportEventType.ARDOQ_REQUEST).operation("addReference");
+        if (event.isRecording()) {
+            event.item(sourceName + " -> " + targetName);
+        }
+        String outcome = "failed";
+        try {
+            ref = sink.addReference(ref);
+            outcome = "written";
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing reference from " + sourceName + " to " + targetName + " to " + sink, e);
+        } finally {
+            event.end(outcome);
+            mavenUtil.getMetrics().record("ardoq_add_reference", start);
+        }
+        return (ref != null) ? ref.getId() : null;
+    }
+
+    /**
+     * @return number of components and references sent to the sink
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return number of components and references skipped since they are unchanged since the previous import
+     */
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    @Override
+    public String toString() {
+        return "Write pipeline: " + written + " components and references sent, " + unchanged + " unchanged since the previous import";
+    }
+
+    /**
+     * The writes of one flush: run on the calling thread, or on a pool with at most as many writes in flight as it
+     * has threads. The first write that fails stops the ones not yet started, and is thrown by await.
+     */
+    class Writes {
+        final ExecutorService executor;
+        final Semaphore inFlight;
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        volatile RuntimeException failure;
+
+        /**
+         * @param threads 0 to write on the calling thread
+         */
+        Writes(int threads) {
+            if (threads > 0) {
+                executor = Executors.newFixedThreadPool(threads);
+                inFlight = new Semaphore(threads);
+            } else {
+                executor = null;
+                inFlight = null;
+            }
+        }
+
+        void submit(final Runnable write) {
+            if (failure != null) {
+                return;
+            }
+            if (executor == null) {
+                write.run();
+                return;
+            }
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted writing to " + sink, e);
+            }
+            futures.add(executor.submit(new Runnable() {
+                public void run() {
+                    try {
+                        if (failure == null) {
+                            write.run();
+                        }
+                    } catch (RuntimeException e) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                        throw e;
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            }));
+        }
+
+        /**
+         * Waits for the writes submitted so far, and throws the first that failed.
+         */
+        void await() {
+            Throwable error = null;
+            try {
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (error == null) {
+                            error = e.getCause();
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted writing to " + sink, e);
+            } finally {
+                futures.clear();
+            }
+            // the first to fail, rather than the first in submission order
+            if (failure != null) {
+                throw failure;
+            }
+            if (error != null) {
+                throw new RuntimeException("Error writing to " + sink, error);
+            }
+        }
+
+        void shutdown() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    static class PendingComponent {
+        final Component component;
+        final String parentName;
+        final Artifact licenseArtifact;
+
+        PendingComponent(Component component, String parentName, Artifact licenseArtifact) {
+            this.component = component;
+            this.parentName = parentName;
+            this.licenseArtifact = licenseArtifact;
+        }
+    }
+
+    /**
+     * The references waiting to be written, in primitive arrays. Each component name is held once, and the ends of a
+     * reference refer to it by index.
+     */
+    static class PendingReferences {
+        final Map<String, Integer> nameIndex = new HashMap<String, Integer>();
+        final List<String> names = new ArrayList<String>();
+        // source and target name indexes of each reference
+        int[] ends = new int[64];
+        int[] types = new int[32];
+        String[] descriptions = new String[32];
+        int size;
+
+        void add(String sourceName, String targetName, String description, int type) {
+            if (size == types.length) {
+                ends = Arrays.copyOf(ends, ends.length * 2);
+                types = Arrays.copyOf(types, types.length * 2);
+                descriptions = Arrays.copyOf(descriptions, descriptions.length * 2);
+            }
+            ends[2 * size] = indexOf(sourceName);
+            ends[2 * size + 1] = indexOf(targetName);
+            types[size] = type;
+            descriptions[size] = description;
+            size++;
+        }
+
+        private int indexOf(String name) {
+            Integer index = nameIndex.get(name);
+            if (index == null) {
+                index = names.size();
+                nameIndex.put(name, index);
+                names.add(name);
+            }
+            return index;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String getSourceName(int reference) {
+            return names.get(ends[2 * reference]);
+        }
+
+        String getTargetName(int reference) {
+            return names.get(ends[2 * reference + 1]);
+        }
+
+        void clear() {
+            nameIndex.clear();
+            names.clear();
+            Arrays.fill(descriptions, 0, size, null);
+            size = 0;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.ardoq.mavenImport.jfr;
+
+/**
+ * A flight recorder event in progress, started with {@link ImportEvents#begin(ImportEventType)}. The setters return
+ * the span, so it can be tagged and ended in one statement. When the event type isn't recorded the span is a
+ * shared no-op.
+ */
+public class EventSpan {
+
+    static final EventSpan NONE = new EventSpan();
+
+    EventSpan() {
+    }
+
+    /**
+     * @return false if the event is not recorded, to skip computing expensive tags
+     */
+    public boolean isRecording() {
+        return false;
+    }
+
+    /**
+     * @param gav artifact or coordinates the event is about, converted to a string only when the event is committed
+     */
+    public EventSpan gav(Object gav) {
+        return this;
+    }
+
+    /**
+     * @param repository id or URL of the repository or service involved
+     */
+    public EventSpan repository(String repository) {
+        return this;
+    }
+
+    /**
+     * @param operation what is done, e.g. the Ardoq API call "addComponent"
+     */
+    public EventSpan operation(String operation) {
+        return this;
+    }
+
+    /**
+     * @param item name or ID of the Ardoq component, reference or workspace the event is about, converted to a
+     * string only when the event is committed
+     */
+    public EventSpan item(Object item) {
+        return this;
+    }
+
+    public EventSpan bytes(long bytes) {
+        return this;
+    }
+
+    /**
+     * Ends and commits the event.
+     * @param outcome e.g. "resolved", "cached" or "failed"
+     */
+    public void end(String outcome) {
+    }
+
+}
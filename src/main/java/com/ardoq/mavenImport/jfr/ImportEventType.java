@@ -0,0 +1,13 @@
+package com.ardoq.mavenImport.jfr;
+
+/**
+ * The kinds of flight recorder events emitted by an import.
+ */
+public enum ImportEventType {
+    POM_RESOLUTION,
+    POM_PARSE,
+    DESCRIPTOR_READ,
+    DEPENDENCY_COLLECTION,
+    ARTIFACT_VISIT,
+    ARDOQ_REQUEST
+}
@@ -0,0 +1,39 @@
+package com.ardoq.mavenImport.jfr;
+
+/**
+ * Entry point for the flight recorder events of an import. The event classes need jdk.jfr, which older JVMs don't
+ * have, so they are only loaded when it is available; otherwise, and whenever an event type isn't being recorded,
+ * begin returns a shared no-op span.
+ *
+ * Usage: {@code EventSpan event = ImportEvents.begin(ImportEventType.POM_RESOLUTION).gav(gav); ... event.end("resolved");}
+ */
+public class ImportEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private ImportEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param type
+     * @return the started event, a no-op if it isn't recorded
+     */
+    public static EventSpan begin(ImportEventType type) {
+        if (!AVAILABLE) {
+            return EventSpan.NONE;
+        }
+        return JfrEvents.begin(type);
+    }
+
+}
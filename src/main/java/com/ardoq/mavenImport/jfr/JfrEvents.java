@@ -0,0 +1,167 @@
+package com.ardoq.mavenImport.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The jdk.jfr event classes. Only loaded by {@link ImportEvents} when jdk.jfr is available.
+ */
+class JfrEvents {
+
+    private static final EventType[] TYPES = {
+        EventType.getEventType(PomResolutionEvent.class),
+        EventType.getEventType(PomParseEvent.class),
+        EventType.getEventType(DescriptorReadEvent.class),
+        EventType.getEventType(DependencyCollectionEvent.class),
+        EventType.getEventType(ArtifactVisitEvent.class),
+        EventType.getEventType(ArdoqRequestEvent.class)
+    };
+
+    static EventSpan begin(ImportEventType type) {
+        if (!TYPES[type.ordinal()].isEnabled()) {
+            return EventSpan.NONE;
+        }
+        ImportEvent event;
+        switch (type) {
+        case POM_RESOLUTION:
+            event = new PomResolutionEvent();
+            break;
+        case POM_PARSE:
+            event = new PomParseEvent();
+            break;
+        case DESCRIPTOR_READ:
+            event = new DescriptorReadEvent();
+            break;
+        case DEPENDENCY_COLLECTION:
+            event = new DependencyCollectionEvent();
+            break;
+        case ARTIFACT_VISIT:
+            event = new ArtifactVisitEvent();
+            break;
+        default:
+            event = new ArdoqRequestEvent();
+            break;
+        }
+        event.begin();
+        return new Span(event);
+    }
+
+    static class Span extends EventSpan {
+
+        final ImportEvent event;
+
+        Object gav;
+
+        Object item;
+
+        Span(ImportEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return true;
+        }
+
+        @Override
+        public EventSpan gav(Object gav) {
+            this.gav = gav;
+            return this;
+        }
+
+        @Override
+        public EventSpan repository(String repository) {
+            event.repository = repository;
+            return this;
+        }
+
+        @Override
+        public EventSpan operation(String operation) {
+            event.operation = operation;
+            return this;
+        }
+
+        @Override
+        public EventSpan item(Object item) {
+            this.item = item;
+            return this;
+        }
+
+        @Override
+        public EventSpan bytes(long bytes) {
+            event.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public void end(String outcome) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.gav = (gav != null) ? gav.toString() : null;
+                event.item = (item != null) ? item.toString() : null;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+
+    }
+
+    @Category("Ardoq Maven Import")
+    @StackTrace(false)
+    abstract static class ImportEvent extends Event {
+        @Label("GAV")
+        String gav;
+
+        @Label("Repository")
+        String repository;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Item")
+        String item;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("com.ardoq.mavenImport.PomResolution")
+    @Label("POM Resolution")
+    static class PomResolutionEvent extends ImportEvent {
+    }
+
+    @Name("com.ardoq.mavenImport.PomParse")
+    @Label("POM Parse")
+    static class PomParseEvent extends ImportEvent {
+    }
+
+    @Name("com.ardoq.mavenImport.DescriptorRead")
+    @Label("Artifact Descriptor Read")
+    static class DescriptorReadEvent extends ImportEvent {
+    }
+
+    @Name("com.ardoq.mavenImport.DependencyCollection")
+    @Label("Dependency Collection")
+    static class DependencyCollectionEvent extends ImportEvent {
+    }
+
+    @Name("com.ardoq.mavenImport.ArtifactVisit")
+    @Label("Artifact Sync Visit")
+    static class ArtifactVisitEvent extends ImportEvent {
+    }
+
+    @Name("com.ardoq.mavenImport.ArdoqRequest")
+    @Label("Ardoq Request")
+    static class ArdoqRequestEvent extends ImportEvent {
+    }
+
+}
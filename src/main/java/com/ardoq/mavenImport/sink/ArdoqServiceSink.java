@@ -0,0 +1,153 @@
+package com.ardoq.mavenImport.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ardoq.ArdoqClient;
+import com.ardoq.model.AggregatedWorkspace;
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+import com.ardoq.util.SyncUtil;
+
+/**
+ * Writes to an Ardoq workspace from several threads at a time. Components and references the workspace doesn't have
+ * yet are created through the component and reference services. The ones it already has, a component with the same
+ * name or a reference with the same source, target and type, go through the SyncUtil one at a time, which compares
+ * and updates them as before.
+ *
+ * The SyncUtil doesn't know about the items created past it, so its deleteNotSyncedItems would delete them again.
+ * The items of the workspace this import didn't write are listed by {@link #getNotSyncedReferenceIds} and
+ * {@link #getNotSyncedComponentIds} instead.
+ */
+public class ArdoqServiceSink extends ArdoqSink {
+
+    final ArdoqClient ardoqClient;
+    final AggregatedWorkspace existing;
+    /** the workspace's components by name, and its references by source, target and type */
+    final Map<String, Component> existingComponents = new HashMap<String, Component>();
+    final Map<String, Reference> existingReferences = new HashMap<String, Reference>();
+    /** IDs of the references created by this sink, by source, target and type, in case one is written again */
+    final ConcurrentMap<String, String> createdReferences = new ConcurrentHashMap<String, String>();
+    /** IDs of the items of the workspace that were written */
+    final Set<String> synced = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * @param ardoqSync provides the workspace and its model, and writes the items the workspace already has
+     * @param ardoqClient
+     * @param existing the content of the workspace before the import
+     */
+    public ArdoqServiceSink(SyncUtil ardoqSync, ArdoqClient ardoqClient, AggregatedWorkspace existing) {
+        super(ardoqSync);
+        this.ardoqClient = ardoqClient;
+        this.existing = existing;
+        for (Component component : existing.getComponents()) {
+            if (!existingComponents.containsKey(component.getName())) {
+                existingComponents.put(component.getName(), component);
+            }
+        }
+        for (Reference reference : existing.getReferences()) {
+            String key = getKey(reference);
+            if (!existingReferences.containsKey(key)) {
+                existingReferences.put(key, reference);
+            }
+        }
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public Component addComponent(Component component) {
+        if (!existingComponents.containsKey(component.getName())) {
+            return ardoqClient.component().createComponent(component);
+        }
+        Component written;
+        synchronized (ardoqSync) {
+            written = ardoqSync.addComponent(component);
+        }
+        synced.add(written.getId());
+        return written;
+    }
+
+    @Override
+    public Reference addReference(Reference reference) {
+        String key = getKey(reference);
+        if (!existingReferences.containsKey(key)) {
+            // written again with another description, the later one replaces it like the SyncUtil would
+            String created = createdReferences.get(key);
+            if (created != null) {
+                ardoqClient.reference().deleteReference(created);
+            }
+            Reference written = ardoqClient.reference().createReference(reference);
+            createdReferences.put(key, written.getId());
+            return written;
+        }
+        Reference written;
+        synchronized (ardoqSync) {
+            written = ardoqSync.addReference(reference);
+        }
+        synced.add(written.getId());
+        return written;
+    }
+
+    /**
+     * @return IDs of the references of the workspace that weren't written
+     */
+    public List<String> getNotSyncedReferenceIds() {
+        List<String> ids = new ArrayList<String>();
+        for (Reference reference : existing.getReferences()) {
+            if (!synced.contains(reference.getId())) {
+                ids.add(reference.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return IDs of the components of the workspace that weren't written, children before their parents
+     */
+    public List<String> getNotSyncedComponentIds() {
+        final Map<String, String> parents = new HashMap<String, String>();
+        List<String> ids = new ArrayList<String>();
+        for (Component component : existing.getComponents()) {
+            parents.put(component.getId(), component.getParent());
+            if (!synced.contains(component.getId())) {
+                ids.add(component.getId());
+            }
+        }
+        final Map<String, Integer> depths = new HashMap<String, Integer>();
+        for (String id : ids) {
+            int depth = 0;
+            // bounded, in case the parents of a damaged workspace form a cycle
+            for (String parent = parents.get(id); parent != null && depth < parents.size(); parent = parents.get(parent)) {
+                depth++;
+            }
+            depths.put(id, depth);
+        }
+        Collections.sort(ids, new Comparator<String>() {
+            public int compare(String a, String b) {
+                return depths.get(b) - depths.get(a);
+            }
+        });
+        return ids;
+    }
+
+    private static String getKey(Reference reference) {
+        return reference.getSource() + "\n" + reference.getTarget() + "\n" + reference.getType();
+    }
+
+    @Override
+    public String toString() {
+        return "Ardoq workspace " + getWorkspaceId() + ", written concurrently";
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.ardoq.mavenImport.sink;
+
+import java.util.Map;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Model;
+import com.ardoq.model.Reference;
+import com.ardoq.util.SyncUtil;
+
+/**
+ * Writes to an Ardoq workspace through its SyncUtil, one item at a time. Deleting what an import didn't write is left
+ * to the caller, which owns the SyncUtil. See {@link ArdoqServiceSink} for a sink that writes concurrently.
+ */
+public class ArdoqSink implements OutputSink {
+
+    final SyncUtil ardoqSync;
+    final Model model;
+    final Map<String, Integer> referenceTypes;
+
+    public ArdoqSink(SyncUtil ardoqSync) {
+        this.ardoqSync = ardoqSync;
+        this.model = ardoqSync.getModel();
+        this.referenceTypes = model.getReferenceTypes();
+    }
+
+    public SyncUtil getSyncUtil() {
+        return ardoqSync;
+    }
+
+    public String getWorkspaceId() {
+        return ardoqSync.getWorkspace().getId();
+    }
+
+    public String getComponentType(String name) {
+        return model.getComponentTypeByName(name);
+    }
+
+    public int getReferenceType(String name) {
+        Integer type = referenceTypes.get(name);
+        if (type == null) {
+            throw new IllegalArgumentException("The model of the workspace has no reference type " + name);
+        }
+        return type;
+    }
+
+    public boolean isConcurrent() {
+        return false;
+    }
+
+    public Component addComponent(Component component) {
+        return ardoqSync.addComponent(component);
+    }
+
+    public Reference addReference(Reference reference) {
+        return ardoqSync.addReference(reference);
+    }
+
+    public void close() {
+    }
+
+    public void abort() {
+    }
+
+    @Override
+    public String toString() {
+        return "Ardoq workspace " + getWorkspaceId();
+    }
+
+}
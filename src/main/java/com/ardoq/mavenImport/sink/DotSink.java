@@ -0,0 +1,80 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Writes the graph in the DOT language of Graphviz. Components are nodes shaped by their type, each linked to its
+ * parent by a dotted edge, and references are edges labelled with their type.
+ */
+public class DotSink extends FileSink {
+
+    public DotSink(File file, String workspaceId) throws IOException {
+        super(file, workspaceId);
+        StringBuilder header = new StringBuilder(128);
+        header.append("digraph ");
+        quote(header, workspaceId);
+        header.append(" {\n  node [shape=box];\n");
+        out.write(header.toString());
+    }
+
+    @Override
+    protected void writeComponent(Component component) throws IOException {
+        StringBuilder node = new StringBuilder(192);
+        node.append("  ");
+        quote(node, component.getId());
+        node.append(" [type=");
+        quote(node, component.getType());
+        if ("Project".equals(component.getType())) {
+            node.append(", shape=folder");
+        } else if ("Group".equals(component.getType())) {
+            node.append(", shape=tab");
+        } else if ("Artifact".equals(component.getType())) {
+            node.append(", shape=component");
+        }
+        node.append("];\n");
+        if (component.getParent() != null) {
+            node.append("  ");
+            quote(node, component.getParent());
+            node.append(" -> ");
+            quote(node, component.getId());
+            node.append(" [style=dotted, arrowhead=none];\n");
+        }
+        out.write(node.toString());
+    }
+
+    @Override
+    protected void writeReference(Reference reference, String type) throws IOException {
+        StringBuilder edge = new StringBuilder(160);
+        edge.append("  ");
+        quote(edge, reference.getSource());
+        edge.append(" -> ");
+        quote(edge, reference.getTarget());
+        edge.append(" [label=");
+        String description = (reference.getDescription() != null) ? reference.getDescription().trim() : "";
+        quote(edge, description.isEmpty() ? type : type + " " + description);
+        edge.append("];\n");
+        out.write(edge.toString());
+    }
+
+    @Override
+    protected void writeFooter() throws IOException {
+        out.write("}\n");
+    }
+
+    static void quote(StringBuilder dot, String value) {
+        dot.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                dot.append('\\');
+            }
+            dot.append(c == '\n' ? ' ' : c);
+        }
+        dot.append('"');
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.ardoq.mavenImport.sink;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.ardoq.mavenImport.util.ConsoleReporter;
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Writes nothing. Unless the reporter is quiet, it prints the calls a full sync into an empty workspace would make,
+ * with type names in place of the type IDs of the workspace's model. In quiet mode it only counts, which measures
+ * resolution on its own.
+ */
+public class DryRunSink extends GraphSink {
+
+    final ConsoleReporter reporter;
+
+    public DryRunSink(String workspaceId, ConsoleReporter reporter) {
+        super(workspaceId);
+        this.reporter = reporter;
+    }
+
+    @Override
+    protected void writeComponent(Component component) {
+        if (reporter.isVerbose()) {
+            Map<String, Object> fields = (component.getFields() != null) ? new TreeMap<String, Object>(component.getFields()) : null;
+            reporter.println("addComponent " + component.getName() + " type=" + component.getType() + " parent=" + component.getParent()
+                    + " description=" + component.getDescription() + " fields=" + fields);
+        }
+    }
+
+    @Override
+    protected void writeReference(Reference reference, String type) {
+        if (reporter.isVerbose()) {
+            reporter.println("addReference " + reference.getSource() + " -> " + reference.getTarget() + " type=" + type
+                    + " description=" + reference.getDescription());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Dry run: " + components + " components and " + references + " references would be written";
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A sink streaming the graph to a file, each component and reference as it is written. This doesn't keep the graph
+ * out of memory: the components and references of an import are queued in the {@link
+ * com.ardoq.mavenImport.WritePipeline} until it is flushed, since a component is written after its parent and the
+ * references after all components. The output goes through a buffered channel stream to a temporary file next to
+ * the file, which replaces the file when the sink is closed. An aborted import leaves the file as it was.
+ */
+public abstract class FileSink extends GraphSink {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    final File file;
+    final File tmp;
+    /** binary output */
+    final OutputStream stream;
+    /** text output, UTF-8, on top of stream */
+    final Writer out;
+    boolean closed;
+
+    /**
+     * @param file
+     * @param workspaceId name of the graph
+     * @throws IOException
+     */
+    protected FileSink(File file, String workspaceId) throws IOException {
+        super(workspaceId);
+        this.file = file;
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        this.tmp = File.createTempFile(file.getName(), ".tmp", directory);
+        FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.stream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        this.out = new OutputStreamWriter(stream, "UTF-8");
+    }
+
+    /**
+     * Writes what comes after the last reference, called once by close.
+     * @throws IOException
+     */
+    protected void writeFooter() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeFooter();
+            out.flush();
+            stream.close();
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Could not write " + file);
+                }
+            }
+        } finally {
+            IOUtil.close(stream);
+            tmp.delete();
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOUtil.close(stream);
+        tmp.delete();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " " + file + ": " + components + " components, " + references + " references";
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Reads a graph written by {@link GraphFileSink}, streaming its components and references to a handler in the
+ * order they were written: every component after its parent, and references after all components.
+ */
+public class GraphFileReader {
+
+    /**
+     * Receives the graph. Types are the names of the Maven template model's types, components are identified by name.
+     */
+    public interface Handler {
+
+        void component(String name, String type, String parent, String description, Map<String, Object> fields);
+
+        void reference(String source, String target, String type, String description);
+
+    }
+
+    final File file;
+    final DataInputStream in;
+    final List<String> strings = new ArrayList<String>();
+    final String graphName;
+    final List<String> roots = new ArrayList<String>();
+
+    /**
+     * Opens the file and reads its header.
+     * @param file
+     * @throws IOException if the file isn't a graph file of this version
+     */
+    public GraphFileReader(File file) throws IOException {
+        this.file = file;
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), FileSink.BUFFER_SIZE));
+        try {
+            if (in.readInt() != GraphFileSink.MAGIC) {
+                throw new IOException(file + " is not a resolved graph");
+            }
+            int format = in.readInt();
+            if (format != GraphFileSink.FORMAT) {
+                throw new IOException(file + " has format " + format + ", this version reads format " + GraphFileSink.FORMAT);
+            }
+            graphName = readString();
+            int count = readVarInt();
+            for (int i = 0; i < count; i++) {
+                roots.add(readString());
+            }
+        } catch (IOException e) {
+            IOUtil.close(in);
+            throw e;
+        }
+    }
+
+    public String getGraphName() {
+        return graphName;
+    }
+
+    /**
+     * @return the coordinates that were imported
+     */
+    public List<String> getRoots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    /**
+     * Reads the rest of the file, and closes it.
+     * @param handler
+     * @throws IOException if the file can't be read, or is incomplete
+     */
+    public void read(Handler handler) throws IOException {
+        try {
+            long components = 0;
+            long references = 0;
+            while (true) {
+                int record = in.read();
+                if (record == GraphFileSink.COMPONENT) {
+                    String name = readString();
+                    String type = readString();
+                    String parent = readString();
+                    String description = readString();
+                    Map<String, Object> fields = null;
+                    int count = readVarInt() - 1;
+                    if (count >= 0) {
+                        fields = new HashMap<String, Object>();
+                        for (int i = 0; i < count; i++) {
+                            fields.put(readString(), readString());
+                        }
+                    }
+                    handler.component(name, type, parent, description, fields);
+                    components++;
+                } else if (record == GraphFileSink.REFERENCE) {
+                    handler.reference(readString(), readString(), readString(), readString());
+                    references++;
+                } else if (record == GraphFileSink.END) {
+                    if (readVarInt() != components || readVarInt() != references) {
+                        throw new IOException(file + " is corrupt, the counts of components and references don't match");
+                    }
+                    return;
+                } else if (record < 0) {
+                    throw new EOFException(file + " is incomplete");
+                } else {
+                    throw new IOException(file + " is corrupt, unknown record " + record);
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    public void close() {
+        IOUtil.close(in);
+    }
+
+    /**
+     * @param file
+     * @return the coordinates that were imported into the graph
+     * @throws IOException
+     */
+    public static List<String> readRoots(File file) throws IOException {
+        GraphFileReader reader = new GraphFileReader(file);
+        reader.close();
+        return reader.getRoots();
+    }
+
+    private String readString() throws IOException {
+        int index = readVarInt();
+        if (index == 0) {
+            return null;
+        }
+        if (index <= strings.size()) {
+            return strings.get(index - 1);
+        }
+        if (index != strings.size() + 1) {
+            throw new IOException(file + " is corrupt, string " + index + " comes before " + (strings.size() + 1));
+        }
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        String value = new String(bytes, "UTF-8");
+        strings.add(value);
+        return value;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readByte() & 0xff;
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(file + " is corrupt, variable length number too long");
+    }
+
+}
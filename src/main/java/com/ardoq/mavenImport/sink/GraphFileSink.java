@@ -0,0 +1,120 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Writes the resolved graph to a compact binary file, which {@link GraphFileReader} reads back to sync it to Ardoq
+ * later, or elsewhere, without resolving anything. It holds everything the import writes: projects, groups,
+ * artifacts and versions with their descriptions, optional and snapshot flags and fields, licenses included, and
+ * the dependency (with scope), exclusion, parent and module references.
+ *
+ * The format starts with MAGIC, the FORMAT version, the graph name and the coordinates that were imported, followed
+ * by one record per component and reference, and an END record with the counts. Strings are written once and then
+ * referred to by their index, numbers are variable length, so names, types, descriptions and field values that
+ * repeat cost a byte or two.
+ */
+public class GraphFileSink extends FileSink {
+
+    static final int MAGIC = 0x41444746;
+    static final int FORMAT = 1;
+
+    static final int END = 0;
+    static final int COMPONENT = 1;
+    static final int REFERENCE = 2;
+
+    final DataOutputStream data;
+    final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    /**
+     * @param file
+     * @param workspaceId name of the graph
+     * @param roots the imported coordinates
+     * @throws IOException
+     */
+    public GraphFileSink(File file, String workspaceId, List<String> roots) throws IOException {
+        super(file, workspaceId);
+        this.data = new DataOutputStream(stream);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT);
+        writeString(workspaceId);
+        writeVarInt(roots.size());
+        for (String root : roots) {
+            writeString(root);
+        }
+    }
+
+    @Override
+    protected void writeComponent(Component component) throws IOException {
+        data.write(COMPONENT);
+        writeString(component.getName());
+        writeString(component.getType());
+        writeString(component.getParent());
+        writeString(component.getDescription());
+        Map<String, Object> fields = component.getFields();
+        if (fields == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(fields.size() + 1);
+        for (Map.Entry<String, Object> field : new TreeMap<String, Object>(fields).entrySet()) {
+            writeString(field.getKey());
+            writeString((field.getValue() != null) ? field.getValue().toString() : null);
+        }
+    }
+
+    @Override
+    protected void writeReference(Reference reference, String type) throws IOException {
+        data.write(REFERENCE);
+        writeString(reference.getSource());
+        writeString(reference.getTarget());
+        writeString(type);
+        writeString(reference.getDescription());
+    }
+
+    @Override
+    protected void writeFooter() throws IOException {
+        data.write(END);
+        writeVarInt((int) components);
+        writeVarInt((int) references);
+    }
+
+    /**
+     * 0 for null, the index + 1 of a string written before, or the next index + 1 followed by the new string's
+     * length and UTF-8 bytes.
+     */
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarInt(index + 1);
+            return;
+        }
+        index = strings.size();
+        strings.put(value, index);
+        writeVarInt(index + 1);
+        byte[] bytes = value.getBytes("UTF-8");
+        writeVarInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            data.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data.write(value);
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Writes the graph as GraphML, e.g. for yEd or Gephi. Components are nodes with their type, parent, description and
+ * the fields the import sets as data, references are directed edges. The keys are declared up front, so other fields
+ * are left out.
+ */
+public class GraphMLSink extends FileSink {
+
+    static final String[] FIELDS = {"groupId", "artifactId", "version", "license"};
+
+    public GraphMLSink(File file, String workspaceId) throws IOException {
+        super(file, workspaceId);
+        StringBuilder header = new StringBuilder(1024);
+        header.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        header.append("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+        header.append("  <key id=\"type\" for=\"all\" attr.name=\"type\" attr.type=\"string\"/>\n");
+        header.append("  <key id=\"parent\" for=\"node\" attr.name=\"parent\" attr.type=\"string\"/>\n");
+        header.append("  <key id=\"description\" for=\"all\" attr.name=\"description\" attr.type=\"string\"/>\n");
+        for (String field : FIELDS) {
+            header.append("  <key id=\"").append(field).append("\" for=\"node\" attr.name=\"").append(field).append("\" attr.type=\"string\"/>\n");
+        }
+        header.append("  <graph id=\"");
+        escape(header, workspaceId);
+        header.append("\" edgedefault=\"directed\">\n");
+        out.write(header.toString());
+    }
+
+    @Override
+    protected void writeComponent(Component component) throws IOException {
+        StringBuilder node = new StringBuilder(256);
+        node.append("    <node id=\"");
+        escape(node, component.getId());
+        node.append("\">");
+        data(node, "type", component.getType());
+        data(node, "parent", component.getParent());
+        data(node, "description", component.getDescription());
+        if (component.getFields() != null) {
+            for (String field : FIELDS) {
+                Object value = component.getFields().get(field);
+                data(node, field, (value != null) ? value.toString() : null);
+            }
+        }
+        node.append("</node>\n");
+        out.write(node.toString());
+    }
+
+    @Override
+    protected void writeReference(Reference reference, String type) throws IOException {
+        StringBuilder edge = new StringBuilder(192);
+        edge.append("    <edge id=\"");
+        escape(edge, reference.getId());
+        edge.append("\" source=\"");
+        escape(edge, reference.getSource());
+        edge.append("\" target=\"");
+        escape(edge, reference.getTarget());
+        edge.append("\">");
+        data(edge, "type", type);
+        data(edge, "description", reference.getDescription());
+        edge.append("</edge>\n");
+        out.write(edge.toString());
+    }
+
+    @Override
+    protected void writeFooter() throws IOException {
+        out.write("  </graph>\n</graphml>\n");
+    }
+
+    private static void data(StringBuilder xml, String key, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        xml.append("<data key=\"").append(key).append("\">");
+        escape(xml, value);
+        xml.append("</data>");
+    }
+
+    static void escape(StringBuilder xml, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '<':
+                xml.append("&lt;");
+                break;
+            case '>':
+                xml.append("&gt;");
+                break;
+            case '&':
+                xml.append("&amp;");
+                break;
+            case '"':
+                xml.append("&quot;");
+                break;
+            default:
+                xml.append(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Base of the sinks that don't need an Ardoq workspace. Types are identified by their names, reference types by
+ * their index in the Maven template model, and components by their names, which are unique within an import.
+ */
+public abstract class GraphSink implements OutputSink {
+
+    /** reference types of the Maven template model, src/main/resources/model.json, by ID */
+    static final List<String> REFERENCE_TYPES = Arrays.asList("Exclusion", "Dependency", "Implicit", "Module", "Parent");
+
+    final String workspaceId;
+    long components;
+    long references;
+
+    /**
+     * @param workspaceId name of the graph
+     */
+    protected GraphSink(String workspaceId) {
+        this.workspaceId = workspaceId;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public String getComponentType(String name) {
+        return name;
+    }
+
+    public int getReferenceType(String name) {
+        int type = REFERENCE_TYPES.indexOf(name);
+        if (type < 0) {
+            throw new IllegalArgumentException("The Maven template model has no reference type " + name);
+        }
+        return type;
+    }
+
+    /**
+     * @param type
+     * @return the name of a reference type
+     */
+    public static String getReferenceTypeName(int type) {
+        return (type >= 0 && type < REFERENCE_TYPES.size()) ? REFERENCE_TYPES.get(type) : String.valueOf(type);
+    }
+
+    public boolean isConcurrent() {
+        return false;
+    }
+
+    public Component addComponent(Component component) throws IOException {
+        component.setId(component.getName());
+        writeComponent(component);
+        components++;
+        return component;
+    }
+
+    public Reference addReference(Reference reference) throws IOException {
+        references++;
+        reference.setId("r" + references);
+        writeReference(reference, getReferenceTypeName(reference.getType()));
+        return reference;
+    }
+
+    /**
+     * @param component a component with its name as ID, and the name of its parent as parent
+     * @throws IOException
+     */
+    protected abstract void writeComponent(Component component) throws IOException;
+
+    /**
+     * @param reference a reference with the names of its source and target
+     * @param type name of the reference type
+     * @throws IOException
+     */
+    protected abstract void writeReference(Reference reference, String type) throws IOException;
+
+    public void close() throws IOException {
+    }
+
+    public void abort() {
+    }
+
+    public long getComponents() {
+        return components;
+    }
+
+    public long getReferences() {
+        return references;
+    }
+
+}
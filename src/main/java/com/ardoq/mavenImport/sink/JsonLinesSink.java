@@ -0,0 +1,94 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Writes the graph as JSON Lines, one object per component and reference:
+ *
+ * <pre>
+ * {"kind":"component","id":"junit:junit:4.12","type":"Version","parent":"junit:junit","description":"","fields":{"artifactId":"junit",...}}
+ * {"kind":"reference","id":"r1","type":"Dependency","source":"...","target":"...","description":" #compile"}
+ * </pre>
+ */
+public class JsonLinesSink extends FileSink {
+
+    public JsonLinesSink(File file, String workspaceId) throws IOException {
+        super(file, workspaceId);
+    }
+
+    @Override
+    protected void writeComponent(Component component) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"kind\":\"component\",\"id\":");
+        quote(line, component.getId());
+        line.append(",\"type\":");
+        quote(line, component.getType());
+        line.append(",\"parent\":");
+        quote(line, component.getParent());
+        line.append(",\"description\":");
+        quote(line, component.getDescription());
+        line.append(",\"fields\":{");
+        if (component.getFields() != null) {
+            String separator = "";
+            for (Map.Entry<String, Object> field : new TreeMap<String, Object>(component.getFields()).entrySet()) {
+                line.append(separator);
+                quote(line, field.getKey());
+                line.append(':');
+                Object value = field.getValue();
+                if (value instanceof Number || value instanceof Boolean) {
+                    line.append(value);
+                } else {
+                    quote(line, (value != null) ? value.toString() : null);
+                }
+                separator = ",";
+            }
+        }
+        line.append("}}\n");
+        out.write(line.toString());
+    }
+
+    @Override
+    protected void writeReference(Reference reference, String type) throws IOException {
+        StringBuilder line = new StringBuilder(192);
+        line.append("{\"kind\":\"reference\",\"id\":");
+        quote(line, reference.getId());
+        line.append(",\"type\":");
+        quote(line, type);
+        line.append(",\"source\":");
+        quote(line, reference.getSource());
+        line.append(",\"target\":");
+        quote(line, reference.getTarget());
+        line.append(",\"description\":");
+        quote(line, reference.getDescription());
+        line.append("}\n");
+        out.write(line.toString());
+    }
+
+    static void quote(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c == '\n') {
+                json.append("\\n");
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+}
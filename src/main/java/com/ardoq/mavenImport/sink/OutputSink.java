@@ -0,0 +1,67 @@
+package com.ardoq.mavenImport.sink;
+
+import java.io.IOException;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+/**
+ * Where an import writes the project/artifact/version graph: a stream of components, each after its parent, followed
+ * by the references between them. The {@link com.ardoq.mavenImport.WritePipeline} makes one call at a time unless
+ * the sink is concurrent, so sinks don't have to be thread-safe. A concurrent sink is still never given two
+ * components with the same name, or two references with the same source, target and type, at the same time.
+ *
+ * Component and reference types are asked for by the names of the Maven template model: Project, Group, Artifact and
+ * Version, and Dependency, Exclusion, Module and Parent.
+ */
+public interface OutputSink {
+
+    /**
+     * @return ID of the workspace the components are created in
+     */
+    String getWorkspaceId();
+
+    /**
+     * @param name
+     * @return the component type with this name
+     */
+    String getComponentType(String name);
+
+    /**
+     * @param name
+     * @return the reference type with this name
+     */
+    int getReferenceType(String name);
+
+    /**
+     * @return true if components and references may be added from several threads at a time
+     */
+    boolean isConcurrent();
+
+    /**
+     * @param component a component whose parent, if any, is written
+     * @return the component with its ID, which references and children refer to
+     * @throws IOException
+     */
+    Component addComponent(Component component) throws IOException;
+
+    /**
+     * @param reference a reference between written components
+     * @return the reference, with its ID if the sink assigns one
+     * @throws IOException
+     */
+    Reference addReference(Reference reference) throws IOException;
+
+    /**
+     * Finishes the output, called once after the import has written everything.
+     * @throws IOException
+     */
+    void close() throws IOException;
+
+    /**
+     * Called instead of close when the import fails, so the output of the failed import isn't taken for a complete
+     * one.
+     */
+    void abort();
+
+}
@@ -0,0 +1,76 @@
+package com.ardoq.mavenImport.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.model.resolution.InvalidRepositoryException;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+/**
+ * A model resolver that resolves parent and imported POMs through the repository system, from the import's
+ * repositories plus those declared by the POMs being built.
+ */
+public class AetherModelResolver
+    implements ModelResolver
+{
+
+    private final RepositorySystem system;
+
+    private final RepositorySystemSession session;
+
+    private final List<RemoteRepository> repositories;
+
+    public AetherModelResolver( RepositorySystem system, RepositorySystemSession session,
+                                List<RemoteRepository> repositories )
+    {
+        this.system = system;
+        this.session = session;
+        this.repositories = new ArrayList<RemoteRepository>( repositories );
+    }
+
+    public ModelSource resolveModel( String groupId, String artifactId, String version )
+        throws UnresolvableModelException
+    {
+        ArtifactRequest request = new ArtifactRequest();
+        request.setArtifact( new DefaultArtifact( groupId, artifactId, "", "pom", version ) );
+        request.setRepositories( repositories );
+        try
+        {
+            return new FileModelSource( system.resolveArtifact( session, request ).getArtifact().getFile() );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            throw new UnresolvableModelException( e.getMessage(), groupId, artifactId, version, e );
+        }
+    }
+
+    public void addRepository( Repository repository )
+        throws InvalidRepositoryException
+    {
+        for ( RemoteRepository existing : repositories )
+        {
+            if ( existing.getId().equals( repository.getId() ) )
+            {
+                return;
+            }
+        }
+        repositories.add( new RemoteRepository.Builder( repository.getId(), repository.getLayout(),
+                                                        repository.getUrl() ).build() );
+    }
+
+    public ModelResolver newCopy()
+    {
+        return new AetherModelResolver( system, session, repositories );
+    }
+
+}
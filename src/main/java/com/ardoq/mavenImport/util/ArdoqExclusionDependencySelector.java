@@ -2,11 +2,9 @@ package com.ardoq.mavenImport.util;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.TreeSet;
 
 import org.eclipse.aether.artifact.Artifact;
@@ -15,156 +13,160 @@ import org.eclipse.aether.collection.DependencySelector;
 import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.graph.Exclusion;
 
+/**
+ * An exclusion dependency selector that also knows which artifact declared each exclusion. It has no side effects
+ * and equal exclusions make equal selectors, so the collector can reuse subtrees collected under an equal selector.
+ * Which artifacts were excluded is worked out after collection, see {@link ExclusionWalker}.
+ */
 public class ArdoqExclusionDependencySelector implements DependencySelector
 {
 
     // sorted and dupe-free array, faster to iterate than LinkedHashSet
     private final Exclusion[] exclusions;
 
-    private int hashCode;
+    // Added by Ardoq: owners[i] is the artifact whose dependency declared exclusions[i], not part of equality
+    private final Artifact[] owners;
 
-    // Added by Ardoq to keep track of excluded artifacts
-    private Map<Artifact,ArdoqExclusionDependencySelector> dependencySelectors;
-    private List<Artifact> excluded = new LinkedList<Artifact>();
+    // Added by Ardoq: index of the exclusions, built once per selector
+    private final ExclusionMatcher matcher;
 
+    private int hashCode;
 
 
     /**
      * Creates a new selector without any exclusions.
-     * @param dependencySelectors
      */
-    public ArdoqExclusionDependencySelector(Map<Artifact,ArdoqExclusionDependencySelector> dependencySelectors)
+    public ArdoqExclusionDependencySelector()
     {
-        this.dependencySelectors = dependencySelectors;
         this.exclusions = new Exclusion[0];
+        this.owners = new Artifact[0];
+        this.matcher = new ExclusionMatcher( this.exclusions );
     }
 
     /**
      * Creates a new selector with the specified exclusions.
-     * @param dependencySelectors
+     * @param owner the artifact declaring the exclusions
      * @param exclusions
      */
-    public ArdoqExclusionDependencySelector(Map<Artifact,ArdoqExclusionDependencySelector> dependencySelectors, Collection<Exclusion> exclusions )
+    public ArdoqExclusionDependencySelector(Artifact owner, Collection<Exclusion> exclusions )
     {
-        this.dependencySelectors = dependencySelectors;
         if ( exclusions != null && !exclusions.isEmpty() )
         {
             TreeSet<Exclusion> sorted = new TreeSet<Exclusion>( ExclusionComparator.INSTANCE );
             sorted.addAll( exclusions );
             this.exclusions = sorted.toArray( new Exclusion[sorted.size()] );
+            this.owners = new Artifact[this.exclusions.length];
+            Arrays.fill( this.owners, owner );
         }
         else
         {
             this.exclusions = new Exclusion[0];
+            this.owners = new Artifact[0];
         }
+        this.matcher = new ExclusionMatcher( this.exclusions );
     }
 
     /**
      *
-     * @param dependencySelectors
      * @param exclusions
+     * @param owners
      */
-    private ArdoqExclusionDependencySelector(Map<Artifact,ArdoqExclusionDependencySelector> dependencySelectors, Exclusion[] exclusions )
+    private ArdoqExclusionDependencySelector(Exclusion[] exclusions, Artifact[] owners )
     {
-        this.dependencySelectors = dependencySelectors;
         this.exclusions = exclusions;
+        this.owners = owners;
+        this.matcher = new ExclusionMatcher( exclusions );
     }
 
-    public Map<Artifact, ArdoqExclusionDependencySelector> getDependencySelectors() {
-        return dependencySelectors;
-    }
-
-    public List<Artifact> getExcluded() {
-        return excluded;
+    public boolean hasExclusions()
+    {
+        return exclusions.length > 0;
     }
 
-    public boolean selectDependency( Dependency dependency )
+    /**
+     * @param artifact
+     * @return the artifact that declared the exclusion matching the artifact, null if it isn't excluded
+     */
+    public Artifact getExcludingOwner( Artifact artifact )
     {
-        Artifact artifact = dependency.getArtifact();
-        for ( Exclusion exclusion : exclusions )
-        {
-            if ( matches( exclusion, artifact ) )
-            {
-                excluded.add(artifact);
-                return false;
-            }
-        }
-        return true;
+        int index = matcher.indexOf( artifact );
+        return ( index >= 0 ) ? owners[index] : null;
     }
 
-    private boolean matches( Exclusion exclusion, Artifact artifact )
+    /**
+     * @return the owners of the exclusions, in the order of the exclusions, for callers that tell apart selectors
+     *         that are equal but were declared by different artifacts
+     */
+    List<Artifact> getOwners()
     {
-        if ( !matches( exclusion.getArtifactId(), artifact.getArtifactId() ) )
-        {
-            return false;
-        }
-        if ( !matches( exclusion.getGroupId(), artifact.getGroupId() ) )
-        {
-            return false;
-        }
-        if ( !matches( exclusion.getExtension(), artifact.getExtension() ) )
-        {
-            return false;
-        }
-        if ( !matches( exclusion.getClassifier(), artifact.getClassifier() ) )
-        {
-            return false;
-        }
-        return true;
+        return Collections.unmodifiableList( Arrays.asList( owners ) );
     }
 
-    private boolean matches( String pattern, String value )
+    public boolean selectDependency( Dependency dependency )
     {
-        return "*".equals( pattern ) || pattern.equals( value );
+        return matcher.indexOf( dependency.getArtifact() ) < 0;
     }
 
     public DependencySelector deriveChildSelector( DependencyCollectionContext context )
     {
         Dependency dependency = context.getDependency();
         Collection<Exclusion> exclusions = ( dependency != null ) ? dependency.getExclusions() : null;
-        if ( exclusions == null)
+        if ( exclusions == null || exclusions.isEmpty() )
         {
-            exclusions = new HashSet<Exclusion>();
+            return this;
         }
 
         Exclusion[] merged = this.exclusions;
+        Artifact[] mergedOwners = this.owners;
         int count = merged.length;
         for ( Exclusion exclusion : exclusions )
         {
-            int index = Arrays.binarySearch( merged, exclusion, ExclusionComparator.INSTANCE );
+            int index = Arrays.binarySearch( merged, 0, count, exclusion, ExclusionComparator.INSTANCE );
             if ( index < 0 )
             {
                 index = -( index + 1 );
-                if ( count >= merged.length )
-                {
-                    Exclusion[] tmp = new Exclusion[merged.length + exclusions.size()];
-                    System.arraycopy( merged, 0, tmp, 0, index );
-                    tmp[index] = exclusion;
-                    System.arraycopy( merged, index, tmp, index + 1, count - index );
-                    merged = tmp;
-                }
-                else
+                if ( merged == this.exclusions )
                 {
-                    System.arraycopy( merged, index, merged, index + 1, count - index );
-                    merged[index] = exclusion;
+                    // copy on the first new exclusion, the arrays of this selector are shared
+                    merged = new Exclusion[count + exclusions.size()];
+                    mergedOwners = new Artifact[merged.length];
+                    System.arraycopy( this.exclusions, 0, merged, 0, count );
+                    System.arraycopy( this.owners, 0, mergedOwners, 0, count );
                 }
+                System.arraycopy( merged, index, merged, index + 1, count - index );
+                System.arraycopy( mergedOwners, index, mergedOwners, index + 1, count - index );
+                merged[index] = exclusion;
+                mergedOwners[index] = dependency.getArtifact();
                 count++;
             }
         }
-//        if ( merged == this.exclusions )
-//        {
-//            return this;
-//        }
+        if ( merged == this.exclusions )
+        {
+            return this;
+        }
         if ( merged.length != count )
         {
-            Exclusion[] tmp = new Exclusion[count];
-            System.arraycopy( merged, 0, tmp, 0, count );
-            merged = tmp;
+            merged = Arrays.copyOf( merged, count );
+            mergedOwners = Arrays.copyOf( mergedOwners, count );
+        }
+
+        return new ArdoqExclusionDependencySelector( merged, mergedOwners );
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        else if ( null == obj || !getClass().equals( obj.getClass() ) )
+        {
+            return false;
         }
 
-        ArdoqExclusionDependencySelector child = new ArdoqExclusionDependencySelector( dependencySelectors, merged );
-        dependencySelectors.put(dependency.getArtifact(), child);
-        return child;
+        ArdoqExclusionDependencySelector that = (ArdoqExclusionDependencySelector) obj;
+        return Arrays.equals( exclusions, that.exclusions );
     }
 
 
@@ -1,16 +1,16 @@
 package com.ardoq.mavenImport.util;
 
+import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositoryCache;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
-import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.collection.DependencySelector;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
@@ -32,26 +32,57 @@ public class Booter
         // return org.eclipse.aether.examples.plexus.PlexusRepositorySystemFactory.newRepositorySystem();
     }
 
-    public static DefaultRepositorySystemSession newRepositorySystemSession( RepositorySystem system, PrintStream out, Map<Artifact,ArdoqExclusionDependencySelector> dependencySelectors, String ... scopes)
+    /**
+     * @return the per-user Maven repository, ~/.m2/repository, shared by all imports (and Maven) of this user
+     */
+    public static File getDefaultLocalRepository()
+    {
+        return new File( new File( AetherUtils.getUserHome(), ".m2" ), "repository" );
+    }
+
+    public static DefaultRepositorySystemSession newRepositorySystemSession( RepositorySystem system, PrintStream out, String ... scopes)
+    {
+        return newRepositorySystemSession( system, out, getDefaultLocalRepository(), scopes );
+    }
+
+    public static DefaultRepositorySystemSession newRepositorySystemSession( RepositorySystem system, PrintStream out, File localRepository, String ... scopes)
+    {
+        return newRepositorySystemSession( system, new ConsoleReporter( out ), localRepository, scopes );
+    }
+
+    public static DefaultRepositorySystemSession newRepositorySystemSession( RepositorySystem system, ConsoleReporter reporter, File localRepository, String ... scopes)
     {
         DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
 
-        LocalRepository localRepo = new LocalRepository( "target/local-repo" );
+        // several imports may share the local repository, see FileLockSyncContextFactory
+        LocalRepository localRepo = new LocalRepository( localRepository );
         session.setLocalRepositoryManager( system.newLocalRepositoryManager( session, localRepo ) );
 
-        session.setTransferListener( new ConsoleTransferListener(out) );
-        session.setRepositoryListener( new ConsoleRepositoryListener(out) );
+        // holds the artifact descriptors shared between dependency collections
+        session.setCache( new DefaultRepositoryCache() );
+
+        session.setTransferListener( new ConsoleTransferListener(reporter) );
+        session.setRepositoryListener( new ConsoleRepositoryListener(reporter) );
 
+        // every selector has value equality, so the collector can reuse equal subtrees
         DependencySelector depFilter =
-                new AndDependencySelector( new ScopeDependencySelector(scopes),
-                                           new OptionalDependencySelector(),
-                                           new ArdoqExclusionDependencySelector(dependencySelectors) );
+                new AndDependencySelector( newScopeDependencySelector(scopes),
+                                           new ArdoqExclusionDependencySelector() );
 
         session.setDependencySelector(depFilter);
 
         return session;
     }
 
+    /**
+     * @param scopes
+     * @return the session's dependency selector without the exclusions, see ExclusionWalker
+     */
+    public static DependencySelector newScopeDependencySelector( String ... scopes )
+    {
+        return new AndDependencySelector( new ScopeDependencySelector(scopes), new OptionalDependencySelector() );
+    }
+
     public static List<RemoteRepository> newRepositories( RepositorySystem system, RepositorySystemSession session )
     {
         return new ArrayList<RemoteRepository>( Arrays.asList( newCentralRepository() ) );
@@ -0,0 +1,235 @@
+package com.ardoq.mavenImport.util;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.repository.internal.DefaultArtifactDescriptorReader;
+import org.eclipse.aether.RepositoryCache;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.impl.ArtifactDescriptorReader;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.WorkspaceRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.spi.locator.Service;
+import org.eclipse.aether.spi.locator.ServiceLocator;
+
+import com.ardoq.mavenImport.jfr.EventSpan;
+import com.ardoq.mavenImport.jfr.ImportEventType;
+import com.ardoq.mavenImport.jfr.ImportEvents;
+
+/**
+ * An artifact descriptor reader that remembers successfully read descriptors in the session's repository cache,
+ * so the same POM is only read once per session no matter how many collections ask for it. The repository cache may
+ * be shared by many sessions, e.g. by the daemon, so it keeps the least recently used MAX_DESCRIPTORS release
+ * descriptors, per local repository. SNAPSHOT descriptors and those of workspace projects can change between
+ * sessions; they are kept in the session's own data.
+ *
+ * Failed reads are not cached; they are retried and reported by whoever asks next. Neither are the empty
+ * descriptors of POMs the descriptor policy let go missing, so a stricter policy later in the session still sees
+ * them missing.
+ */
+public class CachingArtifactDescriptorReader
+    implements ArtifactDescriptorReader, Service
+{
+
+    static final int MAX_DESCRIPTORS = 20000;
+
+    private static final String CACHE_KEY = CachingArtifactDescriptorReader.class.getName() + ".descriptors";
+
+    private ArtifactDescriptorReader delegate;
+
+    public CachingArtifactDescriptorReader()
+    {
+        // enables default constructor
+    }
+
+    public CachingArtifactDescriptorReader( ArtifactDescriptorReader delegate )
+    {
+        this.delegate = delegate;
+    }
+
+    public void initService( ServiceLocator locator )
+    {
+        DefaultArtifactDescriptorReader reader = new DefaultArtifactDescriptorReader();
+        reader.initService( locator );
+        this.delegate = reader;
+    }
+
+    public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                            ArtifactDescriptorRequest request )
+        throws ArtifactDescriptorException
+    {
+        EventSpan event = ImportEvents.begin( ImportEventType.DESCRIPTOR_READ ).gav( request.getArtifact() );
+        String outcome = "failed";
+        try
+        {
+            if ( session.getCache() == null )
+            {
+                ArtifactDescriptorResult result = delegate.readArtifactDescriptor( session, request );
+                outcome = "read";
+                return tag( event, result );
+            }
+
+            Object key = new Key( session, request.getArtifact(), request.getRepositories() );
+            ArtifactDescriptorResult result = get( session, key );
+            outcome = "cached";
+            if ( result == null )
+            {
+                result = delegate.readArtifactDescriptor( session, request );
+                if ( result.getRepository() != null )
+                {
+                    boolean shared =
+                        !request.getArtifact().isSnapshot() && !( result.getRepository() instanceof WorkspaceRepository );
+                    Map<Object, ArtifactDescriptorResult> descriptors = getDescriptors( session, shared );
+                    synchronized ( descriptors )
+                    {
+                        descriptors.put( key, result );
+                    }
+                }
+                outcome = "read";
+            }
+            return tag( event, result );
+        }
+        finally
+        {
+            event.end( outcome );
+        }
+    }
+
+    private static ArtifactDescriptorResult tag( EventSpan event, ArtifactDescriptorResult result )
+    {
+        if ( event.isRecording() && result.getRepository() != null )
+        {
+            event.repository( result.getRepository().getId() );
+        }
+        return result;
+    }
+
+    /**
+     * @param session
+     * @param artifact
+     * @param repositories
+     * @return true if the descriptor has already been read in this session
+     */
+    public static boolean isCached( RepositorySystemSession session, Artifact artifact,
+                                    List<RemoteRepository> repositories )
+    {
+        return session.getCache() != null && get( session, new Key( session, artifact, repositories ) ) != null;
+    }
+
+    private static ArtifactDescriptorResult get( RepositorySystemSession session, Object key )
+    {
+        for ( int i = 0; i < 2; i++ )
+        {
+            Map<Object, ArtifactDescriptorResult> descriptors = getDescriptors( session, i == 0 );
+            synchronized ( descriptors )
+            {
+                ArtifactDescriptorResult result = descriptors.get( key );
+                if ( result != null )
+                {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param session
+     * @param shared true for the descriptors in the repository cache, false for those of this session only
+     * @return the descriptors, synchronize on them
+     */
+    @SuppressWarnings( "unchecked" )
+    private static Map<Object, ArtifactDescriptorResult> getDescriptors( RepositorySystemSession session,
+                                                                         boolean shared )
+    {
+        if ( !shared )
+        {
+            SessionData data = session.getData();
+            Object descriptors = data.get( CACHE_KEY );
+            if ( descriptors == null )
+            {
+                data.set( CACHE_KEY, null, newDescriptors() );
+                descriptors = data.get( CACHE_KEY );
+            }
+            return (Map<Object, ArtifactDescriptorResult>) descriptors;
+        }
+        RepositoryCache cache = session.getCache();
+        synchronized ( cache )
+        {
+            Object descriptors = cache.get( session, CACHE_KEY );
+            if ( descriptors == null )
+            {
+                descriptors = newDescriptors();
+                cache.put( session, CACHE_KEY, descriptors );
+            }
+            return (Map<Object, ArtifactDescriptorResult>) descriptors;
+        }
+    }
+
+    private static Map<Object, ArtifactDescriptorResult> newDescriptors()
+    {
+        return new LinkedHashMap<Object, ArtifactDescriptorResult>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Object, ArtifactDescriptorResult> eldest )
+            {
+                return size() > MAX_DESCRIPTORS;
+            }
+        };
+    }
+
+    private static final class Key
+    {
+
+        // coordinates only, the artifact properties and file don't affect the descriptor
+        private final String artifact;
+
+        private final List<RemoteRepository> repositories;
+
+        // sessions sharing the repository cache may use different local repositories
+        private final File localRepository;
+
+        private final int hashCode;
+
+        Key( RepositorySystemSession session, Artifact artifact, List<RemoteRepository> repositories )
+        {
+            this.artifact = artifact.toString();
+            this.repositories = repositories;
+            this.localRepository = session.getLocalRepository().getBasedir();
+            this.hashCode = ( this.artifact.hashCode() * 31 + repositories.hashCode() ) * 31 + localRepository.hashCode();
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+            if ( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+            Key that = (Key) obj;
+            return artifact.equals( that.artifact ) && repositories.equals( that.repositories )
+                && localRepository.equals( that.localRepository );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+    }
+
+}
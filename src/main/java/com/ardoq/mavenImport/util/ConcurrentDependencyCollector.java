@@ -0,0 +1,327 @@
+package com.ardoq.mavenImport.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.collection.DependencyManagement;
+import org.eclipse.aether.collection.DependencyManager;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.collection.DependencyTraverser;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.impl.ArtifactDescriptorReader;
+import org.eclipse.aether.impl.DependencyCollector;
+import org.eclipse.aether.impl.RemoteRepositoryManager;
+import org.eclipse.aether.internal.impl.DefaultDependencyCollector;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.spi.locator.Service;
+import org.eclipse.aether.spi.locator.ServiceLocator;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A dependency collector that reads the artifact descriptors of a dependency graph level by level, with a bounded
+ * number of concurrent reads, before handing the request to Aether's default collector.
+ *
+ * The descriptors end up in the session cache of the {@link CachingArtifactDescriptorReader}, so the default
+ * collector builds the graph from memory. Graph shape and conflict resolution are therefore exactly those of the
+ * default collector; descriptors that could not be prefetched (version ranges, failures) are simply read by the
+ * default collector as usual.
+ */
+public class ConcurrentDependencyCollector
+    implements DependencyCollector, Service
+{
+
+    /**
+     * The number of descriptors read concurrently, 1 disables prefetching.
+     */
+    public static final String CONFIG_PROP_THREADS = "ardoq.collector.threads";
+
+    public static final int DEFAULT_THREADS = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger( ConcurrentDependencyCollector.class );
+
+    private DependencyCollector delegate;
+
+    private ArtifactDescriptorReader descriptorReader;
+
+    private RemoteRepositoryManager remoteRepositoryManager;
+
+    public ConcurrentDependencyCollector()
+    {
+        // enables default constructor
+    }
+
+    public void initService( ServiceLocator locator )
+    {
+        DefaultDependencyCollector collector = new DefaultDependencyCollector();
+        collector.initService( locator );
+        this.delegate = collector;
+        this.descriptorReader = locator.getService( ArtifactDescriptorReader.class );
+        this.remoteRepositoryManager = locator.getService( RemoteRepositoryManager.class );
+    }
+
+    public CollectResult collectDependencies( RepositorySystemSession session, CollectRequest request )
+        throws DependencyCollectionException
+    {
+        int threads = ConfigUtils.getInteger( session, DEFAULT_THREADS, CONFIG_PROP_THREADS );
+        if ( threads > 1 && request.getRoot() != null && session.getCache() != null )
+        {
+            prefetch( session, request, threads );
+        }
+        return delegate.collectDependencies( session, request );
+    }
+
+    private void prefetch( RepositorySystemSession session, CollectRequest request, int threads )
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            Set<String> visited = new HashSet<String>();
+            List<Node> level = Collections.singletonList(
+                new Node( request.getRoot(), request.getRepositories(), session.getDependencySelector(),
+                          session.getDependencyManager(), session.getDependencyTraverser(),
+                          request.getManagedDependencies() ) );
+            int depth = 0;
+            while ( !level.isEmpty() )
+            {
+                logger.debug( "Prefetching " + level.size() + " descriptors at depth " + depth );
+                level = readLevel( session, executor, level, visited );
+                depth++;
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the descriptors of one level concurrently and returns the next level.
+     */
+    private List<Node> readLevel( final RepositorySystemSession session, ExecutorService executor, List<Node> level,
+                                  Set<String> visited )
+        throws InterruptedException
+    {
+        Map<Node, Future<ArtifactDescriptorResult>> reads = new LinkedHashMap<Node, Future<ArtifactDescriptorResult>>();
+        for ( final Node node : level )
+        {
+            reads.put( node, executor.submit( new Callable<ArtifactDescriptorResult>()
+            {
+                public ArtifactDescriptorResult call()
+                    throws Exception
+                {
+                    ArtifactDescriptorRequest descriptorRequest =
+                        new ArtifactDescriptorRequest( node.dependency.getArtifact(), node.repositories, "project" );
+                    return descriptorReader.readArtifactDescriptor( session, descriptorRequest );
+                }
+            } ) );
+        }
+
+        List<Node> next = new ArrayList<Node>();
+        for ( Map.Entry<Node, Future<ArtifactDescriptorResult>> read : reads.entrySet() )
+        {
+            ArtifactDescriptorResult descriptor;
+            try
+            {
+                descriptor = read.getValue().get();
+            }
+            catch ( ExecutionException e )
+            {
+                logger.debug( "Could not prefetch descriptor of " + read.getKey().dependency, e.getCause() );
+                continue;
+            }
+            addChildren( session, read.getKey(), descriptor, visited, next );
+        }
+        return next;
+    }
+
+    /**
+     * Selects, manages and traverses the dependencies of a descriptor the same way the default collector does.
+     */
+    private void addChildren( RepositorySystemSession session, Node node, ArtifactDescriptorResult descriptor,
+                              Set<String> visited, List<Node> next )
+    {
+        // managed dependencies of the request take precedence over those of the root descriptor
+        List<Dependency> managed = new ArrayList<Dependency>();
+        if ( node.managedDependencies != null )
+        {
+            managed.addAll( node.managedDependencies );
+        }
+        managed.addAll( descriptor.getManagedDependencies() );
+        Context context = new Context( session, descriptor.getArtifact(), node.dependency, managed );
+
+        DependencySelector selector = ( node.selector != null ) ? node.selector.deriveChildSelector( context ) : null;
+        DependencyManager manager = ( node.manager != null ) ? node.manager.deriveChildManager( context ) : null;
+        DependencyTraverser traverser =
+            ( node.traverser != null ) ? node.traverser.deriveChildTraverser( context ) : null;
+
+        List<RemoteRepository> repositories = node.repositories;
+        if ( !session.isIgnoreArtifactDescriptorRepositories() )
+        {
+            repositories = remoteRepositoryManager.aggregateRepositories( session, repositories,
+                                                                          descriptor.getRepositories(), true );
+        }
+
+        for ( Dependency dependency : descriptor.getDependencies() )
+        {
+            if ( selector != null && !selector.selectDependency( dependency ) )
+            {
+                continue;
+            }
+            dependency = manage( manager, dependency );
+            if ( isRange( dependency.getArtifact().getVersion() ) )
+            {
+                continue;
+            }
+            if ( traverser != null && !traverser.traverseDependency( dependency ) )
+            {
+                continue;
+            }
+            if ( !visited.add( dependency.getArtifact() + " " + repositories ) )
+            {
+                continue;
+            }
+            if ( CachingArtifactDescriptorReader.isCached( session, dependency.getArtifact(), repositories ) )
+            {
+                // the children were prefetched already, by this or an earlier collection
+                continue;
+            }
+            next.add( new Node( dependency, repositories, selector, manager, traverser, null ) );
+        }
+    }
+
+    private static Dependency manage( DependencyManager manager, Dependency dependency )
+    {
+        DependencyManagement management = ( manager != null ) ? manager.manageDependency( dependency ) : null;
+        if ( management == null )
+        {
+            return dependency;
+        }
+        Artifact artifact = dependency.getArtifact();
+        if ( management.getVersion() != null )
+        {
+            artifact = artifact.setVersion( management.getVersion() );
+        }
+        if ( management.getProperties() != null )
+        {
+            artifact = artifact.setProperties( management.getProperties() );
+        }
+        dependency = dependency.setArtifact( artifact );
+        if ( management.getScope() != null )
+        {
+            dependency = dependency.setScope( management.getScope() );
+        }
+        if ( management.getOptional() != null )
+        {
+            dependency = dependency.setOptional( management.getOptional() );
+        }
+        if ( management.getExclusions() != null )
+        {
+            dependency = dependency.setExclusions( management.getExclusions() );
+        }
+        return dependency;
+    }
+
+    private static boolean isRange( String version )
+    {
+        return version.startsWith( "[" ) || version.startsWith( "(" );
+    }
+
+    private static final class Node
+    {
+
+        final Dependency dependency;
+
+        final List<RemoteRepository> repositories;
+
+        final DependencySelector selector;
+
+        final DependencyManager manager;
+
+        final DependencyTraverser traverser;
+
+        final List<Dependency> managedDependencies;
+
+        Node( Dependency dependency, List<RemoteRepository> repositories, DependencySelector selector,
+              DependencyManager manager, DependencyTraverser traverser, List<Dependency> managedDependencies )
+        {
+            this.dependency = dependency;
+            this.repositories = repositories;
+            this.selector = selector;
+            this.manager = manager;
+            this.traverser = traverser;
+            this.managedDependencies = managedDependencies;
+        }
+
+    }
+
+    /**
+     * The collection context handed to selectors, managers and traversers while prefetching.
+     */
+    static final class Context
+        implements DependencyCollectionContext
+    {
+
+        private final RepositorySystemSession session;
+
+        private final Artifact artifact;
+
+        private final Dependency dependency;
+
+        private final List<Dependency> managedDependencies;
+
+        Context( RepositorySystemSession session, Artifact artifact, Dependency dependency,
+                 List<Dependency> managedDependencies )
+        {
+            this.session = session;
+            this.artifact = artifact;
+            this.dependency = dependency;
+            this.managedDependencies = managedDependencies;
+        }
+
+        public RepositorySystemSession getSession()
+        {
+            return session;
+        }
+
+        public Artifact getArtifact()
+        {
+            return artifact;
+        }
+
+        public Dependency getDependency()
+        {
+            return dependency;
+        }
+
+        public List<Dependency> getManagedDependencies()
+        {
+            return managedDependencies;
+        }
+
+    }
+
+}
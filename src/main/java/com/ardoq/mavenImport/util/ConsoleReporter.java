@@ -0,0 +1,339 @@
+package com.ardoq.mavenImport.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the console output of an import from a background thread, so the threads resolving POMs and writing to
+ * Ardoq don't wait for the console. Lines are queued and written in batches. Progress, e.g. of the running
+ * downloads, is not printed when it changes but polled at most every PROGRESS_INTERVAL milliseconds.
+ *
+ * In quiet mode only the summary of an import and errors are printed. Per item messages are only formatted if
+ * isVerbose(), so they cost nothing in quiet mode. Errors go to System.err, in order with the other lines.
+ *
+ * There is at most one writer thread at a time: close() waits for it to end before lines queued later start the next.
+ */
+public class ConsoleReporter
+{
+
+    /**
+     * Something whose status is shown on a line of its own, overwritten as it changes.
+     */
+    public interface Progress
+    {
+
+        /**
+         * @return the current status, or an empty string if there is nothing to show
+         */
+        String getStatus();
+
+    }
+
+    static final long PROGRESS_INTERVAL = 250;
+
+    // the importing threads block when the console falls this far behind
+    static final int QUEUE_SIZE = 4096;
+
+    private static final String LINE_SEPARATOR = System.getProperty( "line.separator" );
+
+    private final PrintStream out;
+
+    private final PrintStream err;
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>( QUEUE_SIZE );
+
+    private volatile boolean verbose = true;
+
+    private volatile Progress progress;
+
+    private volatile boolean progressChanged;
+
+    private Thread writer;
+
+    // only used by the writer thread
+    private int statusLength;
+
+    private long lastProgress;
+
+    public ConsoleReporter()
+    {
+        this( null );
+    }
+
+    public ConsoleReporter( PrintStream out )
+    {
+        this.out = ( out != null ) ? out : System.out;
+        this.err = System.err;
+    }
+
+    public PrintStream getOut()
+    {
+        return out;
+    }
+
+    /**
+     * @return true unless in quiet mode, check before formatting a message about a single item
+     */
+    public boolean isVerbose()
+    {
+        return verbose;
+    }
+
+    public void setVerbose( boolean verbose )
+    {
+        this.verbose = verbose;
+    }
+
+    /**
+     * @param progress the source of the status line, replaces the previous one
+     */
+    public void setProgress( Progress progress )
+    {
+        this.progress = progress;
+    }
+
+    /**
+     * Marks the status line for an update, it is read from the Progress when the next update is due.
+     */
+    public void progressChanged()
+    {
+        if ( verbose && !progressChanged )
+        {
+            progressChanged = true;
+            start();
+        }
+    }
+
+    /**
+     * Queues a line, printed in quiet mode as well.
+     * @param line
+     */
+    public void println( Object line )
+    {
+        enqueue( String.valueOf( line ) );
+    }
+
+    /**
+     * Queues an error line for System.err, printed in quiet mode as well.
+     * @param line
+     */
+    public void printError( Object line )
+    {
+        enqueue( new ErrorLine( String.valueOf( line ) ) );
+    }
+
+    /**
+     * Waits until everything queued so far is printed.
+     */
+    public void flush()
+    {
+        Flush flush = new Flush();
+        enqueue( flush );
+        try
+        {
+            flush.done.await();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints what is queued and stops the writer thread. Lines queued later start a new one once it has ended.
+     */
+    public synchronized void close()
+    {
+        if ( writer == null )
+        {
+            return;
+        }
+        Flush stop = new Flush();
+        stop.last = true;
+        put( stop );
+        // start() waits for the lock meanwhile, so the next writer doesn't take from the queue alongside this one
+        boolean interrupted = false;
+        while ( writer.isAlive() )
+        {
+            try
+            {
+                writer.join();
+            }
+            catch ( InterruptedException e )
+            {
+                interrupted = true;
+            }
+        }
+        writer = null;
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue( Object item )
+    {
+        start();
+        put( item );
+    }
+
+    // a line or the stop of close() can't be dropped, so this waits for room even if interrupted
+    private void put( Object item )
+    {
+        boolean interrupted = false;
+        while ( true )
+        {
+            try
+            {
+                queue.put( item );
+                break;
+            }
+            catch ( InterruptedException e )
+            {
+                interrupted = true;
+            }
+        }
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void start()
+    {
+        if ( writer == null )
+        {
+            writer = new Thread( new Runnable()
+            {
+                public void run()
+                {
+                    write();
+                }
+            }, "console-reporter" );
+            writer.setDaemon( true );
+            writer.start();
+        }
+    }
+
+    private void write()
+    {
+        List<Object> items = new ArrayList<Object>();
+        StringBuilder batch = new StringBuilder( 1024 );
+        boolean running = true;
+        while ( running )
+        {
+            try
+            {
+                Object first = queue.poll( PROGRESS_INTERVAL, TimeUnit.MILLISECONDS );
+                if ( first != null )
+                {
+                    items.add( first );
+                    queue.drainTo( items );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                // keep going until stopped by close()
+            }
+
+            for ( Object item : items )
+            {
+                if ( item instanceof Flush )
+                {
+                    Flush flush = (Flush) item;
+                    clearStatus( batch );
+                    print( batch );
+                    flush.done.countDown();
+                    running &= !flush.last;
+                }
+                else if ( item instanceof ErrorLine )
+                {
+                    clearStatus( batch );
+                    print( batch );
+                    err.println( ( (ErrorLine) item ).line );
+                    err.flush();
+                }
+                else
+                {
+                    clearStatus( batch );
+                    batch.append( item ).append( LINE_SEPARATOR );
+                }
+            }
+            items.clear();
+
+            long now = System.currentTimeMillis();
+            if ( running && progressChanged && now - lastProgress >= PROGRESS_INTERVAL )
+            {
+                progressChanged = false;
+                lastProgress = now;
+                Progress source = progress;
+                printStatus( batch, ( source != null && verbose ) ? source.getStatus() : "" );
+            }
+            print( batch );
+        }
+    }
+
+    private void printStatus( StringBuilder batch, String status )
+    {
+        batch.append( status );
+        pad( batch, statusLength - status.length() );
+        batch.append( '\r' );
+        statusLength = status.length();
+    }
+
+    private void clearStatus( StringBuilder batch )
+    {
+        if ( statusLength > 0 )
+        {
+            printStatus( batch, "" );
+        }
+    }
+
+    private void print( StringBuilder batch )
+    {
+        if ( batch.length() > 0 )
+        {
+            out.print( batch );
+            out.flush();
+            batch.setLength( 0 );
+        }
+    }
+
+    private static void pad( StringBuilder buffer, int spaces )
+    {
+        String block = "                                        ";
+        while ( spaces > 0 )
+        {
+            int n = Math.min( spaces, block.length() );
+            buffer.append( block, 0, n );
+            spaces -= n;
+        }
+    }
+
+    private static final class ErrorLine
+    {
+
+        final String line;
+
+        ErrorLine( String line )
+        {
+            this.line = line;
+        }
+
+    }
+
+    private static final class Flush
+    {
+
+        final CountDownLatch done = new CountDownLatch( 1 );
+
+        boolean last;
+
+    }
+
+}
@@ -6,108 +6,159 @@ import org.eclipse.aether.AbstractRepositoryListener;
 import org.eclipse.aether.RepositoryEvent;
 
 /**
- * A simplistic repository listener that logs events to the console.
+ * A simplistic repository listener that logs events to the console. Only invalid and missing artifact descriptors
+ * are reported in quiet mode.
  */
 public class ConsoleRepositoryListener
     extends AbstractRepositoryListener
 {
 
-    private PrintStream out;
+    private ConsoleReporter reporter;
 
     public ConsoleRepositoryListener()
     {
-        this( null );
+        this( (PrintStream) null );
     }
 
     public ConsoleRepositoryListener( PrintStream out )
     {
-        this.out = ( out != null ) ? out : System.out;
+        this( new ConsoleReporter( out ) );
+    }
+
+    public ConsoleRepositoryListener( ConsoleReporter reporter )
+    {
+        this.reporter = reporter;
     }
 
     public void artifactDeployed( RepositoryEvent event )
     {
-        out.println( "Deployed " + event.getArtifact() + " to " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Deployed " + event.getArtifact() + " to " + event.getRepository() );
+        }
     }
 
     public void artifactDeploying( RepositoryEvent event )
     {
-        out.println( "Deploying " + event.getArtifact() + " to " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Deploying " + event.getArtifact() + " to " + event.getRepository() );
+        }
     }
 
     public void artifactDescriptorInvalid( RepositoryEvent event )
     {
-        out.println( "Invalid artifact descriptor for " + event.getArtifact() + ": "
+        reporter.println( "Invalid artifact descriptor for " + event.getArtifact() + ": "
             + event.getException().getMessage() );
     }
 
     public void artifactDescriptorMissing( RepositoryEvent event )
     {
-        out.println( "Missing artifact descriptor for " + event.getArtifact() );
+        reporter.println( "Missing artifact descriptor for " + event.getArtifact() );
     }
 
     public void artifactInstalled( RepositoryEvent event )
     {
-        out.println( "Installed " + event.getArtifact() + " to " + event.getFile() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Installed " + event.getArtifact() + " to " + event.getFile() );
+        }
     }
 
     public void artifactInstalling( RepositoryEvent event )
     {
-        out.println( "Installing " + event.getArtifact() + " to " + event.getFile() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Installing " + event.getArtifact() + " to " + event.getFile() );
+        }
     }
 
     public void artifactResolved( RepositoryEvent event )
     {
-        out.println( "Resolved artifact " + event.getArtifact() + " from " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Resolved artifact " + event.getArtifact() + " from " + event.getRepository() );
+        }
     }
 
     public void artifactDownloading( RepositoryEvent event )
     {
-        out.println( "Downloading artifact " + event.getArtifact() + " from " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Downloading artifact " + event.getArtifact() + " from " + event.getRepository() );
+        }
     }
 
     public void artifactDownloaded( RepositoryEvent event )
     {
-        out.println( "Downloaded artifact " + event.getArtifact() + " from " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Downloaded artifact " + event.getArtifact() + " from " + event.getRepository() );
+        }
     }
 
     public void artifactResolving( RepositoryEvent event )
     {
-        out.println( "Resolving artifact " + event.getArtifact() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Resolving artifact " + event.getArtifact() );
+        }
     }
 
     public void metadataDeployed( RepositoryEvent event )
     {
-        out.println( "Deployed " + event.getMetadata() + " to " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Deployed " + event.getMetadata() + " to " + event.getRepository() );
+        }
     }
 
     public void metadataDeploying( RepositoryEvent event )
     {
-        out.println( "Deploying " + event.getMetadata() + " to " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Deploying " + event.getMetadata() + " to " + event.getRepository() );
+        }
     }
 
     public void metadataInstalled( RepositoryEvent event )
     {
-        out.println( "Installed " + event.getMetadata() + " to " + event.getFile() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Installed " + event.getMetadata() + " to " + event.getFile() );
+        }
     }
 
     public void metadataInstalling( RepositoryEvent event )
     {
-        out.println( "Installing " + event.getMetadata() + " to " + event.getFile() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Installing " + event.getMetadata() + " to " + event.getFile() );
+        }
     }
 
     public void metadataInvalid( RepositoryEvent event )
     {
-        out.println( "Invalid metadata " + event.getMetadata() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Invalid metadata " + event.getMetadata() );
+        }
     }
 
     public void metadataResolved( RepositoryEvent event )
     {
-        out.println( "Resolved metadata " + event.getMetadata() + " from " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Resolved metadata " + event.getMetadata() + " from " + event.getRepository() );
+        }
     }
 
     public void metadataResolving( RepositoryEvent event )
     {
-        out.println( "Resolving metadata " + event.getMetadata() + " from " + event.getRepository() );
+        if ( reporter.isVerbose() )
+        {
+            reporter.println( "Resolving metadata " + event.getMetadata() + " from " + event.getRepository() );
+        }
     }
 
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.ardoq.mavenImport.util;
 
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Locale;
@@ -13,42 +15,58 @@ import org.eclipse.aether.transfer.TransferEvent;
 import org.eclipse.aether.transfer.TransferResource;
 
 /**
- * A simplistic transfer listener that logs uploads/downloads to the console.
+ * A simplistic transfer listener that logs uploads/downloads to the console. The progress of the running
+ * transfers is only recorded here, the reporter polls the status line when it is due.
  */
 public class ConsoleTransferListener
     extends AbstractTransferListener
+    implements ConsoleReporter.Progress
 {
 
-    private PrintStream out;
+    private ConsoleReporter reporter;
 
     private Map<TransferResource, Long> downloads = new ConcurrentHashMap<TransferResource, Long>();
 
-    private int lastLength;
-
     public ConsoleTransferListener()
     {
-        this( null );
+        this( (PrintStream) null );
     }
 
     public ConsoleTransferListener( PrintStream out )
     {
-        this.out = ( out != null ) ? out : System.out;
+        this( new ConsoleReporter( out ) );
+    }
+
+    public ConsoleTransferListener( ConsoleReporter reporter )
+    {
+        this.reporter = reporter;
+        reporter.setProgress( this );
     }
 
     @Override
     public void transferInitiated( TransferEvent event )
     {
-        String message = event.getRequestType() == TransferEvent.RequestType.PUT ? "Uploading" : "Downloading";
+        if ( reporter.isVerbose() )
+        {
+            String message = event.getRequestType() == TransferEvent.RequestType.PUT ? "Uploading" : "Downloading";
 
-        out.println( message + ": " + event.getResource().getRepositoryUrl() + event.getResource().getResourceName() );
+            reporter.println( message + ": " + event.getResource().getRepositoryUrl()
+                + event.getResource().getResourceName() );
+        }
     }
 
     @Override
     public void transferProgressed( TransferEvent event )
     {
-        TransferResource resource = event.getResource();
-        downloads.put( resource, Long.valueOf( event.getTransferredBytes() ) );
+        if ( reporter.isVerbose() )
+        {
+            downloads.put( event.getResource(), Long.valueOf( event.getTransferredBytes() ) );
+            reporter.progressChanged();
+        }
+    }
 
+    public String getStatus()
+    {
         StringBuilder buffer = new StringBuilder( 64 );
 
         for ( Map.Entry<TransferResource, Long> entry : downloads.entrySet() )
@@ -59,12 +77,7 @@ public class ConsoleTransferListener
             buffer.append( getStatus( complete, total ) ).append( "  " );
         }
 
-        int pad = lastLength - buffer.length();
-        lastLength = buffer.length();
-        pad( buffer, pad );
-        buffer.append( '\r' );
-
-        out.print( buffer );
+        return buffer.toString();
     }
 
     private String getStatus( long complete, long total )
@@ -87,17 +100,6 @@ public class ConsoleTransferListener
         }
     }
 
-    private void pad( StringBuilder buffer, int spaces )
-    {
-        String block = "                                        ";
-        while ( spaces > 0 )
-        {
-            int n = Math.min( spaces, block.length() );
-            buffer.append( block, 0, n );
-            spaces -= n;
-        }
-    }
-
     @Override
     public void transferSucceeded( TransferEvent event )
     {
@@ -105,7 +107,7 @@ public class ConsoleTransferListener
 
         TransferResource resource = event.getResource();
         long contentLength = event.getTransferredBytes();
-        if ( contentLength >= 0 )
+        if ( contentLength >= 0 && reporter.isVerbose() )
         {
             String type = ( event.getRequestType() == TransferEvent.RequestType.PUT ? "Uploaded" : "Downloaded" );
             String len = contentLength >= 1024 ? toKB( contentLength ) + " KB" : contentLength + " B";
@@ -120,7 +122,7 @@ public class ConsoleTransferListener
                 throughput = " at " + format.format( kbPerSec ) + " KB/sec";
             }
 
-            out.println( type + ": " + resource.getRepositoryUrl() + resource.getResourceName() + " (" + len
+            reporter.println( type + ": " + resource.getRepositoryUrl() + resource.getResourceName() + " (" + len
                 + throughput + ")" );
         }
     }
@@ -130,25 +132,30 @@ public class ConsoleTransferListener
     {
         transferCompleted( event );
 
-        if ( !( event.getException() instanceof MetadataNotFoundException ) )
+        if ( !( event.getException() instanceof MetadataNotFoundException ) && reporter.isVerbose() )
         {
-            event.getException().printStackTrace( out );
+            reporter.println( getStackTrace( event.getException() ) );
         }
     }
 
     private void transferCompleted( TransferEvent event )
     {
-        downloads.remove( event.getResource() );
-
-        StringBuilder buffer = new StringBuilder( 64 );
-        pad( buffer, lastLength );
-        buffer.append( '\r' );
-        out.print( buffer );
+        if ( downloads.remove( event.getResource() ) != null )
+        {
+            reporter.progressChanged();
+        }
     }
 
     public void transferCorrupted( TransferEvent event )
     {
-        event.getException().printStackTrace( out );
+        reporter.println( getStackTrace( event.getException() ) );
+    }
+
+    private static String getStackTrace( Exception exception )
+    {
+        StringWriter trace = new StringWriter();
+        exception.printStackTrace( new PrintWriter( trace ) );
+        return trace.toString().trim();
     }
 
     protected long toKB( long bytes )
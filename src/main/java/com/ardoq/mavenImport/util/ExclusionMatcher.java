@@ -0,0 +1,218 @@
+package com.ardoq.mavenImport.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.Exclusion;
+
+/**
+ * Finds the first exclusion in an array that matches an artifact. An exclusion matches when its groupId, artifactId,
+ * extension and classifier each equal the artifact's or are "*".
+ *
+ * Short arrays are scanned. Longer ones are indexed by groupId and artifactId, with separate buckets for exclusions
+ * that have a wildcard in either, so a lookup only looks at exclusions that can match. The result is the same as
+ * for a scan of the whole array.
+ */
+public final class ExclusionMatcher
+{
+
+    static final int SCAN_THRESHOLD = 8;
+
+    private static final String WILDCARD = "*";
+
+    private static final int[] NONE = new int[0];
+
+    private final Exclusion[] exclusions;
+
+    // groupId -> artifactId -> indices, for exclusions without wildcards in either
+    private final Map<String, Map<String, int[]>> exact;
+
+    // artifactId -> indices, for exclusions with groupId "*"
+    private final Map<String, int[]> anyGroup;
+
+    // groupId -> indices, for exclusions with artifactId "*"
+    private final Map<String, int[]> anyArtifact;
+
+    // exclusions with "*" for both
+    private final int[] anyGroupAndArtifact;
+
+    public ExclusionMatcher( Exclusion[] exclusions )
+    {
+        this.exclusions = exclusions;
+        if ( exclusions.length <= SCAN_THRESHOLD )
+        {
+            exact = null;
+            anyGroup = null;
+            anyArtifact = null;
+            anyGroupAndArtifact = null;
+            return;
+        }
+
+        Map<String, Map<String, List<Integer>>> exactLists = new HashMap<String, Map<String, List<Integer>>>();
+        Map<String, List<Integer>> anyGroupLists = new HashMap<String, List<Integer>>();
+        Map<String, List<Integer>> anyArtifactLists = new HashMap<String, List<Integer>>();
+        List<Integer> anyGroupAndArtifactList = new ArrayList<Integer>();
+        for ( int i = 0; i < exclusions.length; i++ )
+        {
+            String groupId = exclusions[i].getGroupId();
+            String artifactId = exclusions[i].getArtifactId();
+            boolean anyGroupId = WILDCARD.equals( groupId );
+            boolean anyArtifactId = WILDCARD.equals( artifactId );
+            if ( anyGroupId && anyArtifactId )
+            {
+                anyGroupAndArtifactList.add( i );
+            }
+            else if ( anyGroupId )
+            {
+                add( anyGroupLists, artifactId, i );
+            }
+            else if ( anyArtifactId )
+            {
+                add( anyArtifactLists, groupId, i );
+            }
+            else
+            {
+                Map<String, List<Integer>> byArtifactId = exactLists.get( groupId );
+                if ( byArtifactId == null )
+                {
+                    byArtifactId = new HashMap<String, List<Integer>>();
+                    exactLists.put( groupId, byArtifactId );
+                }
+                add( byArtifactId, artifactId, i );
+            }
+        }
+
+        exact = new HashMap<String, Map<String, int[]>>( exactLists.size() * 2 );
+        for ( Map.Entry<String, Map<String, List<Integer>>> entry : exactLists.entrySet() )
+        {
+            exact.put( entry.getKey(), toArrays( entry.getValue() ) );
+        }
+        anyGroup = toArrays( anyGroupLists );
+        anyArtifact = toArrays( anyArtifactLists );
+        anyGroupAndArtifact = toArray( anyGroupAndArtifactList );
+    }
+
+    /**
+     * @param artifact
+     * @return the index of the first matching exclusion, -1 if none matches
+     */
+    public int indexOf( Artifact artifact )
+    {
+        if ( exact == null )
+        {
+            for ( int i = 0; i < exclusions.length; i++ )
+            {
+                if ( matches( exclusions[i], artifact ) )
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        String groupId = artifact.getGroupId();
+        String artifactId = artifact.getArtifactId();
+        Map<String, int[]> byArtifactId = exact.get( groupId );
+        int first = firstMatch( ( byArtifactId != null ) ? byArtifactId.get( artifactId ) : null, artifact, -1 );
+        first = firstMatch( anyGroup.get( artifactId ), artifact, first );
+        first = firstMatch( anyArtifact.get( groupId ), artifact, first );
+        first = firstMatch( anyGroupAndArtifact, artifact, first );
+        return first;
+    }
+
+    public int size()
+    {
+        return exclusions.length;
+    }
+
+    /**
+     * @param indices ascending
+     * @param artifact
+     * @param first the first match so far, -1 if none
+     * @return the lower of first and the first match in indices
+     */
+    private int firstMatch( int[] indices, Artifact artifact, int first )
+    {
+        if ( indices == null )
+        {
+            return first;
+        }
+        for ( int index : indices )
+        {
+            if ( first >= 0 && index >= first )
+            {
+                break;
+            }
+            if ( matches( exclusions[index], artifact ) )
+            {
+                return index;
+            }
+        }
+        return first;
+    }
+
+    public static boolean matches( Exclusion exclusion, Artifact artifact )
+    {
+        if ( !matches( exclusion.getArtifactId(), artifact.getArtifactId() ) )
+        {
+            return false;
+        }
+        if ( !matches( exclusion.getGroupId(), artifact.getGroupId() ) )
+        {
+            return false;
+        }
+        if ( !matches( exclusion.getExtension(), artifact.getExtension() ) )
+        {
+            return false;
+        }
+        if ( !matches( exclusion.getClassifier(), artifact.getClassifier() ) )
+        {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean matches( String pattern, String value )
+    {
+        return WILDCARD.equals( pattern ) || pattern.equals( value );
+    }
+
+    private static void add( Map<String, List<Integer>> lists, String key, int index )
+    {
+        List<Integer> list = lists.get( key );
+        if ( list == null )
+        {
+            list = new ArrayList<Integer>( 2 );
+            lists.put( key, list );
+        }
+        list.add( index );
+    }
+
+    private static Map<String, int[]> toArrays( Map<String, List<Integer>> lists )
+    {
+        Map<String, int[]> arrays = new HashMap<String, int[]>( lists.size() * 2 );
+        for ( Map.Entry<String, List<Integer>> entry : lists.entrySet() )
+        {
+            arrays.put( entry.getKey(), toArray( entry.getValue() ) );
+        }
+        return arrays;
+    }
+
+    private static int[] toArray( List<Integer> list )
+    {
+        if ( list.isEmpty() )
+        {
+            return NONE;
+        }
+        int[] array = new int[list.size()];
+        for ( int i = 0; i < array.length; i++ )
+        {
+            array[i] = list.get( i );
+        }
+        return array;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.ardoq.mavenImport.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.aether.artifact.Artifact;
+
+/**
+ * Records which artifacts were excluded during dependency collection, as deduplicated (owner, excluded) pairs. The
+ * owner is the artifact whose dependency declaration carries the exclusion. Safe for concurrent collections.
+ *
+ * Pairs are kept until they are taken or cleared, so long running imports should take them once a project's graph
+ * has been synced.
+ */
+public class ExclusionTracker
+{
+
+    private final ConcurrentMap<Artifact, Set<Artifact>> excluded = new ConcurrentHashMap<Artifact, Set<Artifact>>();
+
+    public void record( Artifact owner, Artifact artifact )
+    {
+        Set<Artifact> artifacts = excluded.get( owner );
+        if ( artifacts == null )
+        {
+            Set<Artifact> created = Collections.newSetFromMap( new ConcurrentHashMap<Artifact, Boolean>() );
+            artifacts = excluded.putIfAbsent( owner, created );
+            if ( artifacts == null )
+            {
+                artifacts = created;
+            }
+        }
+        artifacts.add( artifact );
+    }
+
+    public void recordAll( Artifact owner, Collection<Artifact> artifacts )
+    {
+        for ( Artifact artifact : artifacts )
+        {
+            record( owner, artifact );
+        }
+    }
+
+    /**
+     * @param owner
+     * @return the artifacts excluded by the owner so far, empty if there are none
+     */
+    public Set<Artifact> getExcluded( Artifact owner )
+    {
+        Set<Artifact> artifacts = excluded.get( owner );
+        return ( artifacts != null ) ? Collections.unmodifiableSet( artifacts ) : Collections.<Artifact>emptySet();
+    }
+
+    /**
+     * Removes and returns the artifacts excluded by the owner.
+     * @param owner
+     * @return the excluded artifacts, empty if there are none
+     */
+    public Set<Artifact> take( Artifact owner )
+    {
+        Set<Artifact> artifacts = excluded.remove( owner );
+        return ( artifacts != null ) ? artifacts : Collections.<Artifact>emptySet();
+    }
+
+    /**
+     * @return a live view of all pairs, by owner
+     */
+    public Map<Artifact, Set<Artifact>> getAll()
+    {
+        return Collections.unmodifiableMap( excluded );
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for ( Set<Artifact> artifacts : excluded.values() )
+        {
+            size += artifacts.size();
+        }
+        return size;
+    }
+
+    public void clear()
+    {
+        excluded.clear();
+    }
+
+}
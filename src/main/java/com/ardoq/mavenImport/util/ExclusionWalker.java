@@ -0,0 +1,168 @@
+package com.ardoq.mavenImport.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.DependencyGraphTransformationContext;
+import org.eclipse.aether.collection.DependencyGraphTransformer;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the artifacts that exclusions kept out of a collected dependency graph and records them in an
+ * {@link ExclusionTracker}. It derives selectors along every path of the graph the way the collector does, and
+ * checks the dependencies declared by each node's descriptor against them. A dependency counts as excluded when the
+ * other selectors (scope, optional) accept it and an exclusion matches, which is exactly when the collector dropped
+ * it because of the exclusion.
+ *
+ * The walk must see the graph before conflict resolution, which prunes the losing versions with their subtrees and
+ * the exclusions declared in them; see {@link #before}. That graph shares the children of equal nodes, so a node is
+ * walked once per artifact, derived selectors and owners of the exclusions.
+ *
+ * Descriptors are only read for nodes below an exclusion, and come from the session's descriptor cache.
+ */
+public class ExclusionWalker
+{
+
+    private static final Logger logger = LoggerFactory.getLogger( ExclusionWalker.class );
+
+    private final RepositorySystem system;
+
+    private final RepositorySystemSession session;
+
+    private final DependencySelector selector;
+
+    private final List<RemoteRepository> repositories;
+
+    private final ExclusionTracker tracker;
+
+    private final Map<Artifact, Set<Artifact>> recorded = new LinkedHashMap<Artifact, Set<Artifact>>();
+
+    /**
+     * @param system
+     * @param session
+     * @param selector the session's dependency selector without the exclusion selector
+     * @param repositories used for nodes without repositories of their own
+     * @param tracker
+     */
+    public ExclusionWalker( RepositorySystem system, RepositorySystemSession session, DependencySelector selector,
+                            List<RemoteRepository> repositories, ExclusionTracker tracker )
+    {
+        this.system = system;
+        this.session = session;
+        this.selector = selector;
+        this.repositories = repositories;
+        this.tracker = tracker;
+    }
+
+    /**
+     * @param transformer the session's graph transformer, e.g. the conflict resolver
+     * @return a transformer that walks the collected graph, then hands it to the given transformer
+     */
+    public DependencyGraphTransformer before( final DependencyGraphTransformer transformer )
+    {
+        return new DependencyGraphTransformer()
+        {
+            public DependencyNode transformGraph( DependencyNode node, DependencyGraphTransformationContext context )
+                throws RepositoryException
+            {
+                walk( node );
+                return ( transformer != null ) ? transformer.transformGraph( node, context ) : node;
+            }
+        };
+    }
+
+    public void walk( DependencyNode root )
+    {
+        walk( root, selector, new ArdoqExclusionDependencySelector(), new HashSet<List<Object>>() );
+    }
+
+    private void walk( DependencyNode node, DependencySelector selector, ArdoqExclusionDependencySelector exclusions,
+                       Set<List<Object>> walked )
+    {
+        ConcurrentDependencyCollector.Context context =
+            new ConcurrentDependencyCollector.Context( session, node.getArtifact(), node.getDependency(),
+                                                       Collections.<Dependency>emptyList() );
+        DependencySelector childSelector = selector.deriveChildSelector( context );
+        ArdoqExclusionDependencySelector childExclusions =
+            (ArdoqExclusionDependencySelector) exclusions.deriveChildSelector( context );
+        // the selectors are equal by value, this also ends cycles; the owners are part of the key since equal
+        // exclusions declared by another artifact have to be recorded for that artifact too
+        if ( !walked.add( Arrays.<Object>asList( node.getArtifact(), childSelector, childExclusions,
+                                                 childExclusions.getOwners() ) ) )
+        {
+            return;
+        }
+
+        if ( childExclusions.hasExclusions() )
+        {
+            ArtifactDescriptorResult descriptor = readDescriptor( node );
+            if ( descriptor != null )
+            {
+                for ( Dependency dependency : descriptor.getDependencies() )
+                {
+                    Artifact owner = childExclusions.getExcludingOwner( dependency.getArtifact() );
+                    if ( owner != null && childSelector.selectDependency( dependency ) )
+                    {
+                        tracker.record( owner, dependency.getArtifact() );
+                        Set<Artifact> excluded = recorded.get( owner );
+                        if ( excluded == null )
+                        {
+                            excluded = new LinkedHashSet<Artifact>();
+                            recorded.put( owner, excluded );
+                        }
+                        excluded.add( dependency.getArtifact() );
+                    }
+                }
+            }
+        }
+
+        for ( DependencyNode child : node.getChildren() )
+        {
+            walk( child, childSelector, childExclusions, walked );
+        }
+    }
+
+    /**
+     * @return the artifacts excluded in the graphs walked so far, by owner
+     */
+    public Map<Artifact, Set<Artifact>> getRecorded()
+    {
+        return recorded;
+    }
+
+    private ArtifactDescriptorResult readDescriptor( DependencyNode node )
+    {
+        List<RemoteRepository> nodeRepositories = node.getRepositories();
+        ArtifactDescriptorRequest request =
+            new ArtifactDescriptorRequest( node.getArtifact(),
+                                           nodeRepositories.isEmpty() ? repositories : nodeRepositories, null );
+        try
+        {
+            return system.readArtifactDescriptor( session, request );
+        }
+        catch ( ArtifactDescriptorException e )
+        {
+            logger.debug( "Could not read the descriptor of " + node.getArtifact(), e );
+            return null;
+        }
+    }
+
+}
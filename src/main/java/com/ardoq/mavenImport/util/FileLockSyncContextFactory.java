@@ -0,0 +1,280 @@
+package com.ardoq.mavenImport.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SyncContext;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.impl.SyncContextFactory;
+import org.eclipse.aether.metadata.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A sync context factory that makes a local repository safe to share between concurrent processes. Aether acquires
+ * a sync context around artifact resolution, installs and metadata updates; this implementation backs it with file
+ * locks in the local repository's .locks directory, plus an in-process read/write lock per lock file, since file
+ * locks are held per JVM. Shared contexts, which only read, e.g. to resolve versions from metadata, take shared
+ * locks, so they don't wait for each other. Maven itself doesn't use these lock files.
+ *
+ * Artifacts and metadata are mapped onto a fixed number of lock files each. Within one acquire the locks are taken
+ * in a fixed order, and artifact locks are always taken before metadata locks (artifact resolution may resolve
+ * metadata, never the other way around), so processes can't deadlock each other. Aether's artifact resolver holds an
+ * exclusive context for all artifacts of a request while it downloads them, so bulk requests are kept small, see
+ * MavenUtil.resolvePoms.
+ */
+public class FileLockSyncContextFactory
+    implements SyncContextFactory
+{
+
+    static final int STRIPES = 256;
+
+    private static final Logger logger = LoggerFactory.getLogger( FileLockSyncContextFactory.class );
+
+    // shared by every session of this JVM
+    private static final ConcurrentMap<File, StripeLock> stripeLocks = new ConcurrentHashMap<File, StripeLock>();
+
+    public SyncContext newInstance( RepositorySystemSession session, boolean shared )
+    {
+        File directory = new File( session.getLocalRepository().getBasedir(), ".locks" );
+        return new FileLockSyncContext( directory, shared );
+    }
+
+    static String stripe( String prefix, String key )
+    {
+        return String.format( "%s-%02x.lock", prefix, ( key.hashCode() & 0x7fffffff ) % STRIPES );
+    }
+
+    private static StripeLock getStripeLock( File file )
+    {
+        StripeLock lock = stripeLocks.get( file );
+        if ( lock == null )
+        {
+            StripeLock created = new StripeLock( file );
+            lock = stripeLocks.putIfAbsent( file, created );
+            if ( lock == null )
+            {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    static class FileLockSyncContext
+        implements SyncContext
+    {
+
+        private final File directory;
+
+        private final boolean shared;
+
+        private final List<StripeLock> held = new ArrayList<StripeLock>();
+
+        // whether each held lock was taken shared
+        private final BitSet sharedHeld = new BitSet();
+
+        FileLockSyncContext( File directory, boolean shared )
+        {
+            this.directory = directory;
+            this.shared = shared;
+        }
+
+        public void acquire( Collection<? extends Artifact> artifacts, Collection<? extends Metadata> metadatas )
+        {
+            TreeSet<String> artifactStripes = new TreeSet<String>();
+            if ( artifacts != null )
+            {
+                for ( Artifact artifact : artifacts )
+                {
+                    artifactStripes.add( stripe( "artifact", artifact.getGroupId() + ':' + artifact.getArtifactId() + ':'
+                        + artifact.getBaseVersion() ) );
+                }
+            }
+            TreeSet<String> metadataStripes = new TreeSet<String>();
+            if ( metadatas != null )
+            {
+                for ( Metadata metadata : metadatas )
+                {
+                    metadataStripes.add( stripe( "metadata", metadata.getGroupId() + ':' + metadata.getArtifactId() + ':'
+                        + metadata.getVersion() + ':' + metadata.getType() ) );
+                }
+            }
+
+            for ( String name : artifactStripes )
+            {
+                lock( name );
+            }
+            for ( String name : metadataStripes )
+            {
+                lock( name );
+            }
+        }
+
+        private void lock( String name )
+        {
+            StripeLock lock = getStripeLock( new File( directory, name ) );
+            sharedHeld.set( held.size(), lock.lock( shared ) );
+            held.add( lock );
+        }
+
+        public void close()
+        {
+            for ( int i = held.size() - 1; i >= 0; i-- )
+            {
+                held.get( i ).unlock( sharedHeld.get( i ) );
+            }
+            held.clear();
+            sharedHeld.clear();
+        }
+
+    }
+
+    /**
+     * A lock file together with the in-process read/write lock guarding it. The file lock is taken when the first
+     * thread acquires the in-process lock, shared or exclusive like it, and released when no thread holds it any more.
+     * A JVM can only hold one lock on a file, which the in-process lock ensures: readers share one shared file lock,
+     * and a writer waits until they are gone.
+     */
+    static class StripeLock
+    {
+
+        private final File file;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // guarded by this
+        private int readers;
+
+        private RandomAccessFile raf;
+
+        private FileLock fileLock;
+
+        StripeLock( File file )
+        {
+            this.file = file;
+        }
+
+        /**
+         * @param shared
+         * @return true if the lock was taken shared, false if exclusive
+         */
+        boolean lock( boolean shared )
+        {
+            // a read lock can't be upgraded, a thread that holds one keeps reading
+            if ( shared || lock.getReadHoldCount() > 0 )
+            {
+                lock.readLock().lock();
+                synchronized ( this )
+                {
+                    if ( readers++ == 0 && fileLock == null )
+                    {
+                        openFile( true );
+                    }
+                }
+                return true;
+            }
+            lock.writeLock().lock();
+            if ( lock.getWriteHoldCount() == 1 )
+            {
+                synchronized ( this )
+                {
+                    if ( fileLock != null )
+                    {
+                        // left shared by the last readers
+                        closeFile();
+                    }
+                    openFile( false );
+                }
+            }
+            return false;
+        }
+
+        void unlock( boolean shared )
+        {
+            if ( shared )
+            {
+                synchronized ( this )
+                {
+                    if ( --readers == 0 && !lock.isWriteLocked() )
+                    {
+                        closeFile();
+                    }
+                }
+                lock.readLock().unlock();
+                return;
+            }
+            try
+            {
+                if ( lock.getWriteHoldCount() == 1 )
+                {
+                    synchronized ( this )
+                    {
+                        if ( readers == 0 )
+                        {
+                            closeFile();
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void openFile( boolean shared )
+        {
+            try
+            {
+                file.getParentFile().mkdirs();
+                raf = new RandomAccessFile( file, "rw" );
+                FileChannel channel = raf.getChannel();
+                fileLock = channel.lock( 0, Long.MAX_VALUE, shared );
+            }
+            catch ( IOException e )
+            {
+                // e.g. a read-only repository or a file system without locking, carry on without the file lock
+                logger.debug( "Could not lock " + file, e );
+                closeFile();
+            }
+        }
+
+        private void closeFile()
+        {
+            try
+            {
+                if ( fileLock != null )
+                {
+                    fileLock.release();
+                }
+                if ( raf != null )
+                {
+                    raf.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Could not release " + file, e );
+            }
+            finally
+            {
+                fileLock = null;
+                raf = null;
+            }
+        }
+
+    }
+
+}
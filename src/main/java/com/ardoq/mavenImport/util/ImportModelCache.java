@@ -0,0 +1,78 @@
+package com.ardoq.mavenImport.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.model.building.ModelCache;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.WorkspaceReader;
+
+/**
+ * The model cache of one import. Models that can change between imports, SNAPSHOTs and projects found by the
+ * session's workspace reader, are kept for this import only; the others go to a {@link SharedModelCache} that may
+ * be shared with later imports, e.g. by the daemon.
+ */
+public class ImportModelCache
+    implements ModelCache
+{
+
+    private final SharedModelCache shared;
+
+    private final SharedModelCache local = new SharedModelCache();
+
+    private final RepositorySystemSession session;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param shared models kept across imports
+     * @param session its workspace reader, if any, is asked when a model is cached
+     */
+    public ImportModelCache( SharedModelCache shared, RepositorySystemSession session )
+    {
+        this.shared = shared;
+        this.session = session;
+    }
+
+    public void put( String groupId, String artifactId, String version, String tag, Object data )
+    {
+        getCache( groupId, artifactId, version ).put( groupId, artifactId, version, tag, data );
+    }
+
+    public Object get( String groupId, String artifactId, String version, String tag )
+    {
+        Object data = getCache( groupId, artifactId, version ).get( groupId, artifactId, version, tag );
+        ( data != null ? hits : misses ).incrementAndGet();
+        return data;
+    }
+
+    private SharedModelCache getCache( String groupId, String artifactId, String version )
+    {
+        DefaultArtifact pom = new DefaultArtifact( groupId, artifactId, "pom", version );
+        if ( pom.isSnapshot() )
+        {
+            return local;
+        }
+        WorkspaceReader workspace = session.getWorkspaceReader();
+        return ( workspace != null && workspace.findArtifact( pom ) != null ) ? local : shared;
+    }
+
+    /**
+     * @return hits of this import, in either cache
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return misses of this import
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+}
@@ -1,6 +1,5 @@
 package com.ardoq.mavenImport.util;
 
-import org.apache.maven.repository.internal.DefaultArtifactDescriptorReader;
 import org.apache.maven.repository.internal.DefaultVersionRangeResolver;
 import org.apache.maven.repository.internal.DefaultVersionResolver;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
@@ -8,6 +7,8 @@ import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
 import org.eclipse.aether.impl.ArtifactDescriptorReader;
 import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.impl.DependencyCollector;
+import org.eclipse.aether.impl.SyncContextFactory;
 import org.eclipse.aether.impl.VersionRangeResolver;
 import org.eclipse.aether.impl.VersionResolver;
 import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
@@ -39,7 +40,10 @@ public class ManualRepositorySystemFactory
         locator.addService( TransporterFactory.class, ClasspathTransporterFactory.class );
         locator.addService(VersionResolver.class, DefaultVersionResolver.class);
         locator.addService(VersionRangeResolver.class, DefaultVersionRangeResolver.class);
-        locator.addService(ArtifactDescriptorReader.class, DefaultArtifactDescriptorReader.class);
+        // setService replaces the default implementations, addService would only add ours after them
+        locator.setService(ArtifactDescriptorReader.class, CachingArtifactDescriptorReader.class);
+        locator.setService(DependencyCollector.class, ConcurrentDependencyCollector.class);
+        locator.setService(SyncContextFactory.class, FileLockSyncContextFactory.class);
 
 
         locator.setErrorHandler( new DefaultServiceLocator.ErrorHandler()
@@ -0,0 +1,61 @@
+package com.ardoq.mavenImport.util;
+
+import java.io.File;
+
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+
+/**
+ * A model resolver that finds parent and imported POMs in a repository directory by the default layout, without the
+ * repository system. Unlike a local repository it needs no tracking files, so a mirror of a repository manager's
+ * storage works as well, and nothing is ever downloaded.
+ */
+public class RepositoryLayoutModelResolver
+    implements ModelResolver
+{
+
+    private final File basedir;
+
+    public RepositoryLayoutModelResolver( File basedir )
+    {
+        this.basedir = basedir;
+    }
+
+    /**
+     * @param basedir
+     * @param groupId
+     * @param artifactId
+     * @param version
+     * @return where the default layout puts the POM
+     */
+    public static File getPomFile( File basedir, String groupId, String artifactId, String version )
+    {
+        String path = groupId.replace( '.', '/' ) + '/' + artifactId + '/' + version + '/' + artifactId + '-' + version + ".pom";
+        return new File( basedir, path );
+    }
+
+    public ModelSource resolveModel( String groupId, String artifactId, String version )
+        throws UnresolvableModelException
+    {
+        File pom = getPomFile( basedir, groupId, artifactId, version );
+        if ( !pom.isFile() )
+        {
+            throw new UnresolvableModelException( "Not found in " + basedir, groupId, artifactId, version );
+        }
+        return new FileModelSource( pom );
+    }
+
+    public void addRepository( Repository repository )
+    {
+        // only the scanned directory is used
+    }
+
+    public ModelResolver newCopy()
+    {
+        return this;
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.ardoq.mavenImport.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.model.building.ModelCache;
+
+/**
+ * A model cache shared by all model builds of an import, so a parent POM is read and resolved once per run however
+ * many projects inherit from it. The model builder copies entries in and out, so they are never modified here.
+ *
+ * The least recently used models are dropped beyond the maximum size. See {@link ImportModelCache} for models that
+ * mustn't outlive an import.
+ */
+public class SharedModelCache
+    implements ModelCache
+{
+
+    public static final int DEFAULT_SIZE = 2000;
+
+    private final Map<Key, Object> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public SharedModelCache()
+    {
+        this( DEFAULT_SIZE );
+    }
+
+    /**
+     * @param maxSize number of models kept
+     */
+    public SharedModelCache( final int maxSize )
+    {
+        this.entries = new LinkedHashMap<Key, Object>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, Object> eldest )
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public void put( String groupId, String artifactId, String version, String tag, Object data )
+    {
+        Key key = new Key( groupId, artifactId, version, tag );
+        synchronized ( entries )
+        {
+            entries.put( key, data );
+        }
+    }
+
+    public Object get( String groupId, String artifactId, String version, String tag )
+    {
+        Key key = new Key( groupId, artifactId, version, tag );
+        Object data;
+        synchronized ( entries )
+        {
+            data = entries.get( key );
+        }
+        ( data != null ? hits : misses ).incrementAndGet();
+        return data;
+    }
+
+    public int size()
+    {
+        synchronized ( entries )
+        {
+            return entries.size();
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public void clear()
+    {
+        synchronized ( entries )
+        {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Model cache: " + size() + " models, " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+
+    private static final class Key
+    {
+
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String version;
+
+        private final String tag;
+
+        private final int hashCode;
+
+        Key( String groupId, String artifactId, String version, String tag )
+        {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.tag = tag;
+
+            int hash = 17;
+            hash = hash * 31 + groupId.hashCode();
+            hash = hash * 31 + artifactId.hashCode();
+            hash = hash * 31 + version.hashCode();
+            hash = hash * 31 + tag.hashCode();
+            hashCode = hash;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+            Key that = (Key) obj;
+            return artifactId.equals( that.artifactId ) && groupId.equals( that.groupId )
+                && version.equals( that.version ) && tag.equals( that.tag );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+    }
+
+}
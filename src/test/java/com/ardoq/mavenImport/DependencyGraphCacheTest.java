@@ -0,0 +1,130 @@
+package com.ardoq.mavenImport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyGraphCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGraphRoundTrip() throws Exception {
+        DefaultDependencyNode root = new DefaultDependencyNode(new DefaultArtifact("org.example:app:1.0"));
+        DefaultDependencyNode core = new DefaultDependencyNode(new Dependency(new DefaultArtifact("org.example:core:1.0"), "compile", null,
+                Arrays.asList(new Exclusion("log4j", "log4j", "*", "*"))));
+        DefaultDependencyNode tests = new DefaultDependencyNode(new Dependency(new DefaultArtifact("org.example:tests:jar:tests:1.0"), "test", true));
+        DefaultDependencyNode shared = new DefaultDependencyNode(new Dependency(new DefaultArtifact("org.example", "shared", "", "jar", "2.0",
+                Collections.singletonMap("type", "jar"), (File) null), "runtime", false));
+        shared.setManagedBits(DependencyNode.MANAGED_VERSION | DependencyNode.MANAGED_SCOPE);
+        shared.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_VERSION, "1.5");
+        shared.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_SCOPE, "compile");
+        DefaultDependencyNode loser = new DefaultDependencyNode(new Dependency(new DefaultArtifact("org.example:shared:1.5"), "compile"));
+        loser.setData(ConflictResolver.NODE_DATA_WINNER, shared);
+        root.setChildren(Arrays.<DependencyNode>asList(core, tests));
+        core.setChildren(Arrays.<DependencyNode>asList(shared));
+        tests.setChildren(Arrays.<DependencyNode>asList(shared, loser));
+
+        Map<Artifact, List<Artifact>> excluded = new LinkedHashMap<Artifact, List<Artifact>>();
+        excluded.put(core.getArtifact(), Arrays.<Artifact>asList(new DefaultArtifact("log4j:log4j:1.2.17")));
+
+        DependencyGraphCache cache = new DependencyGraphCache(folder.getRoot());
+        String key = DependencyGraphCache.getKey(root.getArtifact(), new String[] { "test", "provided" }, repositories());
+        cache.put(key, root, excluded);
+        DependencyGraphCache.CachedGraph cached = cache.get(key);
+        assertEquals(1, cache.getHits());
+
+        DependencyNode readRoot = cached.getRoot();
+        assertEquals(root.getArtifact(), readRoot.getArtifact());
+        assertNull(readRoot.getDependency());
+        assertEquals(2, readRoot.getChildren().size());
+
+        DependencyNode readCore = readRoot.getChildren().get(0);
+        assertEquals(core.getDependency(), readCore.getDependency());
+        DependencyNode readTests = readRoot.getChildren().get(1);
+        assertEquals(tests.getDependency(), readTests.getDependency());
+        assertEquals(Boolean.TRUE, readTests.getDependency().getOptional());
+
+        DependencyNode readShared = readCore.getChildren().get(0);
+        assertSame("shared nodes stay shared", readShared, readTests.getChildren().get(0));
+        assertEquals(shared.getDependency(), readShared.getDependency());
+        assertEquals("jar", readShared.getArtifact().getProperty("type", null));
+        assertEquals(shared.getManagedBits(), readShared.getManagedBits());
+        assertEquals("1.5", DependencyManagerUtils.getPremanagedVersion(readShared));
+        assertEquals("compile", DependencyManagerUtils.getPremanagedScope(readShared));
+
+        DependencyNode readLoser = readTests.getChildren().get(1);
+        assertSame(readShared, readLoser.getData().get(ConflictResolver.NODE_DATA_WINNER));
+        assertEquals(excluded, cached.getExcluded());
+    }
+
+    @Test
+    public void testMissingOrDamagedFileIsAMiss() throws Exception {
+        DependencyGraphCache cache = new DependencyGraphCache(folder.getRoot());
+        String key = DependencyGraphCache.getKey(new DefaultArtifact("org.example:app:1.0"), new String[0], repositories());
+        assertNull(cache.get(key));
+
+        DefaultDependencyNode root = new DefaultDependencyNode(new DefaultArtifact("org.example:app:1.0"));
+        root.setChildren(Arrays.<DependencyNode>asList(new DefaultDependencyNode(new Dependency(new DefaultArtifact("org.example:core:1.0"), "compile"))));
+        cache.put(key, root, Collections.<Artifact, List<Artifact>>emptyMap());
+        File file = new File(new File(folder.getRoot(), key.substring(0, 2)), key + ".graph");
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        try {
+            truncated.setLength(truncated.length() / 2);
+        } finally {
+            truncated.close();
+        }
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testKeyDependsOnScopesAndRepositories() {
+        Artifact root = new DefaultArtifact("org.example:app:1.0");
+        String key = DependencyGraphCache.getKey(root, new String[] { "test", "provided" }, repositories());
+        assertEquals(key, DependencyGraphCache.getKey(root, new String[] { "provided", "test" }, repositories()));
+        assertFalse(key.equals(DependencyGraphCache.getKey(root, new String[] { "test" }, repositories())));
+        assertFalse(key.equals(DependencyGraphCache.getKey(root, new String[] { "test", "provided" }, Collections.<RemoteRepository>emptyList())));
+    }
+
+    @Test
+    public void testSnapshotsAndRangesAreNotCacheable() {
+        assertTrue(DependencyGraphCache.isCacheable(new DefaultArtifact("org.example:app:1.0")));
+        assertFalse(DependencyGraphCache.isCacheable(new DefaultArtifact("org.example:app:1.0-SNAPSHOT")));
+        assertFalse(DependencyGraphCache.isCacheable(new DefaultArtifact("org.example:app:[1.0,2.0)")));
+
+        DefaultDependencyNode root = new DefaultDependencyNode(new DefaultArtifact("org.example:app:1.0"));
+        root.setChildren(Arrays.<DependencyNode>asList(new DefaultDependencyNode(new Dependency(new DefaultArtifact("org.example:core:1.0-SNAPSHOT"), "compile"))));
+        assertFalse(DependencyGraphCache.isCacheable(root));
+    }
+
+    private static List<RemoteRepository> repositories() {
+        return Arrays.asList(new RemoteRepository.Builder("central", "default", "https://repo.maven.apache.org/maven2/").build());
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.ardoq.mavenImport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImportDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTokenIsNewAndPrivate() throws Exception {
+        File file = new File(new File(folder.getRoot(), "daemon"), "daemon-7878.token");
+        String token = ImportDaemon.writeToken(file);
+        assertEquals(64, token.length());
+        assertEquals(token, new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+        if (Files.getFileStore(file.toPath()).supportsFileAttributeView("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+        }
+
+        // a restarted daemon replaces the token
+        assertFalse(token.equals(ImportDaemon.writeToken(file)));
+    }
+
+    @Test
+    public void testSecretsAreMasked() {
+        String[] masked = ImportDaemon.maskSecrets(new String[] { "-t", "secret", "-w", "workspace", "-p", "password" });
+        assertEquals("***", masked[1]);
+        assertEquals("workspace", masked[3]);
+        assertEquals("***", masked[5]);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.ardoq.mavenImport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ardoq.mavenImport.PomMetadata.PomDeveloper;
+
+public class PomMetadataCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDiskRoundTrip() {
+        PomMetadataCache cache = new PomMetadataCache(folder.getRoot(), 10);
+        cache.put("org.example:core:1.0", new PomMetadata("org.example", "core", "1.0", "Core", null, "org.example:parent:1.0",
+                Arrays.asList("Apache License, Version 2.0"), Collections.<String>emptyList(),
+                Arrays.asList(new PomDeveloper("Jane", "jane@example.org"))), true);
+
+        PomMetadataCache later = new PomMetadataCache(folder.getRoot(), 10);
+        PomMetadata read = later.get("org.example:core:1.0");
+        assertNotNull(read);
+        assertEquals(1, later.getDiskHits());
+        assertEquals("Core", read.getDeclaredName());
+        assertNull(read.getDescription());
+        assertEquals("org.example:parent:1.0", read.getParentId());
+        assertEquals(Arrays.asList("Apache License, Version 2.0"), read.getLicenses());
+        assertEquals("jane@example.org", read.getDevelopers().get(0).getEmail());
+    }
+
+    @Test
+    public void testDamagedEntryIsAMiss() throws Exception {
+        File file = new File(new File(new File(folder.getRoot(), "org.example"), "core"), "1.0.properties");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "format=1\ngroupId=org.example\ndeveloper.count=x\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        PomMetadataCache cache = new PomMetadataCache(folder.getRoot(), 10);
+        assertNull(cache.get("org.example:core:1.0"));
+        assertEquals(1, cache.getMisses());
+    }
+
+}
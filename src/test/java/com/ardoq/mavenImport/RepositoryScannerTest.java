@@ -0,0 +1,129 @@
+package com.ardoq.mavenImport;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RepositoryScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File repository;
+
+    @Before
+    public void createRepository() throws Exception {
+        repository = folder.newFolder("repository");
+        pom("org/example/parent/1.0/parent-1.0.pom", "<groupId>org.example</groupId><artifactId>parent</artifactId><version>1.0</version>"
+                + "<packaging>pom</packaging>"
+                + "<licenses><license><name>Apache License, Version 2.0</name></license></licenses>"
+                + "<dependencyManagement><dependencies>"
+                + "<dependency><groupId>org.example</groupId><artifactId>managed</artifactId><version>3.0</version></dependency>"
+                + "</dependencies></dependencyManagement>");
+        pom("org/example/child/1.0/child-1.0.pom", "<parent><groupId>org.example</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+                + "<artifactId>child</artifactId>"
+                + "<dependencies>"
+                + "<dependency><groupId>org.example</groupId><artifactId>managed</artifactId></dependency>"
+                + "<dependency><groupId>org.example</groupId><artifactId>ranged</artifactId><version>[1.0,2.0)</version></dependency>"
+                + "<dependency><groupId>org.example</groupId><artifactId>unresolved</artifactId><version>${missing.version}</version></dependency>"
+                + "<dependency><groupId>org.example</groupId><artifactId>tool</artifactId><version>2.0</version><scope>test</scope>"
+                + "<optional>true</optional></dependency>"
+                + "</dependencies>");
+        pom("org/example/tool/2.0/tool-2.0.pom", "<groupId>org.example</groupId><artifactId>tool</artifactId><version>2.0</version>");
+        pom("org/example/.cache/ignored-1.0.pom", "<groupId>org.example</groupId><artifactId>ignored</artifactId><version>1.0</version>");
+    }
+
+    @Test
+    public void testScanAndReplay() throws Exception {
+        RepositoryScanner scanner = scanner(new File(folder.getRoot(), "scan.journal"));
+        scanner.scan();
+        assertEquals(3, scanner.scanned.get());
+        assertEquals(0, scanner.failed.get());
+        assertEquals(2, scanner.unversioned.get());
+
+        assertEquals(Arrays.asList(
+                "org/example/child/1.0/child-1.0.pom org.example:child:pom:1.0 [Apache License, Version 2.0]"
+                        + " [org.example:managed:pom:3.0 (compile), org.example:tool:pom:2.0 (test?)]",
+                "org/example/parent/1.0/parent-1.0.pom org.example:parent:pom:1.0 [Apache License, Version 2.0] []",
+                "org/example/tool/2.0/tool-2.0.pom org.example:tool:pom:2.0 [] []"), replay(scanner));
+    }
+
+    @Test
+    public void testInterruptedScanResumes() throws Exception {
+        File journal = new File(folder.getRoot(), "scan.journal");
+        RepositoryScanner complete = scanner(journal);
+        complete.scan();
+        List<String> expected = replay(complete);
+
+        RandomAccessFile truncated = new RandomAccessFile(journal, "rw");
+        try {
+            // cut the last record short, as an interruption while writing it would
+            truncated.setLength(truncated.length() - 3);
+        } finally {
+            truncated.close();
+        }
+        RepositoryScanner resumed = scanner(journal);
+        resumed.scan();
+        assertEquals(2, resumed.resumed.get());
+        assertEquals(1, resumed.scanned.get());
+        assertEquals(expected, replay(resumed));
+
+        // nothing left to scan
+        RepositoryScanner again = scanner(journal);
+        again.scan();
+        assertEquals(3, again.resumed.get());
+        assertEquals(0, again.scanned.get());
+        assertEquals(expected, replay(again));
+    }
+
+    @Test
+    public void testJournalOfAnotherRepositoryIsDiscarded() throws Exception {
+        File journal = new File(folder.getRoot(), "scan.journal");
+        RepositoryScanner scanner = scanner(journal);
+        scanner.scan();
+        List<String> expected = replay(scanner);
+
+        File other = folder.newFolder("other");
+        new RepositoryScanner(scanner.mavenUtil, other, journal, 2).scan();
+        assertEquals(0, replay(scanner).size());
+
+        RepositoryScanner rescanned = scanner(journal);
+        rescanned.scan();
+        assertEquals(0, rescanned.resumed.get());
+        assertEquals(expected, replay(rescanned));
+    }
+
+    private RepositoryScanner scanner(File journal) throws Exception {
+        MavenUtil mavenUtil = new MavenUtil(System.out, new File(folder.getRoot(), "local"), "test", "provided");
+        return new RepositoryScanner(mavenUtil, repository, journal, 2);
+    }
+
+    private static List<String> replay(RepositoryScanner scanner) throws Exception {
+        final List<String> poms = new ArrayList<String>();
+        scanner.replay(new RepositoryScanner.Handler() {
+            public void pom(RepositoryScanner.ScannedPom pom) {
+                poms.add(pom.getPath() + " " + pom.getArtifact() + " " + pom.getLicenses() + " " + pom.getDependencies());
+            }
+        });
+        return poms;
+    }
+
+    private void pom(String path, String content) throws Exception {
+        File file = new File(repository, path);
+        file.getParentFile().mkdirs();
+        String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\"><modelVersion>4.0.0</modelVersion>" + content + "</project>";
+        Files.write(file.toPath(), pom.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
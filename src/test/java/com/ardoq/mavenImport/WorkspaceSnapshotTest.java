@@ -0,0 +1,116 @@
+package com.ardoq.mavenImport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+public class WorkspaceSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        WorkspaceSnapshot snapshot = new WorkspaceSnapshot("ws1");
+        snapshot.putComponent("org.example", "c1", 1L);
+        snapshot.putComponent("org.example:core", "c2", Long.MIN_VALUE);
+        snapshot.putComponent("org.example:core:1.0", "c3", -42L);
+        snapshot.putReference("org.example:core:1.0", "org.example:core", 1, "r1", Long.MAX_VALUE);
+        snapshot.putReference("org.example:core:1.0", "org.example:core", 2, "r2", 0L);
+        snapshot.save(folder.getRoot());
+
+        WorkspaceSnapshot loaded = WorkspaceSnapshot.load(folder.getRoot(), "ws1");
+        assertNotNull(loaded);
+        assertEquals("ws1", loaded.getWorkspaceId());
+        assertEquals("c1", loaded.getComponent("org.example").getId());
+        assertEquals(1L, loaded.getComponent("org.example").getHash());
+        assertEquals(Long.MIN_VALUE, loaded.getComponent("org.example:core").getHash());
+        assertEquals("c3", loaded.getComponent("org.example:core:1.0").getId());
+        assertEquals(-42L, loaded.getComponent("org.example:core:1.0").getHash());
+        assertEquals("r1", loaded.getReference("org.example:core:1.0", "org.example:core", 1).getId());
+        assertEquals(Long.MAX_VALUE, loaded.getReference("org.example:core:1.0", "org.example:core", 1).getHash());
+        assertEquals("r2", loaded.getReference("org.example:core:1.0", "org.example:core", 2).getId());
+        assertNull(loaded.getReference("org.example:core", "org.example:core:1.0", 1));
+        assertEquals(snapshot.toString(), loaded.toString());
+
+        // nothing removed from itself, everything from an empty import, children first
+        assertEquals(Collections.<String>emptyList(), loaded.getRemovedComponentIds(snapshot));
+        assertEquals(Collections.<String>emptyList(), loaded.getRemovedReferenceIds(snapshot));
+        WorkspaceSnapshot empty = new WorkspaceSnapshot("ws1");
+        assertEquals(Arrays.asList("c3", "c2", "c1"), loaded.getRemovedComponentIds(empty));
+        assertEquals(Arrays.asList("r2", "r1"), loaded.getRemovedReferenceIds(empty));
+    }
+
+    @Test
+    public void testComponentIdChangeKeepsPosition() {
+        WorkspaceSnapshot snapshot = new WorkspaceSnapshot("ws1");
+        snapshot.putComponent("a", "c1", 1L);
+        snapshot.putComponent("b", "c2", 2L);
+        snapshot.putReference("a", "b", 1, "r1", 3L);
+        snapshot.putComponent("a", "c3", 4L);
+        assertEquals("c3", snapshot.getComponent("a").getId());
+        assertEquals("r1", snapshot.getReference("a", "b", 1).getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReferenceToUnknownComponent() {
+        WorkspaceSnapshot snapshot = new WorkspaceSnapshot("ws1");
+        snapshot.putComponent("a", "c1", 1L);
+        snapshot.putReference("a", "b", 1, "r1", 2L);
+    }
+
+    @Test
+    public void testOtherWorkspaceOrDamagedFileIsNotLoaded() throws Exception {
+        assertNull(WorkspaceSnapshot.load(folder.getRoot(), "ws1"));
+
+        WorkspaceSnapshot snapshot = new WorkspaceSnapshot("ws1");
+        snapshot.putComponent("a", "c1", 1L);
+        snapshot.putComponent("b", "c2", 2L);
+        snapshot.putReference("a", "b", 1, "r1", 3L);
+        snapshot.save(folder.getRoot());
+        File file = new File(folder.getRoot(), "ws1.snapshot");
+        // the snapshot of another workspace under this workspace's name
+        Files.copy(file.toPath(), new File(folder.getRoot(), "ws2.snapshot").toPath());
+        assertNull(WorkspaceSnapshot.load(folder.getRoot(), "ws2"));
+
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        try {
+            truncated.setLength(truncated.length() - 4);
+        } finally {
+            truncated.close();
+        }
+        assertNull(WorkspaceSnapshot.load(folder.getRoot(), "ws1"));
+    }
+
+    @Test
+    public void testHashCoversThePayload() {
+        Component component = new Component("org.example:core", "ws1", "", "Artifact");
+        component.setParent("p1");
+        long hash = WorkspaceSnapshot.hash(component);
+        assertEquals(hash, WorkspaceSnapshot.hash(component));
+        component.getFields().put("license", "MIT");
+        long withField = WorkspaceSnapshot.hash(component);
+        assertFalse(hash == withField);
+        component.setParent("p2");
+        assertFalse(withField == WorkspaceSnapshot.hash(component));
+
+        Reference reference = new Reference("ws1", " #compile", "c1", "c2", 1);
+        assertFalse(WorkspaceSnapshot.hash(reference) == WorkspaceSnapshot.hash(new Reference("ws1", " #test", "c1", "c2", 1)));
+        assertFalse(WorkspaceSnapshot.hash(reference) == WorkspaceSnapshot.hash(new Reference("ws1", " #compile", "c1", "c2", 2)));
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.ardoq.mavenImport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ardoq.mavenImport.sink.GraphSink;
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+public class WritePipelineTest {
+
+    static final int THREADS = 4;
+
+    @Test
+    public void testConcurrentWritesMatchSerialWrites() {
+        RecordingSink serialSink = new RecordingSink(false);
+        WritePipeline serial = write(new WritePipeline(serialSink, mavenUtil(), THREADS));
+        RecordingSink concurrentSink = new RecordingSink(true);
+        WritePipeline concurrent = write(new WritePipeline(concurrentSink, mavenUtil(), THREADS));
+
+        assertEquals(serial.getSnapshot().toString(), concurrent.getSnapshot().toString());
+        assertEquals(serial.getWritten(), concurrent.getWritten());
+        assertEquals(serial.getId("org.example:a7:1.0"), concurrent.getId("org.example:a7:1.0"));
+        assertEquals(1, serialSink.maxInFlight.get());
+        assertTrue("written concurrently", concurrentSink.maxInFlight.get() > 1);
+        assertTrue("at most one write per thread", concurrentSink.maxInFlight.get() <= THREADS);
+        // every parent before its children
+        for (Component component : concurrentSink.written) {
+            if (component.getParent() != null) {
+                assertTrue(component.getName(), concurrentSink.names.indexOf(component.getParent()) < concurrentSink.names.indexOf(component.getName()));
+            }
+        }
+
+        // every reference is recorded, with the ID it was written with
+        Set<String> referenceIds = new HashSet<String>();
+        for (int i = 1; i < 120; i++) {
+            WorkspaceSnapshot.Entry entry = concurrent.getSnapshot().getReference("org.example:a" + (i - 1) + ":1.0", "org.example:a" + i + ":1.0", 1);
+            referenceIds.add(entry.getId());
+        }
+        assertEquals(119, referenceIds.size());
+        assertEquals(119, concurrentSink.references.size());
+    }
+
+    @Test
+    public void testReferenceQueuedTwiceIsSentOnce() {
+        RecordingSink sink = new RecordingSink(true);
+        WritePipeline pipeline = new WritePipeline(sink, mavenUtil(), THREADS);
+        pipeline.addComponent(WritePipeline.WAVE_ROOTS, new Component("a", "ws", "", "Group"), null, null);
+        pipeline.addComponent(WritePipeline.WAVE_ROOTS, new Component("b", "ws", "", "Group"), null, null);
+        pipeline.addReference("a", "b", " #compile", 1);
+        pipeline.addReference("a", "b", " #compile", 1);
+        pipeline.addReference("a", "b", " #test", 1);
+        pipeline.flush();
+        // the last one queued replaces the others
+        assertEquals(1, sink.references.size());
+        assertEquals(" #test", sink.references.get(0).getDescription());
+
+        pipeline.addReference("a", "b", " #test", 1);
+        pipeline.flush();
+        assertEquals(1, sink.references.size());
+        assertEquals(3, pipeline.getWritten());
+    }
+
+    @Test
+    public void testFailedWriteFailsTheFlush() {
+        RecordingSink sink = new RecordingSink(true);
+        sink.failOn = "org.example:a3";
+        WritePipeline pipeline = write(new WritePipeline(sink, mavenUtil(), THREADS), false);
+        try {
+            pipeline.flush();
+            fail("flushed with a failed write");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("org.example:a3"));
+        }
+        assertEquals(0, sink.inFlight.get());
+    }
+
+    private static WritePipeline write(WritePipeline pipeline) {
+        write(pipeline, true);
+        return pipeline;
+    }
+
+    private static WritePipeline write(WritePipeline pipeline, boolean flush) {
+        pipeline.addComponent(WritePipeline.WAVE_ROOTS, new Component("org.example", "ws", "", "Group"), null, null);
+        for (int i = 0; i < 120; i++) {
+            String artifact = "org.example:a" + i;
+            pipeline.addComponent(WritePipeline.WAVE_ARTIFACTS, new Component(artifact, "ws", "", "Artifact"), "org.example", null);
+            pipeline.addComponent(WritePipeline.WAVE_VERSIONS, new Component(artifact + ":1.0", "ws", "", "Version"), artifact, null);
+            if (i > 0) {
+                pipeline.addReference("org.example:a" + (i - 1) + ":1.0", artifact + ":1.0", " #compile", 1);
+            }
+        }
+        if (flush) {
+            pipeline.flush();
+        }
+        return pipeline;
+    }
+
+    private static MavenUtil mavenUtil() {
+        MavenUtil mavenUtil = new MavenUtil(System.out, "test", "provided");
+        mavenUtil.setQuiet(true);
+        return mavenUtil;
+    }
+
+    /**
+     * Records what is written, and how many writes are in flight at a time.
+     */
+    static class RecordingSink extends GraphSink {
+
+        final boolean concurrent;
+        final List<Component> written = Collections.synchronizedList(new ArrayList<Component>());
+        final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+        final List<Reference> references = Collections.synchronizedList(new ArrayList<Reference>());
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile String failOn;
+
+        RecordingSink(boolean concurrent) {
+            super("ws");
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+
+        @Override
+        public Component addComponent(Component component) throws IOException {
+            // unlike GraphSink's, safe to call from several threads
+            component.setId(component.getName());
+            writeComponent(component);
+            return component;
+        }
+
+        @Override
+        public synchronized Reference addReference(Reference reference) throws IOException {
+            // GraphSink numbers the references, one at a time
+            return super.addReference(reference);
+        }
+
+        @Override
+        protected void writeComponent(Component component) throws IOException {
+            int count = inFlight.incrementAndGet();
+            try {
+                while (true) {
+                    int max = maxInFlight.get();
+                    if (count <= max || maxInFlight.compareAndSet(max, count)) {
+                        break;
+                    }
+                }
+                Thread.sleep(2);
+                if (component.getName().equals(failOn)) {
+                    throw new IOException("Failed writing " + component.getName());
+                }
+                written.add(component);
+                names.add(component.getName());
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        protected void writeReference(Reference reference, String type) {
+            for (int i = 0; i < references.size(); i++) {
+                Reference same = references.get(i);
+                if (same.getSource().equals(reference.getSource()) && same.getTarget().equals(reference.getTarget())) {
+                    references.set(i, reference);
+                    return;
+                }
+            }
+            references.add(reference);
+        }
+    }
+
+}
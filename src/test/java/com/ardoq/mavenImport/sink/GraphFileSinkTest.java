@@ -0,0 +1,141 @@
+package com.ardoq.mavenImport.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ardoq.model.Component;
+import com.ardoq.model.Reference;
+
+public class GraphFileSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = new File(folder.getRoot(), "graph.bin");
+        List<String> roots = Arrays.asList("org.example:app:1.0", "org.example:tool:2.0");
+        GraphFileSink sink = new GraphFileSink(file, "graph", roots);
+        List<String> expected = new ArrayList<String>();
+
+        Component group = new Component("org.example", "graph", "", "Group");
+        group.setFields(null);
+        expected.add(component(sink.addComponent(group)));
+        // enough distinct strings for indexes of more than one byte
+        for (int i = 0; i < 300; i++) {
+            Component artifact = new Component("org.example:a" + i, "graph", "Artifact \u00e6\u00f8\u00e5 " + i, "Artifact");
+            artifact.setParent(group.getId());
+            artifact.getFields().put("snapshot", Boolean.FALSE);
+            artifact.getFields().put("license", (i % 2 == 0) ? "Apache License, Version 2.0" : null);
+            expected.add(component(sink.addComponent(artifact)));
+        }
+        Component empty = new Component("org.example:empty", "graph", null, "Artifact");
+        empty.setParent(group.getId());
+        empty.setFields(new HashMap<String, Object>());
+        expected.add(component(sink.addComponent(empty)));
+        for (int i = 1; i < 300; i++) {
+            Reference reference = new Reference("graph", (i % 3 == 0) ? null : " #compile", "org.example:a" + (i - 1), "org.example:a" + i, i % 5);
+            expected.add(reference(sink.addReference(reference), GraphSink.getReferenceTypeName(i % 5)));
+        }
+        sink.close();
+
+        GraphFileReader reader = new GraphFileReader(file);
+        assertEquals("graph", reader.getGraphName());
+        assertEquals(roots, reader.getRoots());
+        final List<String> read = new ArrayList<String>();
+        reader.read(new GraphFileReader.Handler() {
+            public void component(String name, String type, String parent, String description, Map<String, Object> fields) {
+                read.add("component " + name + " " + type + " " + parent + " " + description + " " + fields);
+            }
+
+            public void reference(String source, String target, String type, String description) {
+                read.add("reference " + source + " " + target + " " + type + " " + description);
+            }
+        });
+        assertEquals(expected, read);
+        assertEquals(roots, GraphFileReader.readRoots(file));
+    }
+
+    @Test
+    public void testAbortLeavesNoFile() throws Exception {
+        File file = new File(folder.getRoot(), "graph.bin");
+        GraphFileSink sink = new GraphFileSink(file, "graph", Arrays.asList("org.example:app:1.0"));
+        sink.addComponent(new Component("org.example", "graph", "", "Group"));
+        sink.abort();
+        assertFalse(file.exists());
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testTruncatedFileIsIncomplete() throws Exception {
+        File file = new File(folder.getRoot(), "graph.bin");
+        GraphFileSink sink = new GraphFileSink(file, "graph", Arrays.asList("org.example:app:1.0"));
+        sink.addComponent(new Component("org.example", "graph", "", "Group"));
+        sink.addComponent(new Component("org.example:core", "graph", "", "Artifact"));
+        sink.close();
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        try {
+            // cut off the end record
+            truncated.setLength(truncated.length() - 3);
+        } finally {
+            truncated.close();
+        }
+        try {
+            new GraphFileReader(file).read(new GraphFileReader.Handler() {
+                public void component(String name, String type, String parent, String description, Map<String, Object> fields) {
+                }
+
+                public void reference(String source, String target, String type, String description) {
+                }
+            });
+            fail("read a truncated graph");
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherFileIsRejected() throws Exception {
+        File file = new File(folder.getRoot(), "graph.bin");
+        RandomAccessFile other = new RandomAccessFile(file, "rw");
+        try {
+            other.writeInt(0x12345678);
+        } finally {
+            other.close();
+        }
+        new GraphFileReader(file);
+    }
+
+    private static String component(Component component) {
+        Map<String, Object> fields = null;
+        if (component.getFields() != null) {
+            // the reader gives the values as strings
+            fields = new HashMap<String, Object>();
+            for (Map.Entry<String, Object> field : component.getFields().entrySet()) {
+                fields.put(field.getKey(), (field.getValue() != null) ? field.getValue().toString() : null);
+            }
+        }
+        return "component " + component.getName() + " " + component.getType() + " " + component.getParent() + " "
+                + component.getDescription() + " " + fields;
+    }
+
+    private static String reference(Reference reference, String type) {
+        return "reference " + reference.getSource() + " " + reference.getTarget() + " " + type + " " + reference.getDescription();
+    }
+
+}
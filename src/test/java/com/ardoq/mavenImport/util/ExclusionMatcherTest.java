@@ -0,0 +1,93 @@
+package com.ardoq.mavenImport.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Exclusion;
+import org.junit.Test;
+
+public class ExclusionMatcherTest
+{
+
+    private static final String[] GROUP_IDS = { "*", "org.a", "org.b", "com.c" };
+
+    private static final String[] ARTIFACT_IDS = { "*", "core", "api", "util", "impl" };
+
+    private static final String[] EXTENSIONS = { "*", "jar", "pom" };
+
+    private static final String[] CLASSIFIERS = { "*", "", "sources" };
+
+    @Test
+    public void testIndexedLookupFindsTheFirstMatchInTheArray()
+    {
+        Exclusion[] exclusions = new Exclusion[ExclusionMatcher.SCAN_THRESHOLD + 4];
+        for ( int i = 0; i < exclusions.length; i++ )
+        {
+            exclusions[i] = new Exclusion( "org.other", "other" + i, "*", "*" );
+        }
+        exclusions[3] = new Exclusion( "*", "*", "*", "pom" );
+        exclusions[5] = new Exclusion( "org.a", "*", "*", "*" );
+        exclusions[7] = new Exclusion( "*", "core", "*", "*" );
+        exclusions[9] = new Exclusion( "org.a", "core", "*", "*" );
+        ExclusionMatcher matcher = new ExclusionMatcher( exclusions );
+
+        assertEquals( 5, matcher.indexOf( new DefaultArtifact( "org.a:core:1.0" ) ) );
+        assertEquals( 3, matcher.indexOf( new DefaultArtifact( "org.a:core:pom:1.0" ) ) );
+        assertEquals( 7, matcher.indexOf( new DefaultArtifact( "org.b:core:1.0" ) ) );
+        assertEquals( -1, matcher.indexOf( new DefaultArtifact( "org.b:api:1.0" ) ) );
+    }
+
+    @Test
+    public void testMatcherEqualsScan()
+    {
+        Random random = new Random( 42 );
+        for ( int round = 0; round < 500; round++ )
+        {
+            Exclusion[] exclusions = new Exclusion[random.nextInt( 4 * ExclusionMatcher.SCAN_THRESHOLD )];
+            for ( int i = 0; i < exclusions.length; i++ )
+            {
+                exclusions[i] =
+                    new Exclusion( pick( random, GROUP_IDS ), pick( random, ARTIFACT_IDS ), pick( random, CLASSIFIERS ),
+                                   pick( random, EXTENSIONS ) );
+            }
+            ExclusionMatcher matcher = new ExclusionMatcher( exclusions );
+            assertEquals( exclusions.length, matcher.size() );
+
+            for ( int i = 0; i < 50; i++ )
+            {
+                Artifact artifact =
+                    new DefaultArtifact( pick( random, GROUP_IDS, 1 ), pick( random, ARTIFACT_IDS, 1 ),
+                                         pick( random, CLASSIFIERS, 1 ), pick( random, EXTENSIONS, 1 ), "1.0" );
+                assertEquals( artifact + " in " + exclusions.length + " exclusions", scan( exclusions, artifact ),
+                              matcher.indexOf( artifact ) );
+            }
+        }
+    }
+
+    private static int scan( Exclusion[] exclusions, Artifact artifact )
+    {
+        for ( int i = 0; i < exclusions.length; i++ )
+        {
+            if ( ExclusionMatcher.matches( exclusions[i], artifact ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String pick( Random random, String[] values )
+    {
+        return pick( random, values, 0 );
+    }
+
+    // from index first on, to leave out the wildcard
+    private static String pick( Random random, String[] values, int first )
+    {
+        return values[first + random.nextInt( values.length - first )];
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.ardoq.mavenImport.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.DependencyGraphTransformationContext;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+import org.eclipse.aether.util.graph.transformer.JavaScopeDeriver;
+import org.eclipse.aether.util.graph.transformer.JavaScopeSelector;
+import org.eclipse.aether.util.graph.transformer.NearestVersionSelector;
+import org.eclipse.aether.util.graph.transformer.SimpleOptionalitySelector;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.VersionScheme;
+import org.junit.Test;
+
+public class ExclusionWalkerTest
+{
+
+    private static final Exclusion EXCLUDE_X = new Exclusion( "org.x", "x", "*", "*" );
+
+    private final VersionScheme versionScheme = new GenericVersionScheme();
+
+    private final RepositorySystemSession session = new DefaultRepositorySystemSession();
+
+    // declared dependencies by artifact, what the descriptors of the graph's nodes return
+    private final Map<Artifact, List<Dependency>> descriptors = new HashMap<Artifact, List<Dependency>>();
+
+    @Test
+    public void testTwoOwnersOverASharedSubtree()
+        throws Exception
+    {
+        DefaultDependencyNode root = node( "org.example:app:1.0", null );
+        DefaultDependencyNode a = node( "org.example:a:1.0", "compile", EXCLUDE_X );
+        DefaultDependencyNode b = node( "org.example:b:1.0", "compile", EXCLUDE_X );
+        DefaultDependencyNode shared = node( "org.example:shared:1.0", "compile" );
+        children( root, a, b );
+        children( a, shared );
+        children( b, shared );
+        declare( a, shared );
+        declare( b, shared );
+        declare( shared, dependency( "org.x:x:1.0", "compile" ), dependency( "org.y:y:1.0", "compile" ) );
+
+        ExclusionTracker tracker = new ExclusionTracker();
+        ExclusionWalker walker = walker( tracker );
+        walker.walk( root );
+
+        Artifact x = new DefaultArtifact( "org.x:x:1.0" );
+        assertEquals( Collections.singleton( x ), tracker.getExcluded( a.getArtifact() ) );
+        assertEquals( Collections.singleton( x ), tracker.getExcluded( b.getArtifact() ) );
+        assertEquals( 2, tracker.size() );
+        assertEquals( Arrays.asList( a.getArtifact(), b.getArtifact() ),
+                      Arrays.asList( walker.getRecorded().keySet().toArray() ) );
+    }
+
+    @Test
+    public void testExclusionBelowAConflictLoser()
+        throws Exception
+    {
+        // d:1.0 loses to the nearer d:2.0, and with it the exclusion declared by e's dependency below it
+        DefaultDependencyNode root = node( "org.example:app:1.0", null );
+        DefaultDependencyNode c = node( "org.example:c:1.0", "compile" );
+        DefaultDependencyNode winner = node( "org.example:d:2.0", "compile" );
+        DefaultDependencyNode loser = node( "org.example:d:1.0", "compile" );
+        DefaultDependencyNode e = node( "org.example:e:1.0", "compile", EXCLUDE_X );
+        children( root, c, winner );
+        children( c, loser );
+        children( loser, e );
+        declare( e, dependency( "org.x:x:1.0", "compile" ), dependency( "org.x:x-test:1.0", "test" ) );
+
+        ExclusionTracker tracker = new ExclusionTracker();
+        ExclusionWalker walker = walker( tracker );
+        ConflictResolver resolver =
+            new ConflictResolver( new NearestVersionSelector(), new JavaScopeSelector(), new SimpleOptionalitySelector(),
+                                  new JavaScopeDeriver() );
+        DependencyNode resolved = walker.before( resolver ).transformGraph( root, new Context( session ) );
+
+        assertTrue( "the losing subtree is pruned", resolved.getChildren().get( 0 ).getChildren().isEmpty() );
+        assertEquals( Collections.singleton( new DefaultArtifact( "org.x:x:1.0" ) ),
+                      tracker.getExcluded( e.getArtifact() ) );
+        assertEquals( new LinkedHashSet<Artifact>( Arrays.<Artifact>asList( new DefaultArtifact( "org.x:x:1.0" ) ) ),
+                      walker.getRecorded().get( e.getArtifact() ) );
+    }
+
+    private ExclusionWalker walker( ExclusionTracker tracker )
+    {
+        RepositorySystem system =
+            (RepositorySystem) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                       new Class<?>[] { RepositorySystem.class }, new Descriptors() );
+        return new ExclusionWalker( system, session, Booter.newScopeDependencySelector( "test", "provided" ),
+                                    Collections.<RemoteRepository>emptyList(), tracker );
+    }
+
+    private DefaultDependencyNode node( String coordinates, String scope, Exclusion... exclusions )
+        throws Exception
+    {
+        Artifact artifact = new DefaultArtifact( coordinates );
+        DefaultDependencyNode node =
+            ( scope != null ) ? new DefaultDependencyNode( new Dependency( artifact, scope, false, Arrays.asList( exclusions ) ) )
+                            : new DefaultDependencyNode( artifact );
+        node.setVersion( versionScheme.parseVersion( artifact.getVersion() ) );
+        node.setVersionConstraint( versionScheme.parseVersionConstraint( artifact.getVersion() ) );
+        return node;
+    }
+
+    // the conflict resolver removes losers from the children, they have to be modifiable
+    private static void children( DependencyNode node, DependencyNode... children )
+    {
+        node.setChildren( new ArrayList<DependencyNode>( Arrays.asList( children ) ) );
+    }
+
+    private void declare( DependencyNode node, DependencyNode... children )
+    {
+        Dependency[] dependencies = new Dependency[children.length];
+        for ( int i = 0; i < children.length; i++ )
+        {
+            dependencies[i] = children[i].getDependency();
+        }
+        declare( node, dependencies );
+    }
+
+    private void declare( DependencyNode node, Dependency... dependencies )
+    {
+        descriptors.put( node.getArtifact(), Arrays.asList( dependencies ) );
+    }
+
+    private static Dependency dependency( String coordinates, String scope )
+    {
+        return new Dependency( new DefaultArtifact( coordinates ), scope );
+    }
+
+    /**
+     * Reads the descriptors declared in the test, the only repository system call the walker makes.
+     */
+    private class Descriptors
+        implements InvocationHandler
+    {
+
+        public Object invoke( Object proxy, Method method, Object[] args )
+        {
+            if ( !method.getName().equals( "readArtifactDescriptor" ) )
+            {
+                throw new UnsupportedOperationException( method.getName() );
+            }
+            ArtifactDescriptorRequest request = (ArtifactDescriptorRequest) args[1];
+            ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+            List<Dependency> declared = descriptors.get( request.getArtifact() );
+            if ( declared != null )
+            {
+                result.setDependencies( declared );
+            }
+            return result;
+        }
+
+    }
+
+    private static class Context
+        implements DependencyGraphTransformationContext
+    {
+
+        private final RepositorySystemSession session;
+
+        private final Map<Object, Object> values = new HashMap<Object, Object>();
+
+        Context( RepositorySystemSession session )
+        {
+            this.session = session;
+        }
+
+        public RepositorySystemSession getSession()
+        {
+            return session;
+        }
+
+        public Object get( Object key )
+        {
+            return values.get( key );
+        }
+
+        public Object put( Object key, Object value )
+        {
+            return values.put( key, value );
+        }
+
+    }
+
+}